@@ -0,0 +1,204 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions.benchmarks;
+
+import com.github.allure.extensions.AllureGrpcClientInterceptor;
+import com.github.allure.extensions.AsyncAttachmentWriter;
+import com.github.allure.extensions.GreeterGrpc;
+import com.github.allure.extensions.HelloReply;
+import com.github.allure.extensions.HelloRequest;
+import com.github.allure.extensions.SamplingPolicy;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.qameta.allure.Allure;
+import io.qameta.allure.AllureLifecycle;
+import io.qameta.allure.model.TestResult;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * In-process unary and server streaming calls of Greeter service. Mode baseline calls without interceptor, inline
+ * and async modes call through the interceptor with inline and background attachment writers, unsampled mode calls
+ * through the interceptor which samples no calls.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterceptorBenchmark {
+
+    /**
+     * In-process server and channel shared by all benchmark threads
+     */
+    @State(Scope.Benchmark)
+    public static class Greeter {
+
+        @Param({"baseline", "inline", "async", "unsampled"})
+        public String mode;
+
+        @Param({"10"})
+        public int streamSize;
+
+        private Server server;
+        private ManagedChannel channel;
+        private AsyncAttachmentWriter asyncAttachmentWriter;
+        private GreeterGrpc.GreeterBlockingStub stub;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            Allure.setLifecycle(new AllureLifecycle(new DiscardingResultsWriter()));
+
+            final String name = "benchmark-" + UUID.randomUUID();
+            server = InProcessServerBuilder.forName(name)
+                    .directExecutor()
+                    .addService(new GreeterService(streamSize))
+                    .build()
+                    .start();
+            final InProcessChannelBuilder channelBuilder =
+                    InProcessChannelBuilder.forName(name).directExecutor();
+            switch (mode) {
+                case "baseline":
+                    break;
+                case "inline":
+                    channelBuilder.intercept(new AllureGrpcClientInterceptor());
+                    break;
+                case "async":
+                    asyncAttachmentWriter = new AsyncAttachmentWriter();
+                    channelBuilder.intercept(new AllureGrpcClientInterceptor(asyncAttachmentWriter));
+                    break;
+                case "unsampled":
+                    channelBuilder.intercept(AllureGrpcClientInterceptor.builder()
+                            .samplingPolicy(SamplingPolicy.failuresOnly())
+                            .build());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown mode " + mode);
+            }
+            channel = channelBuilder.build();
+            stub = GreeterGrpc.newBlockingStub(channel);
+        }
+
+        void flush() {
+            if (asyncAttachmentWriter != null) asyncAttachmentWriter.flush();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            if (asyncAttachmentWriter != null) asyncAttachmentWriter.close();
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Allure test case of benchmark thread, interaction steps of one invocation are attached to it and dropped before
+     * the next invocation, so heap does not grow with the count of calls during measurement
+     */
+    @State(Scope.Thread)
+    public static class AllureTest {
+
+        private String uuid;
+
+        @Setup(Level.Iteration)
+        public void start(final Greeter greeter) {
+            uuid = UUID.randomUUID().toString();
+            Allure.getLifecycle().scheduleTestCase(new TestResult().setUuid(uuid).setName("benchmark"));
+            Allure.getLifecycle().startTestCase(uuid);
+        }
+
+        @Setup(Level.Invocation)
+        public void clearSteps() {
+            Allure.getLifecycle().updateTestCase(uuid, test -> test.getSteps().clear());
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop(final Greeter greeter) {
+            greeter.flush();
+            Allure.getLifecycle().stopTestCase(uuid);
+            Allure.getLifecycle().writeTestCase(uuid);
+        }
+    }
+
+    private static final HelloRequest REQUEST =
+            HelloRequest.newBuilder().setName("benchmark").build();
+
+    @Benchmark
+    public HelloReply unary(final Greeter greeter, final AllureTest test) {
+        return greeter.stub.sayHello(REQUEST);
+    }
+
+    @Benchmark
+    public void serverStreaming(final Greeter greeter, final AllureTest test, final Blackhole blackhole) {
+        final Iterator<HelloReply> replies = greeter.stub.sayHelloStream(REQUEST);
+        while (replies.hasNext()) {
+            blackhole.consume(replies.next());
+        }
+    }
+
+    private static class GreeterService extends GreeterGrpc.GreeterImplBase {
+
+        private final int streamSize;
+
+        GreeterService(final int streamSize) {
+            this.streamSize = streamSize;
+        }
+
+        @Override
+        public void sayHello(final HelloRequest request, final StreamObserver<HelloReply> responseObserver) {
+            responseObserver.onNext(
+                    HelloReply.newBuilder().setMessage("Hi " + request.getName()).build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void sayHelloStream(final HelloRequest request, final StreamObserver<HelloReply> responseObserver) {
+            for (int i = 0; i < streamSize; i++) {
+                responseObserver.onNext(HelloReply.newBuilder()
+                        .setMessage("Hi " + request.getName() + " " + i)
+                        .build());
+            }
+            responseObserver.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions.benchmarks;
+
+import com.github.allure.extensions.AllTypes;
+import com.github.allure.extensions.HelloReply;
+import com.github.allure.extensions.Payload;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Message;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.Value;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sample messages of different shapes for formatting benchmarks. Generated messages exercise cached writing plans of
+ * ordinary types, struct shape exercises well-known types.
+ */
+final class Messages {
+
+    private Messages() {}
+
+    /**
+     * @param shape one of small, large, nested, repeated or struct
+     * @param count count of messages, as received by a streaming call
+     * @return distinct sample messages of the shape
+     */
+    static List<Message> of(final String shape, final int count) {
+        final List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(one(shape, i));
+        }
+        return messages;
+    }
+
+    private static Message one(final String shape, final int index) {
+        switch (shape) {
+            case "small":
+                return HelloReply.newBuilder().setMessage("Hi benchmark " + index).build();
+            case "large":
+                return large(index, 256, 256);
+            case "nested":
+                return nested(index, 16);
+            case "repeated":
+                return repeated(index, 512);
+            case "struct":
+                return struct(index, 16);
+            default:
+                throw new IllegalArgumentException("Unknown message shape " + shape);
+        }
+    }
+
+    private static Payload large(final int index, final int labels, final int valueLength) {
+        final StringBuilder value = new StringBuilder(valueLength);
+        for (int i = 0; i < valueLength; i++) {
+            value.append((char) ('a' + (i + index) % 26));
+        }
+        final Payload.Builder payload = Payload.newBuilder()
+                .setText(value.toString())
+                .setData(ByteString.copyFromUtf8(value.toString()));
+        for (int i = 0; i < labels; i++) {
+            payload.putLabels("label_" + i, value.toString());
+        }
+        return payload.build();
+    }
+
+    private static AllTypes nested(final int index, final int depth) {
+        AllTypes message = AllTypes.newBuilder().setBoolValue(true).build();
+        for (int i = 0; i < depth; i++) {
+            message = AllTypes.newBuilder()
+                    .setInt32Value(i)
+                    .setInt64Value(index * 1_000_000_007L + i)
+                    .setDoubleValue(i * 0.5)
+                    .setStringValue("level " + i)
+                    .setKind(AllTypes.Kind.KIND_FIRST)
+                    .setTimestamp(Timestamp.newBuilder().setSeconds(1_600_000_000L + index))
+                    .setChild(message)
+                    .build();
+        }
+        return message;
+    }
+
+    private static AllTypes repeated(final int index, final int size) {
+        final AllTypes.Builder message = AllTypes.newBuilder();
+        for (int i = 0; i < size; i++) {
+            message.addDoubles(i * 1.25 + index)
+                    .addFloats(i * 0.5f)
+                    .addStrings("item " + i)
+                    .putByInt64(i, "title " + i);
+        }
+        return message.build();
+    }
+
+    private static Struct struct(final int index, final int size) {
+        final ListValue.Builder items = ListValue.newBuilder();
+        for (int i = 0; i < size; i++) {
+            items.addValues(Value.newBuilder()
+                    .setStructValue(Struct.newBuilder()
+                            .putFields("id", Value.newBuilder().setNumberValue(i).build())
+                            .putFields("price", Value.newBuilder().setNumberValue(i * 1.25 + index).build())
+                            .putFields("title", Value.newBuilder().setStringValue("item " + i).build()))
+                    .build());
+        }
+        return Struct.newBuilder()
+                .putFields("items", Value.newBuilder().setListValue(items).build())
+                .build();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions.benchmarks;
+
+import com.github.allure.extensions.ProtoFormatter;
+import com.github.underscore.U;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Formatting of one message or of a transcript of streaming call with messages of different shapes to json and
+ * plaintext, legacy json re-formatting is measured for comparison with single pass json writing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtoFormatterBenchmark {
+
+    @Param({"small", "large", "nested", "repeated", "struct"})
+    public String shape;
+
+    @Param({"1", "100"})
+    public int count;
+
+    private final ProtoFormatter json = ProtoFormatter.builder().build();
+    private final ProtoFormatter text = ProtoFormatter.builder().formatToJson(false).build();
+    private final JsonFormat.Printer legacyPrinter = JsonFormat.printer().preservingProtoFieldNames();
+
+    private List<Message> messages;
+
+    @Setup
+    public void setUp() {
+        messages = Messages.of(shape, count);
+    }
+
+    @Benchmark
+    public String formatJson() {
+        return json.print(messages);
+    }
+
+    @Benchmark
+    public String formatText() {
+        return text.print(messages);
+    }
+
+    @Benchmark
+    public String formatJsonLegacy() throws InvalidProtocolBufferException {
+        if (messages.size() == 1) return U.formatJson(legacyPrinter.print(messages.get(0)));
+        return U.formatJson(messages.stream()
+                .map(message -> {
+                    try {
+                        return legacyPrinter.print(message);
+                    } catch (InvalidProtocolBufferException e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .collect(Collectors.joining(",", "[", "]")));
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions.renderer;
+
+import com.github.allure.extensions.BinaryPayloadFormat;
+import com.github.allure.extensions.PayloadBufferPolicy;
+import com.github.allure.extensions.ProtoFormatter;
+import com.github.allure.extensions.ResultsAttachments;
+import com.google.protobuf.Any;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorSet;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.DescriptorValidationException;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Message;
+import com.google.protobuf.StringValue;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.TypeRegistry;
+import com.google.protobuf.UInt64Value;
+import com.google.protobuf.util.Timestamps;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renderer of binary message attachments written with {@link PayloadBufferPolicy#binary()}, used when the report is
+ * generated instead of formatting messages during the test run. Descriptor sets referenced by attachments are read from
+ * allure results, so messages are rendered without generated classes.
+ *
+ * <p>Allure results are rendered in place before the report generation with
+ * {@code java -cp <classpath> com.github.allure.extensions.renderer.BinaryPayloadRenderer allure-results}.
+ */
+public final class BinaryPayloadRenderer {
+
+    private final ProtoFormatter.Builder formatter;
+    private final String type;
+    private final String fileExtension;
+
+    /**
+     * Renderer formatting messages to pretty json
+     */
+    public BinaryPayloadRenderer() {
+        this(ProtoFormatter.builder());
+    }
+
+    /**
+     * @param formatter options of formatting, type registry of the builder is replaced with types of each attachment
+     */
+    public BinaryPayloadRenderer(final ProtoFormatter.Builder formatter) {
+        this.formatter = formatter.copy();
+        final ProtoFormatter format = this.formatter.build();
+        this.type = format.mimeType();
+        this.fileExtension = format.fileExtension();
+    }
+
+    /**
+     * Rendering binary attachments of allure results in place with default formatting
+     *
+     * @param args allure results directory
+     * @throws IOException when results are not readable or writable
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: BinaryPayloadRenderer <allure results directory>");
+            System.exit(2);
+        }
+        final int rendered = new BinaryPayloadRenderer().renderResults(Paths.get(args[0]));
+        System.out.println("Rendered " + rendered + " binary gRPC attachments");
+    }
+
+    /**
+     * Rendering binary attachments of test results and containers in place, rendered attachments replace binary ones
+     * as json or plaintext attachments same as written by the formatter during the test run
+     *
+     * @param directory allure results directory
+     * @return number of rendered attachments
+     * @throws IOException when results are not readable or writable
+     */
+    public int renderResults(final Path directory) throws IOException {
+        final DescriptorSets descriptorSets = new DescriptorSets(directory);
+        return ResultsAttachments.rewrite(directory, BinaryPayloadFormat.MIME_TYPE, attachment -> {
+            final String source = attachment.getSource();
+            final String renderedSource = (source.endsWith(BinaryPayloadFormat.FILE_EXTENSION)
+                            ? source.substring(0, source.length() - BinaryPayloadFormat.FILE_EXTENSION.length())
+                            : source)
+                    + fileExtension;
+            final Path binary = directory.resolve(source);
+            try (Writer out = Files.newBufferedWriter(directory.resolve(renderedSource), StandardCharsets.UTF_8)) {
+                render(() -> Files.newInputStream(binary), descriptorSets, out);
+            }
+            Files.delete(binary);
+            attachment.setSource(renderedSource);
+            attachment.setType(type);
+            return true;
+        });
+    }
+
+    /**
+     * Rendering binary attachment same as the formatter renders messages during the test run
+     *
+     * @param in        content of binary attachment
+     * @param directory allure results directory with descriptor sets referenced by the attachment
+     * @param out       destination of formatted messages
+     * @throws IOException when content is not readable or destination is not writable
+     */
+    public void render(final InputStream in, final Path directory, final Appendable out) throws IOException {
+        final ByteString content = ByteString.readFrom(in);
+        render(content::newInput, new DescriptorSets(directory), out);
+    }
+
+    /**
+     * Rendering in two passes over the attachment: descriptor sets referenced anywhere in it are read first, so the type
+     * registry of the printer resolves {@code Any} fields of the first message even when the type packed in them is
+     * described by a set referenced later, before a message of that type.
+     */
+    private void render(final Content content, final DescriptorSets descriptorSets, final Appendable out)
+            throws IOException {
+        final Map<String, Descriptor> types = new HashMap<>();
+        final TypeRegistry.Builder registry = TypeRegistry.newBuilder();
+        Any record;
+        try (InputStream in = content.open()) {
+            while ((record = Any.parseDelimitedFrom(in)) != null) {
+                if (!record.getTypeUrl().equals(BinaryPayloadFormat.DESCRIPTOR_SET_SOURCE_TYPE_URL)) continue;
+                for (Descriptor type : descriptorSets.get(StringValue.parseFrom(record.getValue()).getValue())) {
+                    types.put(type.getFullName(), type);
+                    registry.add(type);
+                }
+            }
+        }
+
+        ProtoFormatter.IncrementalPrinter printer = null;
+        String timestamp = null;
+        try (InputStream in = content.open()) {
+            while ((record = Any.parseDelimitedFrom(in)) != null) {
+                final String typeUrl = record.getTypeUrl();
+                if (typeUrl.equals(BinaryPayloadFormat.DESCRIPTOR_SET_SOURCE_TYPE_URL)) continue;
+                if (typeUrl.equals(BinaryPayloadFormat.TIMESTAMP_TYPE_URL)) {
+                    timestamp = ProtoFormatter.timestamp(Timestamps.toMillis(Timestamp.parseFrom(record.getValue())));
+                    continue;
+                }
+                if (printer == null) {
+                    printer = formatter.copy().typeRegistry(registry.build()).build().incrementalPrinter(out);
+                }
+                if (typeUrl.equals(BinaryPayloadFormat.LOST_TYPE_URL)) {
+                    printer.lost(UInt64Value.parseFrom(record.getValue()).getValue());
+                    continue;
+                }
+                final Descriptor type = types.get(typeUrl.substring(typeUrl.lastIndexOf('/') + 1));
+                final Message message = type != null ? DynamicMessage.parseFrom(type, record.getValue()) : record;
+                printer.print(message, timestamp);
+                timestamp = null;
+            }
+        }
+        if (printer != null) printer.finish();
+    }
+
+    /**
+     * Content of binary attachment which can be read more than once
+     */
+    private interface Content {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Descriptor sets of allure results, each set is parsed once for all attachments referencing it
+     */
+    private static final class DescriptorSets {
+
+        private final Path directory;
+        private final Map<String, List<Descriptor>> types = new HashMap<>();
+
+        private DescriptorSets(final Path directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * @param source name of descriptor set file in allure results
+         * @return message types of the set including nested ones
+         * @throws IOException when the file is not readable or descriptors are invalid
+         */
+        private List<Descriptor> get(final String source) throws IOException {
+            final List<Descriptor> cached = types.get(source);
+            if (cached != null) return cached;
+            final FileDescriptorSet set;
+            try (InputStream in = Files.newInputStream(directory.resolve(source))) {
+                set = FileDescriptorSet.parseFrom(in);
+            }
+            final List<Descriptor> loaded = new ArrayList<>();
+            final Map<String, FileDescriptor> files = new HashMap<>();
+            for (FileDescriptorProto proto : set.getFileList()) {
+                final List<FileDescriptor> dependencies = new ArrayList<>();
+                for (String dependency : proto.getDependencyList()) {
+                    final FileDescriptor file = files.get(dependency);
+                    if (file != null) dependencies.add(file);
+                }
+                final FileDescriptor file;
+                try {
+                    file = FileDescriptor.buildFrom(proto, dependencies.toArray(new FileDescriptor[0]), true);
+                } catch (DescriptorValidationException e) {
+                    throw new IOException("Invalid descriptor of " + proto.getName(), e);
+                }
+                files.put(proto.getName(), file);
+                for (Descriptor type : file.getMessageTypes()) {
+                    addType(type, loaded);
+                }
+            }
+            types.put(source, loaded);
+            return loaded;
+        }
+
+        private static void addType(final Descriptor type, final List<Descriptor> loaded) {
+            loaded.add(type);
+            for (Descriptor nested : type.getNestedTypes()) {
+                addType(nested, loaded);
+            }
+        }
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions.renderer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.allure.extensions.AllTypes;
+import com.github.allure.extensions.AllureGrpcClientInterceptor;
+import com.github.allure.extensions.AttachmentCompression;
+import com.github.allure.extensions.BinaryPayloadFormat;
+import com.github.allure.extensions.GreeterGrpc;
+import com.github.allure.extensions.HelloReply;
+import com.github.allure.extensions.HelloRequest;
+import com.github.allure.extensions.PayloadBufferPolicy;
+import com.github.allure.extensions.ProtoFormatter;
+import com.google.protobuf.Any;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorSet;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.DescriptorValidationException;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Message;
+import com.google.protobuf.StringValue;
+import com.google.protobuf.TypeRegistry;
+import com.google.protobuf.UInt64Value;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.qameta.allure.Feature;
+import io.qameta.allure.FileSystemResultsWriter;
+import io.qameta.allure.model.Attachment;
+import io.qameta.allure.model.StepResult;
+import io.qameta.allure.test.AllureResults;
+import io.qameta.allure.test.RunUtils;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Binary attachments should render same as formatted attachments with descriptor sets from allure results.
+ */
+@Feature("Binary payloads")
+public class BinaryPayloadRendererTest {
+
+    final HelloRequest request = HelloRequest.newBuilder().setName("Binary").build();
+
+    @TempDir
+    Path directory;
+
+    private Server server;
+    private ManagedChannel channel;
+
+    @AfterEach
+    public void shutdown() {
+        if (channel != null) channel.shutdownNow();
+        if (server != null) server.shutdownNow();
+    }
+
+    @Test
+    public void binaryResponsesAreRenderedSameAsFormatted() throws IOException {
+        final GreeterGrpc.GreeterBlockingStub greeter = greeter(
+                AllureGrpcClientInterceptor.builder()
+                        .payloadBufferPolicy(PayloadBufferPolicy.binary())
+                        .messageTimestamps(false)
+                        .build(),
+                50_000);
+        final List<Message> replies = new ArrayList<>();
+        final AllureResults allureResults =
+                RunUtils.runWithinTestContext(() -> greeter.sayHelloStream(request).forEachRemaining(replies::add));
+        write(allureResults);
+
+        final StepResult step = firstStep(allureResults);
+        final ProtoFormatter formatter = ProtoFormatter.builder().build();
+        assertEquals(formatter.print(replies), render(step, "gRPC responses"));
+        assertEquals(formatter.print(request), render(step, "gRPC request"));
+    }
+
+    @Test
+    public void timestampsAreRendered() throws IOException {
+        final GreeterGrpc.GreeterBlockingStub greeter = greeter(
+                AllureGrpcClientInterceptor.builder()
+                        .payloadBufferPolicy(PayloadBufferPolicy.binary())
+                        .build(),
+                3);
+        final AllureResults allureResults =
+                RunUtils.runWithinTestContext(() -> greeter.sayHelloStream(request).forEachRemaining(reply -> {}));
+        write(allureResults);
+
+        final String responses = render(firstStep(allureResults), "gRPC responses");
+        assertEquals(6, responses.split("\"@timestamp\"", -1).length - 1);
+        assertTrue(responses.contains("\"message\": \"And again Hi Binary\""));
+    }
+
+    @Test
+    public void resultsAreRenderedInPlace() throws IOException {
+        final GreeterGrpc.GreeterBlockingStub greeter = greeter(
+                AllureGrpcClientInterceptor.builder()
+                        .payloadBufferPolicy(PayloadBufferPolicy.binary())
+                        .messageTimestamps(false)
+                        .build(),
+                3);
+        final List<Message> replies = new ArrayList<>();
+        final AllureResults allureResults =
+                RunUtils.runWithinTestContext(() -> greeter.sayHelloStream(request).forEachRemaining(replies::add));
+        write(allureResults);
+
+        assertEquals(2, new BinaryPayloadRenderer().renderResults(directory));
+        assertEquals(0, new BinaryPayloadRenderer().renderResults(directory));
+
+        final Attachment responses = attachment(firstStep(allureResults), "gRPC responses");
+        final String rendered = responses.getSource().replace(BinaryPayloadFormat.FILE_EXTENSION, ".json");
+        assertEquals(ProtoFormatter.builder().build().print(replies), read(directory.resolve(rendered)));
+        assertFalse(Files.exists(directory.resolve(responses.getSource())));
+        try (Stream<Path> files = Files.list(directory)) {
+            final String results = files.filter(x -> x.toString().endsWith("-result.json"))
+                    .map(BinaryPayloadRendererTest::read)
+                    .collect(Collectors.joining());
+            assertTrue(results.contains("\"source\":\"" + rendered + "\",\"type\":\"application/json\""));
+            assertFalse(results.contains(BinaryPayloadFormat.MIME_TYPE));
+        }
+    }
+
+    @Test
+    public void decompressedResultsAreRendered() throws IOException {
+        final GreeterGrpc.GreeterBlockingStub greeter = greeter(
+                AllureGrpcClientInterceptor.builder()
+                        .attachmentCompression(AttachmentCompression.gzip(0))
+                        .payloadBufferPolicy(PayloadBufferPolicy.binary())
+                        .build(),
+                1);
+        final AllureResults allureResults = RunUtils.runWithinTestContext(() -> greeter.sayHello(request));
+        write(allureResults);
+
+        assertEquals(5, AttachmentCompression.decompressResults(directory));
+        assertEquals(2, new BinaryPayloadRenderer().renderResults(directory));
+
+        final String response = attachment(firstStep(allureResults), "gRPC responses").getSource();
+        assertTrue(read(directory.resolve(response.replace(".binpb.gz", ".json"))).contains("Hi Binary"));
+    }
+
+    @Test
+    public void anyOfTypeFromLaterDescriptorSetIsRendered() throws IOException, DescriptorValidationException {
+        final Descriptor noteType = FileDescriptor.buildFrom(
+                        FileDescriptorProto.newBuilder()
+                                .setName("note.proto")
+                                .setPackage("notes")
+                                .setSyntax("proto3")
+                                .addMessageType(DescriptorProto.newBuilder()
+                                        .setName("Note")
+                                        .addField(FieldDescriptorProto.newBuilder()
+                                                .setName("text")
+                                                .setNumber(1)
+                                                .setType(FieldDescriptorProto.Type.TYPE_STRING)
+                                                .setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL)))
+                                .build(),
+                        new FileDescriptor[0])
+                .findMessageTypeByName("Note");
+        final Message note = DynamicMessage.newBuilder(noteType)
+                .setField(noteType.findFieldByName("text"), "packed later")
+                .build();
+        final Message first = AllTypes.newBuilder().setAny(Any.pack(note)).build();
+        writeDescriptorSet("first", AllTypes.getDescriptor().getFile());
+        writeDescriptorSet("second", noteType.getFile());
+
+        final Path binary = directory.resolve("notes" + BinaryPayloadFormat.FILE_EXTENSION);
+        try (OutputStream out = Files.newOutputStream(binary)) {
+            descriptorSetSource("first").writeDelimitedTo(out);
+            Any.pack(first).writeDelimitedTo(out);
+            descriptorSetSource("second").writeDelimitedTo(out);
+            Any.pack(note).writeDelimitedTo(out);
+        }
+
+        final StringBuilder out = new StringBuilder();
+        try (InputStream in = Files.newInputStream(binary)) {
+            new BinaryPayloadRenderer().render(in, directory, out);
+        }
+        final ProtoFormatter formatter = ProtoFormatter.builder()
+                .typeRegistry(TypeRegistry.newBuilder().add(noteType).build())
+                .build();
+        assertEquals(formatter.print(Arrays.asList(first, note)), out.toString());
+        assertTrue(out.toString().contains("\"text\": \"packed later\""));
+    }
+
+    @Test
+    public void lostMessagesAreRenderedAsMarker() throws IOException {
+        final Path binary = directory.resolve("lost" + BinaryPayloadFormat.FILE_EXTENSION);
+        try (OutputStream out = Files.newOutputStream(binary)) {
+            Any.newBuilder()
+                    .setTypeUrl(BinaryPayloadFormat.LOST_TYPE_URL)
+                    .setValue(UInt64Value.of(7).toByteString())
+                    .build()
+                    .writeDelimitedTo(out);
+        }
+
+        final StringBuilder out = new StringBuilder();
+        try (InputStream in = Files.newInputStream(binary)) {
+            new BinaryPayloadRenderer().render(in, directory, out);
+        }
+        assertEquals("[\n  \"[lost: 7 messages could not be kept for the attachment]\"\n]", out.toString());
+    }
+
+    @Test
+    public void emptyAttachmentIsRenderedEmpty() throws IOException {
+        final StringBuilder out = new StringBuilder();
+        new BinaryPayloadRenderer().render(new ByteArrayInputStream(new byte[0]), directory, out);
+        assertEquals("", out.toString());
+    }
+
+    private GreeterGrpc.GreeterBlockingStub greeter(
+            final AllureGrpcClientInterceptor interceptor, final int streamRepeats) throws IOException {
+        final String name = "binary-renderer-" + UUID.randomUUID();
+        server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(new GreeterGrpc.GreeterImplBase() {
+                    @Override
+                    public void sayHello(final HelloRequest request, final StreamObserver<HelloReply> observer) {
+                        observer.onNext(reply("Hi " + request.getName()));
+                        observer.onCompleted();
+                    }
+
+                    @Override
+                    public void sayHelloStream(final HelloRequest request, final StreamObserver<HelloReply> observer) {
+                        for (int i = 0; i < streamRepeats; i++) {
+                            observer.onNext(reply("Hi " + request.getName()));
+                            observer.onNext(reply("And again Hi " + request.getName()));
+                        }
+                        observer.onCompleted();
+                    }
+                })
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name)
+                .directExecutor()
+                .intercept(interceptor)
+                .build();
+        return GreeterGrpc.newBlockingStub(channel);
+    }
+
+    private void write(final AllureResults allureResults) {
+        final FileSystemResultsWriter writer = new FileSystemResultsWriter(directory);
+        allureResults.getTestResults().forEach(writer::write);
+        allureResults
+                .getAttachments()
+                .forEach((source, content) -> writer.write(source, new ByteArrayInputStream(content)));
+    }
+
+    private String render(final StepResult step, final String name) throws IOException {
+        final Attachment attachment = attachment(step, name);
+        assertEquals(BinaryPayloadFormat.MIME_TYPE, attachment.getType());
+        final StringBuilder out = new StringBuilder();
+        try (InputStream in = Files.newInputStream(directory.resolve(attachment.getSource()))) {
+            new BinaryPayloadRenderer().render(in, directory, out);
+        }
+        return out.toString();
+    }
+
+    private void writeDescriptorSet(final String name, final FileDescriptor file) throws IOException {
+        final Map<String, FileDescriptor> files = new LinkedHashMap<>();
+        addWithDependencies(file, files);
+        final FileDescriptorSet.Builder set = FileDescriptorSet.newBuilder();
+        files.values().forEach(x -> set.addFile(x.toProto()));
+        Files.write(directory.resolve(name + BinaryPayloadFormat.DESCRIPTOR_SET_SUFFIX), set.build().toByteArray());
+    }
+
+    private static void addWithDependencies(final FileDescriptor file, final Map<String, FileDescriptor> files) {
+        if (files.containsKey(file.getName())) return;
+        file.getDependencies().forEach(x -> addWithDependencies(x, files));
+        files.put(file.getName(), file);
+    }
+
+    private static Any descriptorSetSource(final String name) {
+        return Any.newBuilder()
+                .setTypeUrl(BinaryPayloadFormat.DESCRIPTOR_SET_SOURCE_TYPE_URL)
+                .setValue(StringValue.newBuilder()
+                        .setValue(name + BinaryPayloadFormat.DESCRIPTOR_SET_SUFFIX)
+                        .build()
+                        .toByteString())
+                .build();
+    }
+
+    private static HelloReply reply(final String message) {
+        return HelloReply.newBuilder().setMessage(message).build();
+    }
+
+    private static StepResult firstStep(final AllureResults allureResults) {
+        return allureResults.getTestResults().get(0).getSteps().get(0);
+    }
+
+    private static Attachment attachment(final StepResult step, final String name) {
+        return step.getAttachments().stream()
+                .filter(x -> x.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("no attachment " + name));
+    }
+
+    private static String read(final Path file) {
+        try {
+            return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
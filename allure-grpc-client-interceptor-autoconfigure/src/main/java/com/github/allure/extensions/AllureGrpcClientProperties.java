@@ -0,0 +1,171 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import io.grpc.MethodDescriptor;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings of interceptor registered by {@link AllureGrpcInterceptorConfiguration}, bound from
+ * {@code allure.grpc.client.*} properties.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = AllureGrpcClientProperties.PREFIX)
+public class AllureGrpcClientProperties {
+
+    public static final String PREFIX = "allure.grpc.client";
+
+    /**
+     * Registering the interceptor, false registers nothing at all
+     */
+    private boolean enabled = true;
+
+    /**
+     * Attaching arrival time of each message of streaming directions
+     */
+    private boolean messageTimestamps = true;
+
+    /**
+     * Adding timing and sizes of each call as step parameters
+     */
+    private boolean callMetrics;
+
+    /**
+     * Metadata keys which values are attached as [redacted], case insensitive
+     */
+    private List<String> redactedMetadata =
+            new ArrayList<>(Arrays.asList("authorization", "proxy-authorization", "cookie"));
+
+    private final Format format = new Format();
+    private final Attachments attachments = new Attachments();
+    private final Buffer buffer = new Buffer();
+    private final Sampling sampling = new Sampling();
+    private final Filter filter = new Filter();
+    private final Micrometer micrometer = new Micrometer();
+
+    /**
+     * Formatter options and size limits, formatter follows deprecated ProtoFormatter.FORMAT_PROTO_TO_JSON when none is
+     * set
+     */
+    @Getter
+    @Setter
+    public static class Format {
+        private Boolean json;
+        private Boolean preservingProtoFieldNames;
+        private Boolean includingDefaultValueFields;
+        private Boolean printingEnumsAsInts;
+        private Boolean omittingInsignificantWhitespace;
+        private Integer maxFieldSize;
+        private Integer maxRepeatedElements;
+        private Integer maxMessageSize;
+        private Long maxAttachmentSize;
+    }
+
+    /**
+     * Attachment writer options, attachments are written inline on gRPC callback threads unless async is set
+     */
+    @Getter
+    @Setter
+    public static class Attachments {
+        private boolean async = false;
+        private int queueCapacity = AsyncAttachmentWriter.DEFAULT_QUEUE_CAPACITY;
+        private Duration flushTimeout = Duration.ofMillis(AsyncAttachmentWriter.DEFAULT_FLUSH_TIMEOUT_MILLIS);
+        private AsyncAttachmentWriter.Overflow overflow = AsyncAttachmentWriter.Overflow.RUN_INLINE;
+        private AsyncAttachmentWriter.WorkerThread workerThread = AsyncAttachmentWriter.WorkerThread.PLATFORM;
+        private Compression compression = Compression.NONE;
+        private DataSize compressionThreshold = DataSize.ofMegabytes(1);
+
+        public enum Compression {
+            NONE,
+            GZIP
+        }
+    }
+
+    /**
+     * Payload buffer options, see {@link PayloadBufferPolicy}
+     */
+    @Getter
+    @Setter
+    public static class Buffer {
+        private Mode mode = Mode.UNBOUNDED;
+        private int head = 100;
+        private int tail = 100;
+        private Path directory;
+        private DataSize segmentSize = DataSize.ofMegabytes(16);
+
+        public enum Mode {
+            UNBOUNDED,
+            HEAD_TAIL,
+            INCREMENTAL,
+            BINARY
+        }
+    }
+
+    /**
+     * Sampling options, see {@link SamplingPolicy}. Only one of every-nth, rate and failures-only could be set, methods
+     * override it by full method name or service name.
+     */
+    @Getter
+    @Setter
+    public static class Sampling {
+        private Integer everyNth;
+        private Double rate;
+        private boolean failuresOnly = false;
+        private Map<String, Double> methods = new LinkedHashMap<>();
+    }
+
+    /**
+     * Method filter rules, see {@link MethodFilter}
+     */
+    @Getter
+    @Setter
+    public static class Filter {
+        private List<String> includeMethods = new ArrayList<>();
+        private List<String> includeServices = new ArrayList<>();
+        private List<MethodDescriptor.MethodType> includeTypes = new ArrayList<>();
+        private List<String> excludeMethods = new ArrayList<>();
+        private List<String> excludeServices = new ArrayList<>();
+        private List<MethodDescriptor.MethodType> excludeTypes = new ArrayList<>();
+    }
+
+    /**
+     * Publishing overhead of the interceptor to Micrometer, only when a MeterRegistry bean is declared
+     */
+    @Getter
+    @Setter
+    public static class Micrometer {
+        private boolean enabled = true;
+    }
+}
@@ -23,20 +23,182 @@
  */
 package com.github.allure.extensions;
 
+import io.grpc.MethodDescriptor;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import net.devh.boot.grpc.client.interceptor.GlobalClientInterceptorConfigurer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 
 /**
- * Editing interceptor list in GlobalClientInterceptorConfigurer
+ * Editing interceptor list in GlobalClientInterceptorConfigurer, interceptor is built from
+ * {@code allure.grpc.client.*} properties unless an interceptor bean is declared. Declared AttachmentWriter bean is
+ * used instead of the writer configured by properties. Nothing is registered with
+ * {@code allure.grpc.client.enabled=false}. Overhead of the interceptor is published to Micrometer when a MeterRegistry
+ * bean is declared, unless InterceptorMetrics bean is declared or {@code allure.grpc.client.micrometer.enabled=false}.
  */
 @Configuration
+@AutoConfigureAfter(
+        name = {
+            "org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration",
+            "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration"
+        })
+@ConditionalOnProperty(prefix = AllureGrpcClientProperties.PREFIX, name = "enabled", matchIfMissing = true)
+@EnableConfigurationProperties(AllureGrpcClientProperties.class)
 public class AllureGrpcInterceptorConfiguration {
 
+    @Bean
+    @ConditionalOnMissingBean(AttachmentWriter.class)
+    @ConditionalOnProperty(prefix = AllureGrpcClientProperties.PREFIX, name = "attachments.async")
+    AsyncAttachmentWriter allureGrpcAttachmentWriter(
+            final AllureGrpcClientProperties properties, final ObjectProvider<InterceptorMetrics> interceptorMetrics) {
+        final AllureGrpcClientProperties.Attachments attachments = properties.getAttachments();
+        return AsyncAttachmentWriter.builder()
+                .queueCapacity(attachments.getQueueCapacity())
+                .flushTimeoutMillis(attachments.getFlushTimeout().toMillis())
+                .overflow(attachments.getOverflow())
+                .workerThread(attachments.getWorkerThread())
+                .metrics(interceptorMetrics.getIfAvailable(() -> InterceptorMetrics.NOOP))
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    AllureGrpcClientInterceptor allureGrpcClientInterceptor(
+            final AllureGrpcClientProperties properties,
+            final ObjectProvider<AttachmentWriter> attachmentWriter,
+            final ObjectProvider<InterceptorMetrics> interceptorMetrics) {
+        return AllureGrpcClientInterceptor.builder()
+                .protoFormatter(protoFormatter(properties.getFormat()))
+                .attachmentWriter(attachmentWriter.getIfAvailable(() -> AttachmentWriter.INLINE))
+                .payloadBufferPolicy(payloadBufferPolicy(properties.getBuffer()))
+                .messageTimestamps(properties.isMessageTimestamps())
+                .callMetrics(properties.isCallMetrics())
+                .metadataRenderer(MetadataRenderer.redacting(properties.getRedactedMetadata()))
+                .samplingPolicy(samplingPolicy(properties.getSampling()))
+                .methodFilter(methodFilter(properties.getFilter()))
+                .attachmentCompression(attachmentCompression(properties.getAttachments()))
+                .interceptorMetrics(interceptorMetrics.getIfAvailable(() -> InterceptorMetrics.NOOP))
+                .build();
+    }
+
     @Bean
     @Primary
-    GlobalClientInterceptorConfigurer globalClientInterceptorConfigurer() {
-        return interceptors -> interceptors.add(new AllureGrpcClientInterceptor());
+    GlobalClientInterceptorConfigurer globalClientInterceptorConfigurer(
+            final AllureGrpcClientInterceptor allureGrpcClientInterceptor) {
+        return interceptors -> interceptors.add(allureGrpcClientInterceptor);
+    }
+
+    static ProtoFormatter protoFormatter(final AllureGrpcClientProperties.Format format) {
+        if (format.getJson() == null
+                && format.getPreservingProtoFieldNames() == null
+                && format.getIncludingDefaultValueFields() == null
+                && format.getPrintingEnumsAsInts() == null
+                && format.getOmittingInsignificantWhitespace() == null
+                && format.getMaxFieldSize() == null
+                && format.getMaxRepeatedElements() == null
+                && format.getMaxMessageSize() == null
+                && format.getMaxAttachmentSize() == null) {
+            return null;
+        }
+        final ProtoFormatter.Builder builder = ProtoFormatter.builder();
+        if (format.getJson() != null) builder.formatToJson(format.getJson());
+        if (format.getPreservingProtoFieldNames() != null) {
+            builder.preservingProtoFieldNames(format.getPreservingProtoFieldNames());
+        }
+        if (format.getIncludingDefaultValueFields() != null) {
+            builder.includingDefaultValueFields(format.getIncludingDefaultValueFields());
+        }
+        if (format.getPrintingEnumsAsInts() != null) builder.printingEnumsAsInts(format.getPrintingEnumsAsInts());
+        if (format.getOmittingInsignificantWhitespace() != null) {
+            builder.omittingInsignificantWhitespace(format.getOmittingInsignificantWhitespace());
+        }
+        if (format.getMaxFieldSize() != null) builder.maxFieldSize(format.getMaxFieldSize());
+        if (format.getMaxRepeatedElements() != null) builder.maxRepeatedElements(format.getMaxRepeatedElements());
+        if (format.getMaxMessageSize() != null) builder.maxMessageSize(format.getMaxMessageSize());
+        if (format.getMaxAttachmentSize() != null) builder.maxAttachmentSize(format.getMaxAttachmentSize());
+        return builder.build();
+    }
+
+    static AttachmentCompression attachmentCompression(final AllureGrpcClientProperties.Attachments attachments) {
+        return attachments.getCompression() == AllureGrpcClientProperties.Attachments.Compression.GZIP
+                ? AttachmentCompression.gzip(attachments.getCompressionThreshold().toBytes())
+                : AttachmentCompression.none();
+    }
+
+    static PayloadBufferPolicy payloadBufferPolicy(final AllureGrpcClientProperties.Buffer buffer) {
+        switch (buffer.getMode()) {
+            case HEAD_TAIL:
+                return PayloadBufferPolicy.headTail(
+                        buffer.getHead(),
+                        buffer.getTail(),
+                        buffer.getDirectory(),
+                        Math.toIntExact(buffer.getSegmentSize().toBytes()));
+            case INCREMENTAL:
+                return PayloadBufferPolicy.incremental(buffer.getDirectory());
+            case BINARY:
+                return PayloadBufferPolicy.binary(buffer.getDirectory());
+            default:
+                return PayloadBufferPolicy.unbounded();
+        }
+    }
+
+    static SamplingPolicy samplingPolicy(final AllureGrpcClientProperties.Sampling sampling) {
+        final int options = (sampling.getEveryNth() != null ? 1 : 0)
+                + (sampling.getRate() != null ? 1 : 0)
+                + (sampling.isFailuresOnly() ? 1 : 0);
+        if (options > 1) {
+            throw new IllegalArgumentException("Only one of " + AllureGrpcClientProperties.PREFIX
+                    + ".sampling.every-nth, rate and failures-only could be set");
+        }
+        final SamplingPolicy policy;
+        if (sampling.getEveryNth() != null) policy = SamplingPolicy.everyNth(sampling.getEveryNth());
+        else if (sampling.getRate() != null) policy = SamplingPolicy.rate(sampling.getRate());
+        else if (sampling.isFailuresOnly()) policy = SamplingPolicy.failuresOnly();
+        else policy = SamplingPolicy.always();
+        if (sampling.getMethods().isEmpty()) return policy;
+
+        final Map<String, SamplingPolicy> methods = new LinkedHashMap<>();
+        sampling.getMethods().forEach((method, rate) -> methods.put(method, SamplingPolicy.rate(rate)));
+        return SamplingPolicy.perMethod(methods, policy);
+    }
+
+    static MethodFilter methodFilter(final AllureGrpcClientProperties.Filter filter) {
+        return MethodFilter.builder()
+                .includeMethods(filter.getIncludeMethods().toArray(new String[0]))
+                .includeServices(filter.getIncludeServices().toArray(new String[0]))
+                .includeTypes(filter.getIncludeTypes().toArray(new MethodDescriptor.MethodType[0]))
+                .excludeMethods(filter.getExcludeMethods().toArray(new String[0]))
+                .excludeServices(filter.getExcludeServices().toArray(new String[0]))
+                .excludeTypes(filter.getExcludeTypes().toArray(new MethodDescriptor.MethodType[0]))
+                .build();
+    }
+
+    /**
+     * Meters of interceptor overhead, bound to the registry of Micrometer when it is declared, otherwise every call
+     * would pay for call metrics which are published nowhere
+     */
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+    @ConditionalOnBean(type = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnProperty(
+            prefix = AllureGrpcClientProperties.PREFIX,
+            name = "micrometer.enabled",
+            matchIfMissing = true)
+    static class MicrometerConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(InterceptorMetrics.class)
+        MicrometerInterceptorMetrics allureGrpcInterceptorMetrics() {
+            return new MicrometerInterceptorMetrics();
+        }
     }
 }
@@ -0,0 +1,145 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import io.grpc.MethodDescriptor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters of the own overhead of interceptors, tagged by full method name. Meters are registered lazily for
+ * each method, events before the binder is bound to a registry are not recorded.
+ *
+ * <ul>
+ *   <li>{@code allure.grpc.attachments.format} - time of formatting captured messages of a call
+ *   <li>{@code allure.grpc.attachments.write} - time of writing one attachment to allure results
+ *   <li>{@code allure.grpc.attachments.size} - size of one attachment before compression
+ *   <li>{@code allure.grpc.calls.messages} - messages captured for a call in both directions
+ *   <li>{@code allure.grpc.calls.sampled.out} - calls not captured by sampling policy
+ *   <li>{@code allure.grpc.attachments.tasks.rejected} - attachment tasks executed on gRPC threads because the queue
+ *       of asynchronous writer was full
+ * </ul>
+ */
+public class MicrometerInterceptorMetrics implements InterceptorMetrics, MeterBinder {
+
+    static final String METHOD_TAG = "method";
+
+    private final ConcurrentMap<String, MethodMeters> methods = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+    private volatile Counter rejected;
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        this.rejected = Counter.builder("allure.grpc.attachments.tasks.rejected")
+                .description("Attachment tasks executed on gRPC threads because the writer queue was full")
+                .register(registry);
+        this.registry = registry;
+    }
+
+    @Override
+    public void callSampledOut(final MethodDescriptor<?, ?> method) {
+        final MethodMeters meters = meters(method);
+        if (meters != null) meters.sampledOut.increment();
+    }
+
+    @Override
+    public void callCaptured(final MethodDescriptor<?, ?> method, final int messages) {
+        final MethodMeters meters = meters(method);
+        if (meters != null) meters.messages.record(messages);
+    }
+
+    @Override
+    public void payloadsFormatted(final MethodDescriptor<?, ?> method, final long nanos) {
+        final MethodMeters meters = meters(method);
+        if (meters != null) meters.format.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void attachmentWritten(final MethodDescriptor<?, ?> method, final long nanos, final long bytes) {
+        final MethodMeters meters = meters(method);
+        if (meters == null) return;
+        meters.write.record(nanos, TimeUnit.NANOSECONDS);
+        meters.size.record(bytes);
+    }
+
+    @Override
+    public void attachmentTaskRejected() {
+        final Counter counter = rejected;
+        if (counter != null) counter.increment();
+    }
+
+    private MethodMeters meters(final MethodDescriptor<?, ?> method) {
+        final MeterRegistry boundRegistry = registry;
+        if (boundRegistry == null) return null;
+        final String name = method.getFullMethodName();
+        final MethodMeters meters = methods.get(name);
+        return meters != null ? meters : methods.computeIfAbsent(name, x -> new MethodMeters(boundRegistry, x));
+    }
+
+    /**
+     * Meters of one method
+     */
+    private static final class MethodMeters {
+        final Timer format;
+        final Timer write;
+        final DistributionSummary size;
+        final DistributionSummary messages;
+        final Counter sampledOut;
+
+        MethodMeters(final MeterRegistry registry, final String method) {
+            this.format = Timer.builder("allure.grpc.attachments.format")
+                    .description("Time of formatting captured messages of a call")
+                    .tag(METHOD_TAG, method)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            this.write = Timer.builder("allure.grpc.attachments.write")
+                    .description("Time of writing one attachment to allure results")
+                    .tag(METHOD_TAG, method)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            this.size = DistributionSummary.builder("allure.grpc.attachments.size")
+                    .description("Size of one attachment before compression")
+                    .baseUnit("bytes")
+                    .tag(METHOD_TAG, method)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            this.messages = DistributionSummary.builder("allure.grpc.calls.messages")
+                    .description("Messages captured for a call in both directions")
+                    .baseUnit("messages")
+                    .tag(METHOD_TAG, method)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            this.sampledOut = Counter.builder("allure.grpc.calls.sampled.out")
+                    .description("Calls not captured by sampling policy")
+                    .tag(METHOD_TAG, method)
+                    .register(registry);
+        }
+    }
+}
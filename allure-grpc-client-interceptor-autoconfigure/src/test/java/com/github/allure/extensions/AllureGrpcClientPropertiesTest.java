@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.grpc.MethodDescriptor;
+import java.util.Collections;
+import net.devh.boot.grpc.client.interceptor.GlobalClientInterceptorConfigurer;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+/**
+ * Interceptor should be built from allure.grpc.client properties and not registered at all when disabled.
+ */
+public class AllureGrpcClientPropertiesTest {
+
+    final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(AllureGrpcInterceptorConfiguration.class));
+
+    @Test
+    public void interceptorIsRegisteredByDefault() {
+        contextRunner.run(context -> {
+            assertThat(context).hasSingleBean(AllureGrpcClientInterceptor.class);
+            assertThat(context).hasSingleBean(GlobalClientInterceptorConfigurer.class);
+            assertThat(context).doesNotHaveBean(AsyncAttachmentWriter.class);
+        });
+    }
+
+    @Test
+    public void nothingIsRegisteredWhenDisabled() {
+        contextRunner.withPropertyValues("allure.grpc.client.enabled=false").run(context -> {
+            assertThat(context).doesNotHaveBean(AllureGrpcClientInterceptor.class);
+            assertThat(context).doesNotHaveBean(GlobalClientInterceptorConfigurer.class);
+            assertThat(context).doesNotHaveBean(AllureGrpcClientProperties.class);
+        });
+    }
+
+    @Test
+    public void propertiesAreBound() {
+        contextRunner
+                .withPropertyValues(
+                        "allure.grpc.client.attachments.async=true",
+                        "allure.grpc.client.attachments.queue-capacity=16",
+                        "allure.grpc.client.attachments.flush-timeout=5s",
+                        "allure.grpc.client.attachments.overflow=block",
+                        "allure.grpc.client.attachments.worker-thread=virtual",
+                        "allure.grpc.client.attachments.compression=gzip",
+                        "allure.grpc.client.attachments.compression-threshold=64KB",
+                        "allure.grpc.client.buffer.mode=head-tail",
+                        "allure.grpc.client.buffer.head=10",
+                        "allure.grpc.client.buffer.segment-size=4MB",
+                        "allure.grpc.client.format.json=false",
+                        "allure.grpc.client.message-timestamps=false",
+                        "allure.grpc.client.redacted-metadata=authorization,x-api-key",
+                        "allure.grpc.client.sampling.every-nth=10",
+                        "allure.grpc.client.sampling.methods[grpc.health.v1.Health]=0",
+                        "allure.grpc.client.filter.exclude-types=BIDI_STREAMING,CLIENT_STREAMING")
+                .run(context -> {
+                    assertThat(context).hasSingleBean(AsyncAttachmentWriter.class);
+                    assertThat(context).hasSingleBean(AllureGrpcClientInterceptor.class);
+                    final AllureGrpcClientProperties properties = context.getBean(AllureGrpcClientProperties.class);
+                    assertThat(properties.getAttachments().getFlushTimeout().getSeconds()).isEqualTo(5);
+                    assertThat(properties.getAttachments().getOverflow())
+                            .isEqualTo(AsyncAttachmentWriter.Overflow.BLOCK);
+                    assertThat(properties.getAttachments().getWorkerThread())
+                            .isEqualTo(AsyncAttachmentWriter.WorkerThread.VIRTUAL);
+                    assertThat(properties.getAttachments().getCompression())
+                            .isEqualTo(AllureGrpcClientProperties.Attachments.Compression.GZIP);
+                    assertThat(properties.getAttachments().getCompressionThreshold().toKilobytes()).isEqualTo(64);
+                    assertThat(properties.getBuffer().getMode())
+                            .isEqualTo(AllureGrpcClientProperties.Buffer.Mode.HEAD_TAIL);
+                    assertThat(properties.getBuffer().getTail()).isEqualTo(100);
+                    assertThat(properties.getBuffer().getSegmentSize().toMegabytes()).isEqualTo(4);
+                    assertThat(properties.getFormat().getJson()).isFalse();
+                    assertThat(properties.isMessageTimestamps()).isFalse();
+                    assertThat(properties.getRedactedMetadata()).containsExactly("authorization", "x-api-key");
+                    assertThat(properties.getSampling().getMethods()).containsEntry("grpc.health.v1.Health", 0.0);
+                    assertThat(properties.getFilter().getExcludeTypes())
+                            .containsExactly(
+                                    MethodDescriptor.MethodType.BIDI_STREAMING,
+                                    MethodDescriptor.MethodType.CLIENT_STREAMING);
+                });
+    }
+
+    @Test
+    public void conflictingSamplingOptionsFailContext() {
+        contextRunner
+                .withPropertyValues("allure.grpc.client.sampling.every-nth=10", "allure.grpc.client.sampling.rate=0.5")
+                .run(context -> assertThat(context).hasFailed());
+    }
+
+    @Test
+    public void formatterIsBuiltOnlyWhenConfigured() {
+        final AllureGrpcClientProperties properties = new AllureGrpcClientProperties();
+        assertThat(AllureGrpcInterceptorConfiguration.protoFormatter(properties.getFormat())).isNull();
+        properties.getFormat().setOmittingInsignificantWhitespace(true);
+        assertThat(AllureGrpcInterceptorConfiguration.protoFormatter(properties.getFormat())).isNotNull();
+    }
+
+    @Test
+    public void samplingOfMethodOverridesDefault() {
+        final AllureGrpcClientProperties.Sampling sampling = new AllureGrpcClientProperties.Sampling();
+        sampling.setFailuresOnly(true);
+        sampling.setMethods(Collections.singletonMap(GreeterGrpc.getSayHelloMethod().getFullMethodName(), 1.0));
+        final SamplingPolicy policy = AllureGrpcInterceptorConfiguration.samplingPolicy(sampling);
+        assertTrue(policy.isSampled(GreeterGrpc.getSayHelloMethod()));
+        assertFalse(policy.isSampled(GreeterGrpc.getSayHelloStreamMethod()));
+    }
+}
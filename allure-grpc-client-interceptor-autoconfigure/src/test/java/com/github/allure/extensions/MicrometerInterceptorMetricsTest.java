@@ -0,0 +1,122 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+/**
+ * Overhead of the interceptor should be published to Micrometer, tagged by method.
+ */
+public class MicrometerInterceptorMetricsTest {
+
+    final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(AllureGrpcInterceptorConfiguration.class));
+
+    @Test
+    public void metricsAreRegisteredWithMeterRegistry() {
+        contextRunner
+                .withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+                .run(context -> assertThat(context).hasSingleBean(MicrometerInterceptorMetrics.class));
+    }
+
+    @Test
+    public void metricsAreNotRegisteredWithoutMeterRegistry() {
+        contextRunner.run(context -> {
+            assertThat(context).doesNotHaveBean(MicrometerInterceptorMetrics.class);
+            assertThat(context.getBean(AllureGrpcClientInterceptor.class))
+                    .extracting("options.interceptorMetrics")
+                    .isSameAs(InterceptorMetrics.NOOP);
+        });
+    }
+
+    @Test
+    public void metricsCouldBeTurnedOff() {
+        contextRunner
+                .withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+                .withPropertyValues(AllureGrpcClientProperties.PREFIX + ".micrometer.enabled=false")
+                .run(context -> assertThat(context).doesNotHaveBean(MicrometerInterceptorMetrics.class));
+    }
+
+    @Test
+    public void declaredMetricsTakePrecedence() {
+        contextRunner
+                .withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+                .withBean(InterceptorMetrics.class, () -> InterceptorMetrics.NOOP)
+                .run(context -> assertThat(context).doesNotHaveBean(MicrometerInterceptorMetrics.class));
+    }
+
+    @Test
+    public void metersAreTaggedByMethod() {
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        final MicrometerInterceptorMetrics metrics = new MicrometerInterceptorMetrics();
+        metrics.callSampledOut(GreeterGrpc.getSayHelloMethod());
+        metrics.bindTo(registry);
+
+        metrics.callSampledOut(GreeterGrpc.getSayHelloMethod());
+        metrics.callCaptured(GreeterGrpc.getSayHelloStreamMethod(), 11);
+        metrics.payloadsFormatted(GreeterGrpc.getSayHelloStreamMethod(), 2_000_000);
+        metrics.attachmentWritten(GreeterGrpc.getSayHelloStreamMethod(), 1_000_000, 512);
+        metrics.attachmentWritten(GreeterGrpc.getSayHelloStreamMethod(), 3_000_000, 1024);
+        metrics.attachmentTaskRejected();
+
+        final String stream = GreeterGrpc.getSayHelloStreamMethod().getFullMethodName();
+        assertThat(registry.get("allure.grpc.calls.sampled.out")
+                        .tag("method", GreeterGrpc.getSayHelloMethod().getFullMethodName())
+                        .counter()
+                        .count())
+                .isEqualTo(1);
+        assertThat(registry.get("allure.grpc.calls.messages")
+                        .tag("method", stream)
+                        .summary()
+                        .totalAmount())
+                .isEqualTo(11);
+        assertThat(registry.get("allure.grpc.attachments.format")
+                        .tag("method", stream)
+                        .timer()
+                        .totalTime(TimeUnit.MILLISECONDS))
+                .isEqualTo(2);
+        final Timer write = registry.get("allure.grpc.attachments.write")
+                .tag("method", stream)
+                .timer();
+        assertThat(write.count()).isEqualTo(2);
+        assertThat(write.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(4);
+        assertThat(registry.get("allure.grpc.attachments.size")
+                        .tag("method", stream)
+                        .summary()
+                        .totalAmount())
+                .isEqualTo(1536);
+        assertThat(registry.get("allure.grpc.attachments.tasks.rejected")
+                        .counter()
+                        .count())
+                .isEqualTo(1);
+    }
+}
@@ -37,98 +37,189 @@ import io.qameta.allure.Allure;
 import io.qameta.allure.AllureLifecycle;
 import io.qameta.allure.model.StepResult;
 import io.qameta.allure.util.ObjectUtils;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.UUID;
-import lombok.SneakyThrows;
 
 /**
- * With this interceptor grpc client will attach all interaction data to Allure report.
+ * With this interceptor grpc client will attach all interaction data to Allure report. Each call is attached to the
+ * test or step resolved when the call is intercepted, see {@link AllureGrpcParent}, calls made outside of tests are not
+ * recorded.
  *
  * @see ClientInterceptor
  */
 public class AllureGrpcClientInterceptor implements ClientInterceptor {
 
-    private static InheritableThreadLocal<AllureLifecycle> lifecycle = new InheritableThreadLocal<AllureLifecycle>() {
-        @Override
-        protected AllureLifecycle initialValue() {
-            return Allure.getLifecycle();
-        }
-    };
+    private final InterceptorOptions options;
+
+    /**
+     * Interceptor formatting messages with default formatter chosen by deprecated ProtoFormatter.FORMAT_PROTO_TO_JSON
+     */
+    public AllureGrpcClientInterceptor() {
+        this(null, AttachmentWriter.INLINE);
+    }
+
+    /**
+     * @param protoFormatter formatter of request and response messages
+     */
+    public AllureGrpcClientInterceptor(final ProtoFormatter protoFormatter) {
+        this(protoFormatter, AttachmentWriter.INLINE);
+    }
+
+    /**
+     * @param attachmentWriter strategy of formatting and persisting attachments, for example
+     *                         {@link AsyncAttachmentWriter} to move this work off the gRPC callback threads
+     */
+    public AllureGrpcClientInterceptor(final AttachmentWriter attachmentWriter) {
+        this(null, attachmentWriter);
+    }
+
+    /**
+     * @param protoFormatter   formatter of request and response messages
+     * @param attachmentWriter strategy of formatting and persisting attachments
+     */
+    public AllureGrpcClientInterceptor(final ProtoFormatter protoFormatter, final AttachmentWriter attachmentWriter) {
+        this(builder().protoFormatter(protoFormatter).attachmentWriter(attachmentWriter));
+    }
+
+    private AllureGrpcClientInterceptor(final Builder builder) {
+        this.options = builder.options();
+    }
+
+    /**
+     * @return builder of interceptor with inline attachment writer, unbounded payload buffer and all calls sampled
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
 
     @Override
     public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
             MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions, Channel channel) {
+        if (!options.methodFilter.matches(methodDescriptor) || CallCapture.isCapturing(methodDescriptor)) {
+            return channel.newCall(methodDescriptor, callOptions);
+        }
+        final StepParent parent = StepParent.client(callOptions);
+        if (parent == null) return channel.newCall(methodDescriptor, callOptions);
         final ClientCall<ReqT, RespT> call = channel.newCall(methodDescriptor, callOptions);
+        if (!options.samplingPolicy.isSampled(methodDescriptor)) {
+            options.interceptorMetrics.callSampledOut(methodDescriptor);
+            return unsampledCall(methodDescriptor, call, parent);
+        }
+        final ProtoFormatter formatter = options.formatter();
+        final MethodDescriptor.MethodType methodType = methodDescriptor.getType();
 
         /*
          * Returning wrapper for original delegated client call with some logic for allure attachments
          */
         return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(call) {
-            private String allureStepUUID;
-            private List<Message> payloads;
+            /*
+             * Set once when the call is started, requests could be sent from other threads afterwards
+             */
+            private volatile CallRecording recording;
 
             /**
-             * Attaching all request data instantly and async-attaching responses, headers and status
+             * Capturing request message, requests are attached when the call is closed
              *
              * @param message request proto message
              */
             @Override
-            @SneakyThrows
             public void sendMessage(ReqT message) {
-                allureStepUUID = UUID.randomUUID().toString();
-                payloads = new ArrayList<>();
-                Allure.getLifecycle()
-                        .startStep(
-                                allureStepUUID,
-                                new StepResult().setName("gRPC interaction " + methodDescriptor.getFullMethodName()));
-                Allure.addAttachment("gRPC method", ObjectUtils.toString(methodDescriptor));
-                Allure.addAttachment("gRPC request", ObjectUtils.toString(ProtoFormatter.format((Message) message)));
+                recording.request((Message) message);
                 super.sendMessage(message);
             }
 
             /**
-             * Declaring listener to update references in top-leve containers on any changes
+             * Starting one step for the whole call and declaring listener to capture responses and close the step
              *
              * @param responseListener delegated listener
              * @param headers          interaction headers
              */
             @Override
             public void start(Listener<RespT> responseListener, Metadata headers) {
-                super.start(
+                final StepResult stepResult = new StepResult()
+                        .setName("gRPC interaction " + methodDescriptor.getFullMethodName())
+                        .setStart(System.currentTimeMillis());
+                final InteractionStep step = options.step(parent, stepResult, methodDescriptor);
+                final CallRecording callRecording = new CallRecording(
+                        step,
+                        options.newCapture(formatter, !methodType.clientSendsOneMessage()),
+                        options.newCapture(formatter, !methodType.serverSendsOneMessage()),
+                        options.collectsCallMetrics() ? new CallMetrics() : null);
+                recording = callRecording;
+                options.attachmentWriter.submit(
+                        () -> step.attach("gRPC method", ObjectUtils.toString(methodDescriptor)));
+                final Metadata requestHeaders = MetadataRenderer.snapshot(headers);
+
+                final Listener<RespT> listener =
                         new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                            /*
+                             * Listener callbacks are serialized, so headers are visible when the call is closed
+                             */
+                            private Metadata responseHeaders;
+
                             @Override
                             public void onHeaders(Metadata headers) {
-                                Allure.addAttachment("gRPC headers", ObjectUtils.toString(headers));
+                                callRecording.headers();
+                                responseHeaders = MetadataRenderer.snapshot(headers);
                                 super.onHeaders(headers);
                             }
 
                             @Override
                             public void onMessage(RespT message) {
-                                payloads.add((Message) message);
+                                callRecording.response((Message) message);
                                 super.onMessage(message);
                             }
 
                             @Override
                             public void onClose(Status status, Metadata trailers) {
-                                Allure.addAttachment("gRPC responses", ProtoFormatter.format(payloads));
-                                Allure.addAttachment("gRPC status", ObjectUtils.toString(status));
-
-                                if (status.isOk()) {
-                                    Allure.getLifecycle()
-                                            .updateStep(
-                                                    allureStepUUID,
-                                                    stepResult ->
-                                                            stepResult.setStatus(io.qameta.allure.model.Status.PASSED));
-                                } else {
-                                    Allure.getLifecycle()
-                                            .updateStep(
-                                                    allureStepUUID,
-                                                    stepResult ->
-                                                            stepResult.setStatus(io.qameta.allure.model.Status.FAILED));
-                                }
-                                Allure.getLifecycle().stopStep(allureStepUUID);
+                                final Utf8Buffer.Chunks metadata = options.metadataRenderer.chunks(
+                                        requestHeaders, responseHeaders, MetadataRenderer.snapshot(trailers));
+                                callRecording.close((requests, responses, metrics, end) -> {
+                                    options.attachmentWriter.submit(() -> {
+                                        step.attach(
+                                                "gRPC metadata",
+                                                InteractionStep.APPLICATION_JSON,
+                                                InteractionStep.JSON,
+                                                metadata);
+                                        step.attachPayloads(
+                                                requests,
+                                                methodType.clientSendsOneMessage() ? "gRPC request" : "gRPC requests",
+                                                responses);
+                                        step.attach("gRPC status", ObjectUtils.toString(status));
+                                    });
+
+                                    if (metrics != null) {
+                                        options.interceptorMetrics.callCaptured(methodDescriptor, metrics.messages());
+                                    }
+                                    step.finish(
+                                            status.isOk()
+                                                    ? io.qameta.allure.model.Status.PASSED
+                                                    : io.qameta.allure.model.Status.FAILED,
+                                            options.callMetrics ? metrics : null,
+                                            end);
+                                });
 
+                                super.onClose(status, trailers);
+                            }
+                        };
+                StepParent.starting(step, () -> super.start(listener, headers));
+            }
+        };
+    }
+
+    /**
+     * Wrapping call which is not sampled, nothing is captured and only a failed step is recorded on non-OK status
+     */
+    private <ReqT, RespT> ClientCall<ReqT, RespT> unsampledCall(
+            final MethodDescriptor<ReqT, RespT> methodDescriptor,
+            final ClientCall<ReqT, RespT> call,
+            final StepParent parent) {
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(call) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                super.start(
+                        new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                            @Override
+                            public void onClose(Status status, Metadata trailers) {
+                                if (!status.isOk()) recordFailure(parent, methodDescriptor, status);
                                 super.onClose(status, trailers);
                             }
                         },
@@ -137,12 +228,39 @@ public class AllureGrpcClientInterceptor implements ClientInterceptor {
         };
     }
 
+    private void recordFailure(
+            final StepParent parent, final MethodDescriptor<?, ?> methodDescriptor, final Status status) {
+        options.addFailedStep(
+                parent, "gRPC interaction " + methodDescriptor.getFullMethodName(), methodDescriptor, status);
+    }
+
+    /**
+     * Flushing attachments submitted to attachment writer, useful for async writers outside of Allure test lifecycle
+     */
+    public void flush() {
+        options.flush();
+    }
+
     /**
      * For test purposes only
      *
      * @return current Allure lifecycle for chek attachments data
+     * @deprecated calls are bound to their tests with {@link AllureGrpcParent}, use {@link Allure#getLifecycle()}
      */
+    @Deprecated
     public static AllureLifecycle getLifecycle() {
-        return lifecycle.get();
+        return Allure.getLifecycle();
+    }
+
+    /**
+     * Builder of interceptor, options not set are taken from defaults of the no-args constructor
+     */
+    public static class Builder extends InterceptorOptions.Builder<Builder> {
+
+        private Builder() {}
+
+        public AllureGrpcClientInterceptor build() {
+            return new AllureGrpcClientInterceptor(this);
+        }
     }
 }
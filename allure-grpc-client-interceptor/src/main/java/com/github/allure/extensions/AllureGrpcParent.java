@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import io.grpc.CallOptions;
+import io.grpc.Context;
+import io.qameta.allure.Allure;
+import java.util.concurrent.Executor;
+
+/**
+ * Explicit binding of gRPC calls to the Allure test or step they belong to. Interceptors take the parent once, when a
+ * call is intercepted: from {@link #CALL_OPTION} of the call, then from {@link #CONTEXT_KEY} of current gRPC context
+ * and only then from Allure thread context of the thread starting the call. Steps are started in the parent when the
+ * call starts and stopped when it closes on a dedicated thread, so calls closed on gRPC executor threads never touch
+ * Allure thread context of those threads.
+ *
+ * <p>gRPC context is propagated to callbacks of calls and could be carried to other threads with
+ * {@link Context#wrap(Runnable)} or {@link Context#fixedContextExecutor(Executor)}, so calls
+ * started from {@code CompletableFuture} chains or reactive pipelines are attached to the test which started them.
+ *
+ * <pre>{@code
+ * Context context = AllureGrpcParent.current();
+ * CompletableFuture.supplyAsync(() -> stub.sayHello(request), context.fixedContextExecutor(executor));
+ * stub.withOption(AllureGrpcParent.CALL_OPTION, testUuid).sayHello(request);
+ * }</pre>
+ */
+public final class AllureGrpcParent {
+
+    /**
+     * UUID of the test or step a call is attached to
+     */
+    public static final CallOptions.Key<String> CALL_OPTION = CallOptions.Key.create("allure-parent-uuid");
+
+    /**
+     * UUID of the test or step calls started within the context are attached to
+     */
+    public static final Context.Key<String> CONTEXT_KEY = Context.key("allure-parent-uuid");
+
+    private AllureGrpcParent() {}
+
+    /**
+     * @return current gRPC context bound to the test or step current on this thread, or unchanged when there is none
+     */
+    public static Context current() {
+        return Allure.getLifecycle()
+                .getCurrentTestCaseOrStep()
+                .map(uuid -> Context.current().withValue(CONTEXT_KEY, uuid))
+                .orElseGet(Context::current);
+    }
+
+    /**
+     * @param uuid UUID of the test or step
+     * @return current gRPC context bound to the test or step
+     */
+    public static Context of(final String uuid) {
+        return Context.current().withValue(CONTEXT_KEY, uuid);
+    }
+}
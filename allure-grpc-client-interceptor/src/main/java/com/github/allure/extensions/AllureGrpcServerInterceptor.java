@@ -0,0 +1,223 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import com.google.protobuf.Message;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.qameta.allure.model.StepResult;
+import io.qameta.allure.util.ObjectUtils;
+
+/**
+ * With this interceptor grpc server, for example in-process fake server of the test, will attach all interaction data
+ * to Allure report. Calls are recorded as steps of the client call being started on the same thread, as it happens
+ * with in-process servers, otherwise of the test or step bound to gRPC context or current when the call arrived, see
+ * {@link AllureGrpcParent}. Calls arriving outside of the test are not recorded.
+ *
+ * <p>Server calls are closed from any thread, so the step is added to its parent when the call arrives and is
+ * completed in place when the call is closed, attachments are bound to the step itself.
+ *
+ * @see ServerInterceptor
+ */
+public class AllureGrpcServerInterceptor implements ServerInterceptor {
+
+    private final InterceptorOptions options;
+
+    /**
+     * Interceptor formatting messages with default formatter chosen by deprecated ProtoFormatter.FORMAT_PROTO_TO_JSON
+     */
+    public AllureGrpcServerInterceptor() {
+        this(builder());
+    }
+
+    private AllureGrpcServerInterceptor(final Builder builder) {
+        this.options = builder.options();
+    }
+
+    /**
+     * @return builder of interceptor with inline attachment writer, unbounded payload buffer and all calls sampled
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+            final ServerCall<ReqT, RespT> call, final Metadata headers, final ServerCallHandler<ReqT, RespT> next) {
+        final MethodDescriptor<ReqT, RespT> methodDescriptor = call.getMethodDescriptor();
+        if (!options.methodFilter.matches(methodDescriptor)) return next.startCall(call, headers);
+        final StepParent parent = StepParent.server();
+        if (parent == null) return next.startCall(call, headers);
+        if (!options.samplingPolicy.isSampled(methodDescriptor)) {
+            options.interceptorMetrics.callSampledOut(methodDescriptor);
+            return next.startCall(new UnsampledCall<>(call, parent), headers);
+        }
+
+        final RecordedCall<ReqT, RespT> recordedCall = new RecordedCall<>(call, headers, parent);
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT>(
+                next.startCall(recordedCall, headers)) {
+            @Override
+            public void onMessage(final ReqT message) {
+                recordedCall.recording.request((Message) message);
+                super.onMessage(message);
+            }
+
+            @Override
+            public void onCancel() {
+                recordedCall.finish(Status.CANCELLED, null);
+                super.onCancel();
+            }
+        };
+    }
+
+    /**
+     * Server call capturing messages of both directions, attachments are written to the step bound to the call and
+     * the step is completed when the call is closed or cancelled
+     */
+    private final class RecordedCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private final CallRecording recording;
+        private final Metadata requestHeaders;
+        /*
+         * Sent by the application, while the call could be cancelled from a transport thread
+         */
+        private volatile Metadata responseHeaders;
+
+        RecordedCall(final ServerCall<ReqT, RespT> call, final Metadata headers, final StepParent parent) {
+            super(call);
+            final MethodDescriptor<ReqT, RespT> methodDescriptor = call.getMethodDescriptor();
+            final MethodDescriptor.MethodType methodType = methodDescriptor.getType();
+            final ProtoFormatter formatter = options.formatter();
+            final StepResult stepResult = new StepResult()
+                    .setName("gRPC server interaction " + methodDescriptor.getFullMethodName())
+                    .setStart(System.currentTimeMillis());
+            final InteractionStep step = options.step(parent, stepResult, methodDescriptor);
+            this.recording = new CallRecording(
+                    step,
+                    options.newCapture(formatter, !methodType.clientSendsOneMessage()),
+                    options.newCapture(formatter, !methodType.serverSendsOneMessage()),
+                    options.collectsCallMetrics() ? new CallMetrics() : null);
+
+            this.requestHeaders = MetadataRenderer.snapshot(headers);
+            options.attachmentWriter.submit(() -> step.attach("gRPC method", ObjectUtils.toString(methodDescriptor)));
+        }
+
+        @Override
+        public void sendHeaders(final Metadata headers) {
+            recording.headers();
+            responseHeaders = MetadataRenderer.snapshot(headers);
+            super.sendHeaders(headers);
+        }
+
+        @Override
+        public void sendMessage(final RespT message) {
+            recording.response((Message) message);
+            super.sendMessage(message);
+        }
+
+        @Override
+        public void close(final Status status, final Metadata trailers) {
+            finish(status, MetadataRenderer.snapshot(trailers));
+            super.close(status, trailers);
+        }
+
+        /**
+         * @param status   status of the call
+         * @param trailers trailers sent with the status, null when the call is cancelled
+         */
+        void finish(final Status status, final Metadata trailers) {
+            recording.close((requests, responses, metrics, end) -> {
+                final InteractionStep step = recording.step();
+                final boolean clientSendsOneMessage = getMethodDescriptor().getType().clientSendsOneMessage();
+                final Utf8Buffer.Chunks metadata =
+                        options.metadataRenderer.chunks(requestHeaders, responseHeaders, trailers);
+                options.attachmentWriter.submit(() -> {
+                    step.attach("gRPC metadata", InteractionStep.APPLICATION_JSON, InteractionStep.JSON, metadata);
+                    step.attachPayloads(requests, clientSendsOneMessage ? "gRPC request" : "gRPC requests", responses);
+                    step.attach("gRPC status", ObjectUtils.toString(status));
+                });
+
+                if (metrics != null) options.interceptorMetrics.callCaptured(getMethodDescriptor(), metrics.messages());
+                step.finish(
+                        status.isOk() ? io.qameta.allure.model.Status.PASSED : io.qameta.allure.model.Status.FAILED,
+                        options.callMetrics ? metrics : null,
+                        end);
+            });
+        }
+    }
+
+    /**
+     * Server call which is not sampled, nothing is captured and only a failed step is recorded on non-OK status
+     */
+    private final class UnsampledCall<ReqT, RespT>
+            extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private final StepParent parent;
+
+        UnsampledCall(final ServerCall<ReqT, RespT> call, final StepParent parent) {
+            super(call);
+            this.parent = parent;
+        }
+
+        @Override
+        public void close(final Status status, final Metadata trailers) {
+            if (!status.isOk()) recordFailure(status);
+            super.close(status, trailers);
+        }
+
+        private void recordFailure(final Status status) {
+            final MethodDescriptor<ReqT, RespT> methodDescriptor = getMethodDescriptor();
+            options.addFailedStep(
+                    parent,
+                    "gRPC server interaction " + methodDescriptor.getFullMethodName(),
+                    methodDescriptor,
+                    status);
+        }
+    }
+
+    /**
+     * Flushing attachments submitted to attachment writer, useful for async writers outside of Allure test lifecycle
+     */
+    public void flush() {
+        options.flush();
+    }
+
+    /**
+     * Builder of interceptor, options not set are taken from defaults of the no-args constructor
+     */
+    public static class Builder extends InterceptorOptions.Builder<Builder> {
+
+        private Builder() {}
+
+        public AllureGrpcServerInterceptor build() {
+            return new AllureGrpcServerInterceptor(this);
+        }
+    }
+}
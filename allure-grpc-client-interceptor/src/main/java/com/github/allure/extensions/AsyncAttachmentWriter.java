@@ -0,0 +1,336 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Attachment writer moving formatting and file writes off the gRPC callback threads to one background daemon worker.
+ * Work queue is bounded, when it is full the work is executed inline by the caller at once, so gRPC callback threads
+ * never wait for the worker and attachments are never lost. With {@link Overflow#BLOCK} the caller waits for free space
+ * in the queue up to the flush timeout instead, and executes the work inline only when the timeout expires. The worker runs on a platform thread or, with {@link WorkerThread#VIRTUAL} on Java 21 and
+ * later, on a virtual thread, so stubs running on virtual threads never do attachment I/O themselves.
+ *
+ * <p>All pending work is flushed automatically before Allure writes a test result, see {@link AllureGrpcFlushListener}.
+ * For other lifecycles {@link #flush()} should be called explicitly. Closing the writer lets the worker complete all
+ * pending work, work submitted after closing is executed inline.
+ */
+@Slf4j
+public class AsyncAttachmentWriter implements AttachmentWriter, Closeable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final long DEFAULT_FLUSH_TIMEOUT_MILLIS = 30_000;
+
+    private static final AtomicInteger WORKER_COUNTER = new AtomicInteger();
+    private static final Runnable STOP = () -> {};
+    private static final Set<AsyncAttachmentWriter> ACTIVE_WRITERS =
+            Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private final BlockingQueue<Runnable> queue;
+    private final long flushTimeoutMillis;
+    private final InterceptorMetrics metrics;
+    private final Overflow overflow;
+    private final Thread worker;
+    /*
+     * Read lock is held while work is queued and write lock while the writer is closed, so nothing is queued after
+     * the worker is told to stop
+     */
+    private final ReadWriteLock closing = new ReentrantReadWriteLock();
+    private volatile boolean closed;
+
+    public AsyncAttachmentWriter() {
+        this(builder());
+    }
+
+    /**
+     * @param queueCapacity      max count of pending attachment tasks before callers wait for free space
+     * @param flushTimeoutMillis max time to wait for pending attachment tasks on flush and for free space in the queue
+     */
+    public AsyncAttachmentWriter(final int queueCapacity, final long flushTimeoutMillis) {
+        this(queueCapacity, flushTimeoutMillis, InterceptorMetrics.NOOP);
+    }
+
+    /**
+     * @param queueCapacity      max count of pending attachment tasks before callers wait for free space
+     * @param flushTimeoutMillis max time to wait for pending attachment tasks on flush and for free space in the queue
+     * @param metrics            observer of tasks executed inline because the queue stayed full
+     */
+    public AsyncAttachmentWriter(
+            final int queueCapacity, final long flushTimeoutMillis, final InterceptorMetrics metrics) {
+        this(builder().queueCapacity(queueCapacity).flushTimeoutMillis(flushTimeoutMillis).metrics(metrics));
+    }
+
+    private AsyncAttachmentWriter(final Builder builder) {
+        this.queue = new ArrayBlockingQueue<>(builder.queueCapacity);
+        this.flushTimeoutMillis = builder.flushTimeoutMillis;
+        this.metrics = builder.metrics;
+        this.overflow = builder.overflow;
+        this.worker = builder.workerThread.newThread(
+                this::work, "allure-grpc-attachment-writer-" + WORKER_COUNTER.incrementAndGet());
+        this.worker.start();
+        ACTIVE_WRITERS.add(this);
+    }
+
+    /**
+     * @return builder of writer with default queue capacity and flush timeout, waiting for free space in the queue on
+     *     overflow, with platform worker thread
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public void submit(final Runnable attachmentTask) {
+        final Boolean queued = enqueue(attachmentTask);
+        if (queued == null) {
+            execute(attachmentTask);
+        } else if (!queued) {
+            metrics.attachmentTaskRejected();
+            execute(attachmentTask);
+        }
+    }
+
+    @Override
+    public void flush() {
+        final CountDownLatch marker = new CountDownLatch(1);
+        final Boolean queued = enqueue(marker::countDown, flushTimeoutMillis);
+        if (queued == null) return;
+        try {
+            if (!queued || !marker.await(flushTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                log.warn("Attachments were not flushed in {} ms", flushTimeoutMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stopping to take new work and waiting until the worker completes pending work, the worker is not interrupted,
+     * so attachments being written are never cut off. Work submitted after closing is executed inline.
+     */
+    @Override
+    public void close() {
+        closing.writeLock().lock();
+        try {
+            if (closed) return;
+            closed = true;
+        } finally {
+            closing.writeLock().unlock();
+        }
+        ACTIVE_WRITERS.remove(this);
+        boolean interrupted = false;
+        while (true) {
+            try {
+                // the last element of the queue, nothing is queued after the writer is closed
+                queue.put(STOP);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        try {
+            worker.join(flushTimeoutMillis);
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        if (worker.isAlive()) log.warn("Attachments were not written in {} ms after closing", flushTimeoutMillis);
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Flushing all not closed writers, called before Allure writes a test result
+     */
+    static void flushAll() {
+        ACTIVE_WRITERS.forEach(AsyncAttachmentWriter::flush);
+    }
+
+    private Boolean enqueue(final Runnable attachmentTask) {
+        return enqueue(attachmentTask, overflow == Overflow.RUN_INLINE ? 0 : flushTimeoutMillis);
+    }
+
+    /**
+     * @return true when the task is queued, false when the queue stayed full and null when the writer is closed
+     */
+    private Boolean enqueue(final Runnable task, final long timeoutMillis) {
+        closing.readLock().lock();
+        try {
+            if (closed) return null;
+            return queue.offer(task, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            closing.readLock().unlock();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            final Runnable task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                // the worker is stopped only by closing the writer
+                continue;
+            }
+            if (task == STOP) return;
+            execute(task);
+        }
+    }
+
+    private static void execute(final Runnable attachmentTask) {
+        try {
+            attachmentTask.run();
+        } catch (RuntimeException e) {
+            log.error("Could not write gRPC attachment", e);
+        }
+    }
+
+    /**
+     * Handling of work submitted when the queue is full
+     */
+    public enum Overflow {
+        /**
+         * Executing work inline by the caller at once, gRPC threads never wait for the queue but format and write
+         * attachments themselves under load, default
+         */
+        RUN_INLINE,
+        /**
+         * Waiting for free space in the queue up to the flush timeout and executing work inline only after it, so
+         * callers are slowed down to the pace of the worker instead of writing attachments themselves
+         */
+        BLOCK
+    }
+
+    /**
+     * Kind of the worker thread
+     */
+    public enum WorkerThread {
+        /**
+         * Platform daemon thread
+         */
+        PLATFORM {
+            @Override
+            Thread newThread(final Runnable work, final String name) {
+                final Thread thread = new Thread(work, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        },
+        /**
+         * Virtual thread on Java 21 and later, platform daemon thread on earlier versions
+         */
+        VIRTUAL {
+            @Override
+            Thread newThread(final Runnable work, final String name) {
+                try {
+                    final Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                    final Object builder = builderType
+                            .getMethod("name", String.class)
+                            .invoke(Thread.class.getMethod("ofVirtual").invoke(null), name);
+                    return (Thread) builderType.getMethod("unstarted", Runnable.class).invoke(builder, work);
+                } catch (ReflectiveOperationException e) {
+                    log.warn("Virtual threads are not available, attachment writer runs on platform thread");
+                    return PLATFORM.newThread(work, name);
+                }
+            }
+        };
+
+        abstract Thread newThread(Runnable work, String name);
+    }
+
+    /**
+     * Builder of writer, options not set are taken from defaults of the no-args constructor
+     */
+    public static class Builder {
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        private long flushTimeoutMillis = DEFAULT_FLUSH_TIMEOUT_MILLIS;
+        private InterceptorMetrics metrics = InterceptorMetrics.NOOP;
+        private Overflow overflow = Overflow.RUN_INLINE;
+        private WorkerThread workerThread = WorkerThread.PLATFORM;
+
+        private Builder() {}
+
+        /**
+         * @param queueCapacity max count of pending attachment tasks
+         * @return this builder
+         */
+        public Builder queueCapacity(final int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * @param flushTimeoutMillis max time to wait for pending attachment tasks on flush and for free space in the
+         *                           queue with {@link Overflow#BLOCK}
+         * @return this builder
+         */
+        public Builder flushTimeoutMillis(final long flushTimeoutMillis) {
+            this.flushTimeoutMillis = flushTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * @param metrics observer of tasks executed inline because the queue was full
+         * @return this builder
+         */
+        public Builder metrics(final InterceptorMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param overflow handling of work submitted when the queue is full
+         * @return this builder
+         */
+        public Builder overflow(final Overflow overflow) {
+            this.overflow = overflow;
+            return this;
+        }
+
+        /**
+         * @param workerThread kind of the worker thread
+         * @return this builder
+         */
+        public Builder workerThread(final WorkerThread workerThread) {
+            this.workerThread = workerThread;
+            return this;
+        }
+
+        public AsyncAttachmentWriter build() {
+            return new AsyncAttachmentWriter(this);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of attachments written by the interceptor. Attachments above the threshold are compressed with gzip
+ * while they are copied to allure results, so compressed content is never buffered as a whole. Compressed attachments
+ * have {@code .gz} appended to their source and {@code application/gzip} type, they are decompressed in place before
+ * the report is generated with
+ * {@code java -cp <classpath> com.github.allure.extensions.AttachmentCompression allure-results}.
+ */
+public final class AttachmentCompression {
+
+    /**
+     * MIME type of compressed attachments
+     */
+    public static final String GZIP_TYPE = "application/gzip";
+
+    /**
+     * Extension appended to the source of compressed attachments
+     */
+    public static final String GZIP_EXTENSION = ".gz";
+
+    private static final long DEFAULT_THRESHOLD = 1 << 20;
+    private static final int CHUNK_SIZE = 8192;
+    private static final AttachmentCompression NONE = new AttachmentCompression(Long.MAX_VALUE);
+
+    private final long threshold;
+
+    private AttachmentCompression(final long threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * @return attachments are written as is
+     */
+    public static AttachmentCompression none() {
+        return NONE;
+    }
+
+    /**
+     * @return attachments above 1 MiB are compressed with gzip
+     */
+    public static AttachmentCompression gzip() {
+        return gzip(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param threshold size in bytes above which attachments are compressed
+     * @return attachments above the threshold are compressed with gzip
+     */
+    public static AttachmentCompression gzip(final long threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Compression threshold should not be negative: " + threshold);
+        }
+        return new AttachmentCompression(threshold);
+    }
+
+    /**
+     * @param size size of attachment content in bytes
+     * @return true when attachment of the size is compressed
+     */
+    boolean compresses(final long size) {
+        return size > threshold;
+    }
+
+    /**
+     * @param content attachment content
+     * @return gzip of the content produced as the stream is read
+     */
+    static InputStream compress(final InputStream content) throws IOException {
+        return new GzipStream(content);
+    }
+
+    /**
+     * Decompressing attachments of allure results in place
+     *
+     * @param args allure results directory
+     * @throws IOException when results are not readable or writable
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: AttachmentCompression <allure results directory>");
+            System.exit(2);
+        }
+        final int decompressed = decompressResults(Paths.get(args[0]));
+        System.out.println("Decompressed " + decompressed + " gRPC attachments");
+    }
+
+    /**
+     * Decompressing attachments of test results and containers in place, type of decompressed attachment is restored
+     * from its source extension. Rerun after an interrupted run completes it: attachment is decompressed to a temporary
+     * file replacing the one left before, attachment already decompressed is only referenced by its result.
+     *
+     * @param directory allure results directory
+     * @return number of decompressed attachments
+     * @throws IOException when results are not readable or writable
+     */
+    public static int decompressResults(final Path directory) throws IOException {
+        return ResultsAttachments.rewrite(directory, GZIP_TYPE, attachment -> {
+            final String source = attachment.getSource();
+            if (!source.endsWith(GZIP_EXTENSION)) return false;
+            final String decompressedSource = source.substring(0, source.length() - GZIP_EXTENSION.length());
+            final Path compressed = directory.resolve(source);
+            final Path decompressed = directory.resolve(decompressedSource);
+            if (Files.exists(compressed)) {
+                final Path temporary = Files.createTempFile(directory, decompressedSource, ".tmp");
+                try (InputStream in = new GZIPInputStream(Files.newInputStream(compressed), CHUNK_SIZE)) {
+                    Files.copy(in, temporary, StandardCopyOption.REPLACE_EXISTING);
+                    Files.move(temporary, decompressed, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(temporary);
+                }
+                Files.delete(compressed);
+            } else if (!Files.exists(decompressed)) {
+                return false;
+            }
+            attachment.setSource(decompressedSource);
+            attachment.setType(typeOf(decompressedSource));
+            return true;
+        });
+    }
+
+    private static String typeOf(final String source) {
+        if (source.endsWith(InteractionStep.TXT)) return InteractionStep.TEXT_PLAIN;
+        if (source.endsWith(InteractionStep.JSON)) return InteractionStep.APPLICATION_JSON;
+        if (source.endsWith(BinaryPayloadFormat.FILE_EXTENSION)) return BinaryPayloadFormat.MIME_TYPE;
+        return "application/octet-stream";
+    }
+
+    /**
+     * Stream of gzip compressed content, content is read and compressed chunk by chunk as compressed bytes are read
+     */
+    private static final class GzipStream extends InputStream {
+
+        private final InputStream content;
+        private final Chunk compressed = new Chunk();
+        private final GZIPOutputStream gzip;
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private int position;
+        private boolean finished;
+
+        GzipStream(final InputStream content) throws IOException {
+            this.content = content;
+            this.gzip = new GZIPOutputStream(compressed, CHUNK_SIZE);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+            if (length == 0) return 0;
+            while (position == compressed.size()) {
+                if (finished) return -1;
+                compressed.reset();
+                position = 0;
+                final int read = content.read(chunk);
+                if (read < 0) {
+                    gzip.finish();
+                    finished = true;
+                } else {
+                    gzip.write(chunk, 0, read);
+                }
+            }
+            final int read = Math.min(length, compressed.size() - position);
+            System.arraycopy(compressed.bytes(), position, bytes, offset, read);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                content.close();
+            } finally {
+                gzip.close();
+            }
+        }
+    }
+
+    /**
+     * Buffer of compressed bytes exposing its array to avoid copying on each read
+     */
+    private static final class Chunk extends ByteArrayOutputStream {
+
+        Chunk() {
+            super(CHUNK_SIZE);
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+/**
+ * Strategy of executing attachment formatting and persisting work produced by the interceptor.
+ *
+ * @see AsyncAttachmentWriter
+ */
+public interface AttachmentWriter {
+
+    /**
+     * Default writer executing attachment work inline on the thread of gRPC callback
+     */
+    AttachmentWriter INLINE = Runnable::run;
+
+    /**
+     * Executing or scheduling attachment work
+     *
+     * @param attachmentTask formatting and persisting work over immutable snapshot of interaction data
+     */
+    void submit(Runnable attachmentTask);
+
+    /**
+     * Waiting for all previously submitted attachment work to be persisted
+     */
+    default void flush() {}
+}
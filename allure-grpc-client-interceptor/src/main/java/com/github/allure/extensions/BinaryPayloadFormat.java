@@ -0,0 +1,75 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import com.google.protobuf.Timestamp;
+
+/**
+ * Format of binary message attachments written with {@link PayloadBufferPolicy#binary()}. Attachment is a sequence of
+ * length-delimited {@code google.protobuf.Any} records: reference to descriptor set of message type before the first
+ * message of the type, time of the message before the message when timestamps are kept and the message itself. When
+ * messages could not be written the attachment holds only the count of lost messages. Descriptor sets are written once
+ * per allure results next to attachments, named by digest of their content.
+ */
+public final class BinaryPayloadFormat {
+
+    /**
+     * MIME type of binary message attachments
+     */
+    public static final String MIME_TYPE = "application/vnd.allure.grpc.messages+protobuf";
+
+    /**
+     * Extension of binary message attachment files
+     */
+    public static final String FILE_EXTENSION = ".binpb";
+
+    /**
+     * Suffix of descriptor set files in allure results, descriptor sets are serialized {@code FileDescriptorSet}
+     */
+    public static final String DESCRIPTOR_SET_SUFFIX = "-grpc-descriptors.pb";
+
+    /**
+     * Type url prefix of records
+     */
+    public static final String TYPE_URL_PREFIX = "type.googleapis.com/";
+
+    /**
+     * Type url of record referencing descriptor set file, the value is {@code google.protobuf.StringValue} with name of
+     * the file in allure results
+     */
+    public static final String DESCRIPTOR_SET_SOURCE_TYPE_URL = TYPE_URL_PREFIX + "allure.grpc.DescriptorSetSource";
+
+    /**
+     * Type url of record with time of the next message
+     */
+    public static final String TIMESTAMP_TYPE_URL = TYPE_URL_PREFIX + Timestamp.getDescriptor().getFullName();
+
+    /**
+     * Type url of record with count of messages which could not be kept for the attachment, the value is
+     * {@code google.protobuf.UInt64Value}
+     */
+    public static final String LOST_TYPE_URL = TYPE_URL_PREFIX + "allure.grpc.LostMessages";
+
+    private BinaryPayloadFormat() {}
+}
@@ -0,0 +1,255 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.DescriptorProtos.FileDescriptorSet;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.Message;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.StringValue;
+import com.google.protobuf.UInt64Value;
+import com.google.protobuf.util.Timestamps;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Capture writing serialized messages without formatting in {@link BinaryPayloadFormat}, rendering is left to the
+ * binary payload renderer when the report is generated. Descriptor sets of message types are written once per allure
+ * results and only referenced from the attachment. Records are kept in memory and moved to a temporary file when they
+ * outgrow 1 MiB. When records could not be written the attachment marks all messages as lost, same as messages which
+ * could not be spilled by {@link PayloadBuffer}.
+ */
+@Slf4j
+class BinaryPayloads implements PayloadCapture {
+
+    private static final int MEMORY_LIMIT = 1 << 20;
+    private static final int MAX_DESCRIPTOR_SETS = 1024;
+    private static final ConcurrentMap<Descriptor, DescriptorSetFile> DESCRIPTOR_SETS = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final boolean timestamps;
+    private final ByteArrayOutputStream memory = new ByteArrayOutputStream();
+    private final CodedOutputStream out = CodedOutputStream.newInstance(new Sink());
+    private final Set<DescriptorSetFile> descriptorSets = new LinkedHashSet<>();
+
+    private Path file;
+    private OutputStream fileOut;
+    private Descriptor type;
+    private String typeUrl;
+    private long messages;
+    private boolean failed;
+
+    BinaryPayloads(final Path directory, final boolean timestamps) {
+        this.directory = directory;
+        this.timestamps = timestamps;
+    }
+
+    @Override
+    public void add(final Message message, final long timeMillis) {
+        messages++;
+        if (failed) return;
+        try {
+            if (message.getDescriptorForType() != type) {
+                type = message.getDescriptorForType();
+                typeUrl = BinaryPayloadFormat.TYPE_URL_PREFIX + type.getFullName();
+                final DescriptorSetFile descriptorSet = descriptorSet(type);
+                descriptorSets.add(descriptorSet);
+                write(BinaryPayloadFormat.DESCRIPTOR_SET_SOURCE_TYPE_URL, StringValue.of(descriptorSet.source));
+            }
+            if (timestamps) write(BinaryPayloadFormat.TIMESTAMP_TYPE_URL, Timestamps.fromMillis(timeMillis));
+            write(typeUrl, message);
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            log.warn("Could not write gRPC message to temporary file, messages are marked as lost", e);
+        }
+    }
+
+    @Override
+    public void attachTo(final InteractionStep step, final String name) {
+        try {
+            out.flush();
+            if (fileOut != null) fileOut.close();
+        } catch (IOException e) {
+            failed = true;
+            log.warn("Could not write gRPC message to temporary file, messages are marked as lost", e);
+        }
+        if (failed) {
+            delete();
+            step.attach(name, BinaryPayloadFormat.MIME_TYPE, BinaryPayloadFormat.FILE_EXTENSION, lost());
+            return;
+        }
+        for (DescriptorSetFile descriptorSet : descriptorSets) {
+            step.writeShared(descriptorSet.source, descriptorSet.content);
+        }
+        if (file == null) {
+            step.attach(name, BinaryPayloadFormat.MIME_TYPE, BinaryPayloadFormat.FILE_EXTENSION, memory.toByteArray());
+        } else {
+            step.attach(name, BinaryPayloadFormat.MIME_TYPE, BinaryPayloadFormat.FILE_EXTENSION, file);
+        }
+    }
+
+    /**
+     * Writing length-delimited Any record without intermediate copy of the message bytes
+     */
+    private void write(final String recordTypeUrl, final MessageLite message) throws IOException {
+        write(out, recordTypeUrl, message);
+    }
+
+    private static void write(final CodedOutputStream out, final String recordTypeUrl, final MessageLite message)
+            throws IOException {
+        out.writeUInt32NoTag(CodedOutputStream.computeStringSize(1, recordTypeUrl)
+                + CodedOutputStream.computeMessageSize(2, message));
+        out.writeString(1, recordTypeUrl);
+        out.writeMessage(2, message);
+    }
+
+    /**
+     * @return attachment with the only record counting lost messages
+     */
+    private byte[] lost() {
+        final ByteArrayOutputStream lost = new ByteArrayOutputStream();
+        final CodedOutputStream lostOut = CodedOutputStream.newInstance(lost);
+        final UInt64Value count = UInt64Value.of(messages);
+        try {
+            write(lostOut, BinaryPayloadFormat.LOST_TYPE_URL, count);
+            lostOut.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return lost.toByteArray();
+    }
+
+    /**
+     * @param type message type
+     * @return file of the type with all its dependencies, dependencies go first, named by digest of the content
+     */
+    private static DescriptorSetFile descriptorSet(final Descriptor type) {
+        final DescriptorSetFile cached = DESCRIPTOR_SETS.get(type);
+        if (cached != null) return cached;
+        final FileDescriptorSet.Builder set = FileDescriptorSet.newBuilder();
+        addFile(type.getFile(), new HashSet<>(), set);
+        final DescriptorSetFile built = new DescriptorSetFile(set.build().toByteArray());
+        if (DESCRIPTOR_SETS.size() >= MAX_DESCRIPTOR_SETS) return built;
+        final DescriptorSetFile cachedMeanwhile = DESCRIPTOR_SETS.putIfAbsent(type, built);
+        return cachedMeanwhile != null ? cachedMeanwhile : built;
+    }
+
+    private static void addFile(
+            final FileDescriptor file, final Set<String> added, final FileDescriptorSet.Builder set) {
+        if (!added.add(file.getName())) return;
+        for (FileDescriptor dependency : file.getDependencies()) {
+            addFile(dependency, added, set);
+        }
+        set.addFile(file.toProto());
+    }
+
+    private void delete() {
+        if (file == null) return;
+        try {
+            if (fileOut != null) fileOut.close();
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete temporary file {}", file, e);
+        }
+    }
+
+    /**
+     * Serialized descriptor set with name of its file in allure results
+     */
+    private static final class DescriptorSetFile {
+
+        final String source;
+        final byte[] content;
+
+        DescriptorSetFile(final byte[] content) {
+            this.content = content;
+            this.source = sha256(content) + BinaryPayloadFormat.DESCRIPTOR_SET_SUFFIX;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof DescriptorSetFile && source.equals(((DescriptorSetFile) other).source);
+        }
+
+        @Override
+        public int hashCode() {
+            return source.hashCode();
+        }
+
+        private static String sha256(final byte[] content) {
+            final byte[] digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256").digest(content);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            final StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        }
+    }
+
+    /**
+     * Destination of records switching from memory to temporary file once records outgrow the memory limit
+     */
+    private final class Sink extends OutputStream {
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+            if (fileOut == null && memory.size() + length > MEMORY_LIMIT) {
+                file = directory == null
+                        ? Files.createTempFile("allure-grpc-", BinaryPayloadFormat.FILE_EXTENSION)
+                        : Files.createTempFile(directory, "allure-grpc-", BinaryPayloadFormat.FILE_EXTENSION);
+                fileOut = Files.newOutputStream(file);
+                memory.writeTo(fileOut);
+                memory.reset();
+            }
+            if (fileOut != null) {
+                fileOut.write(bytes, offset, length);
+            } else {
+                memory.write(bytes, offset, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import com.google.protobuf.Message;
+import io.grpc.Context;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.qameta.allure.model.StepResult;
+import io.qameta.allure.util.ObjectUtils;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Capture of one call of a stub which is not intercepted, for example a reactive stub adapting publishers to gRPC
+ * calls. The call is attached as a step of the test or step bound to the starting thread or gRPC context, see
+ * {@link AllureGrpcParent}, with requests, responses and status captured as the stub signals them.
+ *
+ * <p>Stub of the call usually goes through a channel with {@link AllureGrpcClientInterceptor}, which would record
+ * the same call once more. Client calls of the captured method started within {@link #run(Runnable)} are left to this
+ * capture by the interceptor, so the stub should be subscribed or invoked there.
+ */
+public final class CallCapture {
+
+    private static final Context.Key<CallCapture> CAPTURING = Context.key("allure-grpc-capture");
+    private static final Status CANCELLED = Status.CANCELLED.withDescription("Cancelled by the application");
+
+    private final InterceptorOptions options;
+    private final MethodDescriptor<?, ?> method;
+    private final StepParent parent;
+    private final CallRecording recording;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private CallCapture(
+            final InterceptorOptions options,
+            final MethodDescriptor<?, ?> method,
+            final StepParent parent,
+            final CallRecording recording) {
+        this.options = options;
+        this.method = method;
+        this.parent = parent;
+        this.recording = recording;
+    }
+
+    /**
+     * Starting capture of the call, calls which are not sampled are recorded only when they fail
+     *
+     * @param options options of the capture
+     * @param method  called method
+     * @return capture of the call, null when the method is filtered out or the call is made outside of the test
+     */
+    public static CallCapture start(final InterceptorOptions options, final MethodDescriptor<?, ?> method) {
+        if (!options.methodFilter.matches(method)) return null;
+        final StepParent parent = StepParent.current();
+        if (parent == null) return null;
+        if (!options.samplingPolicy.isSampled(method)) {
+            options.interceptorMetrics.callSampledOut(method);
+            return new CallCapture(options, method, parent, null);
+        }
+        final StepResult stepResult = new StepResult().setName("gRPC interaction " + method.getFullMethodName());
+        final InteractionStep step = options.step(parent, stepResult, method);
+        final ProtoFormatter formatter = options.formatter();
+        final CallRecording recording = new CallRecording(
+                step,
+                options.newCapture(formatter, !method.getType().clientSendsOneMessage()),
+                options.newCapture(formatter, !method.getType().serverSendsOneMessage()),
+                options.collectsCallMetrics() ? new CallMetrics() : null);
+        options.attachmentWriter.submit(() -> step.attach("gRPC method", ObjectUtils.toString(method)));
+        return new CallCapture(options, method, parent, recording);
+    }
+
+    /**
+     * @param method method of intercepted client call
+     * @return true when the call is started within {@link #run(Runnable)} of a capture of the same method
+     */
+    static boolean isCapturing(final MethodDescriptor<?, ?> method) {
+        final CallCapture capture = CAPTURING.get();
+        return capture != null && capture.method.getFullMethodName().equals(method.getFullMethodName());
+    }
+
+    /**
+     * Running action which starts the call, client interceptor does not record it once more
+     *
+     * @param action action starting the call, for example subscription to reactive stub
+     */
+    public void run(final Runnable action) {
+        Context.current().withValue(CAPTURING, this).run(action);
+    }
+
+    /**
+     * @param message request sent by the stub
+     */
+    public void request(final Message message) {
+        if (recording != null) recording.request(message);
+    }
+
+    /**
+     * @param message response received by the stub
+     */
+    public void response(final Message message) {
+        if (recording != null) recording.response(message);
+    }
+
+    /**
+     * Closing the call, only the first close or cancellation is recorded
+     *
+     * @param status status of the call
+     */
+    public void close(final Status status) {
+        close(status, status.isOk());
+    }
+
+    /**
+     * Closing the call cancelled by the application, it is recorded as passed step with CANCELLED status
+     */
+    public void cancel() {
+        close(CANCELLED, true);
+    }
+
+    private void close(final Status status, final boolean passed) {
+        if (!closed.compareAndSet(false, true)) return;
+        if (recording == null) {
+            if (!passed) {
+                options.addFailedStep(parent, "gRPC interaction " + method.getFullMethodName(), method, status);
+            }
+            return;
+        }
+        final InteractionStep step = recording.step();
+        recording.close((requests, responses, metrics, end) -> {
+            options.attachmentWriter.submit(() -> {
+                step.attachPayloads(
+                        requests,
+                        method.getType().clientSendsOneMessage() ? "gRPC request" : "gRPC requests",
+                        responses);
+                step.attach("gRPC status", ObjectUtils.toString(status));
+            });
+            if (metrics != null) options.interceptorMetrics.callCaptured(method, metrics.messages());
+            step.finish(
+                    passed ? io.qameta.allure.model.Status.PASSED : io.qameta.allure.model.Status.FAILED,
+                    options.callMetrics ? metrics : null,
+                    end);
+        });
+    }
+}
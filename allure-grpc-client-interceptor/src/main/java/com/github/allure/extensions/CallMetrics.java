@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import com.google.protobuf.Message;
+import io.qameta.allure.model.Parameter;
+import io.qameta.allure.model.StepResult;
+import java.util.Locale;
+
+/**
+ * Timing and sizes of one gRPC call recorded as parameters of its step. Times are measured from the start of the call:
+ * headers and first response are received by the client or sent by the server. Sizes are serialized sizes of
+ * messages, which protobuf memoizes when messages are marshalled, so counting them costs nothing extra. Metrics are
+ * updated by one thread at a time, see {@link CallRecording}, with times taken when the events happened.
+ */
+final class CallMetrics {
+
+    private final long start = System.nanoTime();
+    private long headers = -1;
+    private long firstResponse = -1;
+    private int requests;
+    private long requestBytes;
+    private int responses;
+    private long responseBytes;
+
+    void headers(final long nanos) {
+        if (headers < 0) headers = nanos;
+    }
+
+    void request(final Message message) {
+        requests++;
+        requestBytes += message.getSerializedSize();
+    }
+
+    void response(final Message message, final long nanos) {
+        if (responses++ == 0) firstResponse = nanos;
+        responseBytes += message.getSerializedSize();
+    }
+
+    /**
+     * @return count of messages in both directions
+     */
+    int messages() {
+        return requests + responses;
+    }
+
+    /**
+     * @param stepResult step of the call, parameters are added when the call is closed
+     * @param end        nano time the call was closed
+     */
+    void addTo(final StepResult stepResult, final long end) {
+        if (headers >= 0) parameter(stepResult, "time to headers, ms", millis(headers - start));
+        if (firstResponse >= 0) parameter(stepResult, "time to first response, ms", millis(firstResponse - start));
+        parameter(stepResult, "duration, ms", millis(end - start));
+        parameter(stepResult, "requests", String.valueOf(requests));
+        parameter(stepResult, "request bytes", String.valueOf(requestBytes));
+        parameter(stepResult, "responses", String.valueOf(responses));
+        parameter(stepResult, "response bytes", String.valueOf(responseBytes));
+    }
+
+    private static void parameter(final StepResult stepResult, final String name, final String value) {
+        stepResult.getParameters().add(new Parameter().setName(name).setValue(value));
+    }
+
+    private static String millis(final long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import com.google.protobuf.Message;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * State of one recorded gRPC call: its step, captures of both directions and metrics. Requests are sent on caller
+ * threads while headers, responses and close arrive on gRPC executor threads, so every event is appended to a lock-free
+ * multi-producer queue and applied by one thread at a time, the one which found the queue idle. Captures and metrics
+ * stay single-threaded without locks, and events appended after the call is closed are ignored, so captures are never
+ * touched while they are attached. Close never parks the gRPC thread: its action is a continuation run by the thread
+ * which applies the last pending event, on the closing thread itself when the queue is idle. Closes still pending are
+ * awaited with {@link #flush()} before Allure writes a test result, so steps are complete in it.
+ */
+@Slf4j
+final class CallRecording {
+
+    private static final long FLUSH_TIMEOUT_MILLIS = 10_000;
+    private static final Set<CallRecording> CLOSING = ConcurrentHashMap.newKeySet();
+
+    private final InteractionStep step;
+    private final PayloadCapture requests;
+    private final PayloadCapture responses;
+    private final CallMetrics metrics;
+    private final Queue<Runnable> events = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean closeRequested = new AtomicBoolean();
+    private final CountDownLatch closing = new CountDownLatch(1);
+    private boolean closed;
+
+    /**
+     * @param step      step of the call
+     * @param requests  capture of requests
+     * @param responses capture of responses
+     * @param metrics   metrics of the call, null when they are not recorded
+     */
+    CallRecording(
+            final InteractionStep step,
+            final PayloadCapture requests,
+            final PayloadCapture responses,
+            final CallMetrics metrics) {
+        this.step = step;
+        this.requests = requests;
+        this.responses = responses;
+        this.metrics = metrics;
+    }
+
+    InteractionStep step() {
+        return step;
+    }
+
+    void headers() {
+        if (metrics == null) return;
+        final long nanos = System.nanoTime();
+        append(() -> metrics.headers(nanos));
+    }
+
+    void request(final Message message) {
+        final long millis = System.currentTimeMillis();
+        append(() -> {
+            if (metrics != null) metrics.request(message);
+            requests.add(message, millis);
+        });
+    }
+
+    void response(final Message message) {
+        final long nanos = System.nanoTime();
+        final long millis = System.currentTimeMillis();
+        append(() -> {
+            if (metrics != null) metrics.response(message, nanos);
+            responses.add(message, millis);
+        });
+    }
+
+    /**
+     * Closing the call after all events appended before, only the first close is applied. When another thread is
+     * applying events, for example formatting requests of a streaming call, this returns at once and that thread runs
+     * the action after the events appended before, see {@link #flush()}.
+     *
+     * @param action action run with captures and metrics complete, metrics are null when they are not recorded
+     */
+    void close(final Closing action) {
+        if (!closeRequested.compareAndSet(false, true)) return;
+        final long nanos = System.nanoTime();
+        CLOSING.add(this);
+        append(() -> {
+            closed = true;
+            try {
+                action.close(requests, responses, metrics, nanos);
+            } finally {
+                CLOSING.remove(this);
+                closing.countDown();
+            }
+        });
+    }
+
+    /**
+     * Waiting for closing actions of calls closed before, which are still run by threads applying events of the calls,
+     * called before Allure writes a test result
+     */
+    static void flush() {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_TIMEOUT_MILLIS);
+        for (CallRecording recording : CLOSING) {
+            try {
+                if (!recording.closing.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    log.warn("gRPC calls were not closed in {} ms", FLUSH_TIMEOUT_MILLIS);
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Appending event and applying all pending events when no other thread is applying them. Each append increments
+     * the counter of pending events after the event is queued, so the applying thread polls exactly as many events as
+     * it has seen appended and exits only when the counter drops to zero.
+     */
+    private void append(final Runnable event) {
+        events.offer(event);
+        if (pending.getAndIncrement() != 0) return;
+        int missed = 1;
+        do {
+            for (int i = 0; i < missed; i++) {
+                apply(events.poll());
+            }
+            missed = pending.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void apply(final Runnable event) {
+        if (closed) return;
+        try {
+            event.run();
+        } catch (RuntimeException e) {
+            log.error("Could not record gRPC call event", e);
+        }
+    }
+
+    /**
+     * Action closing the call
+     */
+    interface Closing {
+        void close(PayloadCapture requests, PayloadCapture responses, CallMetrics metrics, long nanos);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import com.google.protobuf.Message;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Capture formatting each message as it arrives, so formatting cost is spread over the call and messages are not
+ * retained. The temporary file is created with the first message, so its failures show up at once, and formatted
+ * messages are appended to it in batches. The file is opened only while a batch is appended, so long streaming calls do
+ * not hold a file descriptor per direction. Closing the call only finishes the json and writes the file as attachment.
+ * When the temporary file is not writable messages are attached as lost, same as messages which could not be spilled by
+ * {@link PayloadBuffer}.
+ */
+@Slf4j
+class IncrementalPayloads implements PayloadCapture {
+
+    /**
+     * Count of formatted characters kept in memory before they are appended to the temporary file
+     */
+    private static final int BATCH_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final ProtoFormatter formatter;
+    private final boolean timestamps;
+    private final StringBuilder batch = new StringBuilder();
+
+    private Path file;
+    private ProtoFormatter.IncrementalPrinter printer;
+    private long messages;
+    private long lost;
+
+    IncrementalPayloads(final Path directory, final ProtoFormatter formatter, final boolean timestamps) {
+        this.directory = directory;
+        this.formatter = formatter;
+        this.timestamps = timestamps;
+    }
+
+    @Override
+    public void add(final Message message, final long timeMillis) {
+        messages++;
+        if (lost > 0) {
+            lost++;
+            return;
+        }
+        try {
+            if (printer == null) {
+                file = directory == null
+                        ? Files.createTempFile("allure-grpc-", formatter.fileExtension())
+                        : Files.createTempFile(directory, "allure-grpc-", formatter.fileExtension());
+                printer = formatter.incrementalPrinter(batch);
+            }
+            printer.print(message, timestamps ? ProtoFormatter.timestamp(timeMillis) : null);
+            if (batch.length() >= BATCH_SIZE) append();
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void attachTo(final InteractionStep step, final String name) {
+        if (lost == 0) {
+            try {
+                if (printer == null) {
+                    step.attach(name, formatter.mimeType(), formatter.fileExtension(), new byte[0]);
+                    return;
+                }
+                printer.finish();
+                append();
+                step.attach(name, formatter.mimeType(), formatter.fileExtension(), file);
+                return;
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            }
+        }
+        final StringBuilder marker = new StringBuilder();
+        try {
+            final ProtoFormatter.IncrementalPrinter lostPrinter = formatter.incrementalPrinter(marker);
+            lostPrinter.lost(lost);
+            lostPrinter.finish();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        step.attach(name, formatter.mimeType(), formatter.fileExtension(), bytes(marker));
+    }
+
+    /**
+     * Appending formatted messages to the temporary file
+     */
+    private void append() throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+            out.append(batch);
+        }
+        batch.setLength(0);
+    }
+
+    /**
+     * Marking all messages of the call as lost, messages appended before are incomplete and deleted with their file
+     */
+    private void fail(final Exception e) {
+        lost = messages;
+        batch.setLength(0);
+        log.warn("Could not format gRPC messages to temporary file, messages are marked as lost", e);
+        if (file == null) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException deleteFailure) {
+            log.warn("Could not delete temporary file {}", file, deleteFailure);
+        }
+        file = null;
+    }
+
+    private static byte[] bytes(final CharSequence formatted) {
+        return formatted.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
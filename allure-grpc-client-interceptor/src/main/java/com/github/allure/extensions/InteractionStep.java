@@ -0,0 +1,282 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import io.grpc.MethodDescriptor;
+import io.qameta.allure.AllureLifecycle;
+import io.qameta.allure.model.Attachment;
+import io.qameta.allure.model.Status;
+import io.qameta.allure.model.StepResult;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Allure step of one gRPC interaction with attachments and status bound to the step itself instead of thread context,
+ * so the step could be completed from any thread.
+ */
+@Slf4j
+class InteractionStep {
+
+    static final String TEXT_PLAIN = "text/plain";
+    static final String TXT = ".txt";
+    static final String APPLICATION_JSON = "application/json";
+    static final String JSON = ".json";
+
+    private static final Map<AllureLifecycle, Set<String>> SHARED_SOURCES = new WeakHashMap<>();
+
+    private final AllureLifecycle lifecycle;
+    private final String uuid;
+    private final StepResult stepResult;
+    private final AttachmentCompression compression;
+    private final InterceptorMetrics metrics;
+    private final MethodDescriptor<?, ?> method;
+    private final AtomicLong writeNanos = new AtomicLong();
+
+    InteractionStep(
+            final AllureLifecycle lifecycle,
+            final String uuid,
+            final StepResult stepResult,
+            final AttachmentCompression compression,
+            final InterceptorMetrics metrics,
+            final MethodDescriptor<?, ?> method) {
+        this.lifecycle = lifecycle;
+        this.uuid = uuid;
+        this.stepResult = stepResult;
+        this.compression = compression;
+        this.metrics = metrics;
+        this.method = method;
+    }
+
+    /**
+     * @return UUID of the step in Allure lifecycle, parent of steps of in-process server calls
+     */
+    String uuid() {
+        return uuid;
+    }
+
+    /**
+     * Stopping the step started in its parent when the call was started
+     *
+     * @param status  status of the step
+     * @param metrics metrics added as parameters, null when they are not recorded
+     * @param end     nano time the call was closed
+     */
+    void finish(final Status status, final CallMetrics metrics, final long end) {
+        StepParent.stop(lifecycle, uuid, step -> {
+            synchronized (stepResult) {
+                step.setStatus(status);
+                if (metrics != null) metrics.addTo(step, end);
+            }
+        });
+    }
+
+    /**
+     * Attaching captured requests and responses of the call, time of formatting them is reported to metrics
+     *
+     * @param requests     captured requests
+     * @param requestsName attachment name of requests
+     * @param responses    captured responses
+     */
+    void attachPayloads(final PayloadCapture requests, final String requestsName, final PayloadCapture responses) {
+        final long started = System.nanoTime();
+        final long written = writeNanos.get();
+        requests.attachTo(this, requestsName);
+        responses.attachTo(this, "gRPC responses");
+        metrics.payloadsFormatted(method, System.nanoTime() - started - (writeNanos.get() - written));
+    }
+
+    /**
+     * Writing plaintext attachment and adding it to the step
+     *
+     * @param name    attachment name
+     * @param content attachment content
+     */
+    void attach(final String name, final String content) {
+        final Utf8Buffer buffer = Utf8Buffer.acquire();
+        try {
+            final InputStream in = buffer.append(content).inputStream();
+            attach(name, TEXT_PLAIN, TXT, in, buffer.size());
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not write gRPC attachment {}", name, e);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Rendering text attachment chunk by chunk while Allure writes it, so only one chunk is kept in memory and nothing
+     * is written to temporary files. Content up to the compression threshold is rendered ahead, so the attachment is
+     * compressed only when it is above the threshold, same as other attachments.
+     *
+     * @param name          attachment name
+     * @param type          MIME type of attachment, for example application/json
+     * @param fileExtension extension of attachment file with leading dot
+     * @param chunks        rendering of attachment content
+     */
+    void attach(final String name, final String type, final String fileExtension, final Utf8Buffer.Chunks chunks) {
+        final Utf8Buffer buffer = Utf8Buffer.acquire();
+        try {
+            boolean more = true;
+            if (compression.compresses(Long.MAX_VALUE)) {
+                while (more && !compression.compresses(buffer.size())) {
+                    more = chunks.render(buffer);
+                }
+            }
+            final long started = System.nanoTime();
+            final Utf8Buffer.ChunkedStream content = buffer.inputStream(more ? chunks : out -> false);
+            final Attachment attachment =
+                    write(name, type, fileExtension, content, compression.compresses(buffer.size()));
+            // chunks rendered while the attachment was written are formatting, not writing
+            added(attachment, started + content.renderNanos(), content.size());
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not write gRPC attachment {}", name, e);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Writing attachment of any type from temporary file and deleting the file
+     *
+     * @param name          attachment name
+     * @param type          MIME type of attachment
+     * @param fileExtension extension of attachment file with leading dot
+     * @param file          attachment content
+     */
+    void attach(final String name, final String type, final String fileExtension, final Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            attach(name, type, fileExtension, in, Files.size(file));
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not write gRPC attachment {}", name, e);
+        } finally {
+            delete(file);
+        }
+    }
+
+    /**
+     * Writing attachment of any type and adding it to the step
+     *
+     * @param name          attachment name
+     * @param type          MIME type of attachment
+     * @param fileExtension extension of attachment file with leading dot
+     * @param content       attachment content
+     */
+    void attach(final String name, final String type, final String fileExtension, final byte[] content) {
+        try {
+            attach(name, type, fileExtension, new ByteArrayInputStream(content), content.length);
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not write gRPC attachment {}", name, e);
+        }
+    }
+
+    /**
+     * Writing file shared by attachments of many calls, such as descriptor sets of binary messages, to allure results
+     * once per lifecycle without adding it to the step
+     *
+     * @param source  name of the file in allure results
+     * @param content file content
+     */
+    void writeShared(final String source, final byte[] content) {
+        final Set<String> written;
+        synchronized (SHARED_SOURCES) {
+            written = SHARED_SOURCES.computeIfAbsent(lifecycle, key -> ConcurrentHashMap.newKeySet());
+        }
+        if (!written.add(source)) return;
+        try {
+            lifecycle.writeAttachment(source, new ByteArrayInputStream(content));
+        } catch (RuntimeException e) {
+            written.remove(source);
+            log.error("Could not write gRPC attachment {}", source, e);
+        }
+    }
+
+    /**
+     * Writing attachment compressed when its size is above the compression threshold and adding it to the step
+     */
+    private void attach(
+            final String name,
+            final String type,
+            final String fileExtension,
+            final InputStream content,
+            final long size)
+            throws IOException {
+        final long started = System.nanoTime();
+        added(write(name, type, fileExtension, content, compression.compresses(size)), started, size);
+    }
+
+    /**
+     * Writing attachment content to allure results as it is read from the stream
+     */
+    private Attachment write(
+            final String name,
+            final String type,
+            final String fileExtension,
+            final InputStream content,
+            final boolean compressed)
+            throws IOException {
+        final Attachment attachment = new Attachment().setName(name);
+        if (compressed) {
+            attachment.setType(AttachmentCompression.GZIP_TYPE);
+            attachment.setSource(
+                    UUID.randomUUID() + "-attachment" + fileExtension + AttachmentCompression.GZIP_EXTENSION);
+            try (InputStream compressedContent = AttachmentCompression.compress(content)) {
+                lifecycle.writeAttachment(attachment.getSource(), compressedContent);
+            }
+        } else {
+            attachment.setType(type).setSource(UUID.randomUUID() + "-attachment" + fileExtension);
+            lifecycle.writeAttachment(attachment.getSource(), content);
+        }
+        return attachment;
+    }
+
+    /**
+     * Adding written attachment to the step and reporting time of writing it
+     */
+    private void added(final Attachment attachment, final long started, final long size) {
+        final long written = System.nanoTime() - started;
+        writeNanos.addAndGet(written);
+        metrics.attachmentWritten(method, written, size);
+        synchronized (stepResult) {
+            stepResult.getAttachments().add(attachment);
+        }
+    }
+
+    private static void delete(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete temporary file {}", file, e);
+        }
+    }
+}
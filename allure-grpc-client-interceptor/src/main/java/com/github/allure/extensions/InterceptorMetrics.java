@@ -0,0 +1,68 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import io.grpc.MethodDescriptor;
+
+/**
+ * Observer of the own overhead of interceptors: time spent formatting and writing attachments, their sizes and calls
+ * which were not captured. Methods are called on gRPC callback and attachment writer threads, so implementations
+ * should be thread-safe and cheap.
+ */
+public interface InterceptorMetrics {
+
+    /**
+     * Metrics which are not recorded anywhere
+     */
+    InterceptorMetrics NOOP = new InterceptorMetrics() {};
+
+    /**
+     * @param method method of the call which was not captured by sampling policy
+     */
+    default void callSampledOut(MethodDescriptor<?, ?> method) {}
+
+    /**
+     * @param method   method of the closed call
+     * @param messages count of messages captured in both directions
+     */
+    default void callCaptured(MethodDescriptor<?, ?> method, int messages) {}
+
+    /**
+     * @param method method of the call
+     * @param nanos  time of formatting captured messages of the call, writing of attachments excluded
+     */
+    default void payloadsFormatted(MethodDescriptor<?, ?> method, long nanos) {}
+
+    /**
+     * @param method method of the call
+     * @param nanos  time of writing the attachment to allure results
+     * @param bytes  size of attachment content before compression
+     */
+    default void attachmentWritten(MethodDescriptor<?, ?> method, long nanos, long bytes) {}
+
+    /**
+     * Attachment task was not queued by asynchronous writer and was executed on the submitting gRPC thread
+     */
+    default void attachmentTaskRejected() {}
+}
@@ -0,0 +1,250 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.qameta.allure.model.StepResult;
+import io.qameta.allure.util.ObjectUtils;
+
+/**
+ * Options shared by client and server interceptors and by {@link CallCapture} of other stubs, each option is declared
+ * once in {@link Builder} and all their builders inherit it.
+ */
+public final class InterceptorOptions {
+
+    final ProtoFormatter protoFormatter;
+    final AttachmentWriter attachmentWriter;
+    final PayloadBufferPolicy payloadBufferPolicy;
+    final boolean messageTimestamps;
+    final SamplingPolicy samplingPolicy;
+    final MethodFilter methodFilter;
+    final AttachmentCompression attachmentCompression;
+    final boolean callMetrics;
+    final InterceptorMetrics interceptorMetrics;
+    final MetadataRenderer metadataRenderer;
+
+    private InterceptorOptions(final Builder<?> builder) {
+        this.protoFormatter = builder.protoFormatter;
+        this.attachmentWriter = builder.attachmentWriter;
+        this.payloadBufferPolicy = builder.payloadBufferPolicy;
+        this.messageTimestamps = builder.messageTimestamps;
+        this.samplingPolicy = builder.samplingPolicy;
+        this.methodFilter = builder.methodFilter;
+        this.attachmentCompression = builder.attachmentCompression;
+        this.callMetrics = builder.callMetrics;
+        this.interceptorMetrics = builder.interceptorMetrics;
+        this.metadataRenderer = builder.metadataRenderer;
+    }
+
+    /**
+     * @return configured formatter or default one chosen by deprecated ProtoFormatter.FORMAT_PROTO_TO_JSON
+     */
+    ProtoFormatter formatter() {
+        return protoFormatter != null ? protoFormatter : ProtoFormatter.getDefault();
+    }
+
+    /**
+     * @param formatter formatter of the call messages
+     * @param streaming true for streaming direction of the call, only their messages get timestamps
+     * @return capture of messages of one direction
+     */
+    PayloadCapture newCapture(final ProtoFormatter formatter, final boolean streaming) {
+        return payloadBufferPolicy.newCapture(formatter, messageTimestamps && streaming);
+    }
+
+    /**
+     * Starting step of the call in its parent
+     *
+     * @param parent     parent the step is started in
+     * @param stepResult step of the call
+     * @param method     called method
+     * @return step with attachments bound to it
+     */
+    InteractionStep step(final StepParent parent, final StepResult stepResult, final MethodDescriptor<?, ?> method) {
+        final String uuid = parent.start(stepResult);
+        return new InteractionStep(
+                parent.lifecycle(), uuid, stepResult, attachmentCompression, interceptorMetrics, method);
+    }
+
+    /**
+     * Recording call which is not sampled and closed with non-OK status as a failed step
+     *
+     * @param parent parent the step is started in
+     * @param name   name of the step
+     * @param method called method
+     * @param status status of the call
+     */
+    void addFailedStep(
+            final StepParent parent, final String name, final MethodDescriptor<?, ?> method, final Status status) {
+        final InteractionStep failedStep = step(parent, new StepResult().setName(name), method);
+        failedStep.finish(io.qameta.allure.model.Status.FAILED, null, 0);
+        attachmentWriter.submit(() -> {
+            failedStep.attach("gRPC method", ObjectUtils.toString(method));
+            failedStep.attach("gRPC status", ObjectUtils.toString(status));
+        });
+    }
+
+    /**
+     * Flushing attachments submitted to attachment writer, useful for async writers outside of Allure test lifecycle
+     */
+    public void flush() {
+        attachmentWriter.flush();
+    }
+
+    /**
+     * @return true when call metrics are collected, for step parameters or for interceptor metrics
+     */
+    boolean collectsCallMetrics() {
+        return callMetrics || interceptorMetrics != InterceptorMetrics.NOOP;
+    }
+
+    /**
+     * Builder of options with inline attachment writer, unbounded payload buffer and all calls sampled
+     *
+     * @param <B> type of interceptor or capture builder returned by option methods
+     */
+    public abstract static class Builder<B extends Builder<B>> {
+        private ProtoFormatter protoFormatter;
+        private AttachmentWriter attachmentWriter = AttachmentWriter.INLINE;
+        private PayloadBufferPolicy payloadBufferPolicy = PayloadBufferPolicy.unbounded();
+        private boolean messageTimestamps = true;
+        private SamplingPolicy samplingPolicy = SamplingPolicy.ALWAYS;
+        private MethodFilter methodFilter = MethodFilter.all();
+        private AttachmentCompression attachmentCompression = AttachmentCompression.none();
+        private boolean callMetrics;
+        private InterceptorMetrics interceptorMetrics = InterceptorMetrics.NOOP;
+        private MetadataRenderer metadataRenderer = MetadataRenderer.getDefault();
+
+        protected Builder() {}
+
+        /**
+         * @param protoFormatter formatter of request and response messages, null to follow deprecated
+         *                       ProtoFormatter.FORMAT_PROTO_TO_JSON
+         * @return this builder
+         */
+        public B protoFormatter(final ProtoFormatter protoFormatter) {
+            this.protoFormatter = protoFormatter;
+            return self();
+        }
+
+        /**
+         * @param attachmentWriter strategy of formatting and persisting attachments
+         * @return this builder
+         */
+        public B attachmentWriter(final AttachmentWriter attachmentWriter) {
+            this.attachmentWriter = attachmentWriter;
+            return self();
+        }
+
+        /**
+         * @param payloadBufferPolicy policy of keeping or incremental formatting of request and response messages
+         *                            until the call is closed
+         * @return this builder
+         */
+        public B payloadBufferPolicy(final PayloadBufferPolicy payloadBufferPolicy) {
+            this.payloadBufferPolicy = payloadBufferPolicy;
+            return self();
+        }
+
+        /**
+         * @param messageTimestamps true to attach arrival or sending time of each message of streaming directions, as
+         *                          {@code "@timestamp"} field of Json objects or comment line of text format
+         * @return this builder
+         */
+        public B messageTimestamps(final boolean messageTimestamps) {
+            this.messageTimestamps = messageTimestamps;
+            return self();
+        }
+
+        /**
+         * @param samplingPolicy policy deciding which calls are attached, non-OK statuses of other calls are still
+         *                       recorded as failed steps
+         * @return this builder
+         */
+        public B samplingPolicy(final SamplingPolicy samplingPolicy) {
+            this.samplingPolicy = samplingPolicy;
+            return self();
+        }
+
+        /**
+         * @param methodFilter filter of intercepted methods, calls of other methods are not wrapped and not recorded
+         * @return this builder
+         */
+        public B methodFilter(final MethodFilter methodFilter) {
+            this.methodFilter = methodFilter;
+            return self();
+        }
+
+        /**
+         * @param attachmentCompression compression of attachments above its threshold
+         * @return this builder
+         */
+        public B attachmentCompression(final AttachmentCompression attachmentCompression) {
+            this.attachmentCompression = attachmentCompression;
+            return self();
+        }
+
+        /**
+         * @param callMetrics true to add time to headers, time to first response, duration, message counts and
+         *                    serialized sizes of both directions as step parameters, off by default
+         * @return this builder
+         */
+        public B callMetrics(final boolean callMetrics) {
+            this.callMetrics = callMetrics;
+            return self();
+        }
+
+        /**
+         * @param interceptorMetrics observer of time and sizes of formatting and writing attachments
+         * @return this builder
+         */
+        public B interceptorMetrics(final InterceptorMetrics interceptorMetrics) {
+            this.interceptorMetrics = interceptorMetrics;
+            return self();
+        }
+
+        /**
+         * @param metadataRenderer renderer of request headers, response headers and trailers with redaction of their
+         *                         values
+         * @return this builder
+         */
+        public B metadataRenderer(final MetadataRenderer metadataRenderer) {
+            this.metadataRenderer = metadataRenderer;
+            return self();
+        }
+
+        /**
+         * @return options of the interceptor or capture being built
+         */
+        protected InterceptorOptions options() {
+            return new InterceptorOptions(this);
+        }
+
+        @SuppressWarnings("unchecked")
+        private B self() {
+            return (B) this;
+        }
+    }
+}
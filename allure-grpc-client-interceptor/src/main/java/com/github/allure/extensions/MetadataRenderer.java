@@ -0,0 +1,252 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import io.grpc.Metadata;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Renderer of call metadata: request headers, response headers and trailers rendered as one json attachment.
+ *
+ * <p>Redacted keys are compiled on creation and each key is planned on its first use: escaped json name, typed
+ * {@link Metadata.Key} and whether its values are redacted, so rendering neither escapes names nor checks redaction
+ * again. Values of binary {@code -bin} keys are base64 encoded straight into the attachment only when it is rendered.
+ */
+public final class MetadataRenderer {
+
+    static final String REDACTED = "[redacted]";
+    /*
+     * Bound of cached key plans, calls with generated keys are rendered past it without caching
+     */
+    private static final int MAX_PLANS = 1024;
+    private static final char[] BASE64 =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final MetadataRenderer DEFAULT = redacting("authorization", "proxy-authorization", "cookie");
+
+    private final Set<String> redacted;
+    private final ConcurrentMap<String, KeyPlan> plans = new ConcurrentHashMap<>();
+
+    private MetadataRenderer(final Set<String> redacted) {
+        this.redacted = redacted;
+    }
+
+    /**
+     * @return renderer redacting authorization, proxy-authorization and cookie values
+     */
+    public static MetadataRenderer getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param keys keys of redacted values, case insensitive
+     * @return renderer replacing values of the keys with {@code [redacted]}
+     */
+    public static MetadataRenderer redacting(final String... keys) {
+        return redacting(Arrays.asList(keys));
+    }
+
+    /**
+     * @param keys keys of redacted values, case insensitive
+     * @return renderer replacing values of the keys with {@code [redacted]}
+     */
+    public static MetadataRenderer redacting(final Collection<String> keys) {
+        final Set<String> redacted = new HashSet<>();
+        for (String key : keys) {
+            redacted.add(key.trim().toLowerCase(Locale.ROOT));
+        }
+        return new MetadataRenderer(Collections.unmodifiableSet(redacted));
+    }
+
+    /**
+     * @param metadata metadata of a callback, null when there is none
+     * @return copy of metadata, which could be changed by other interceptors and the application after the callback
+     */
+    static Metadata snapshot(final Metadata metadata) {
+        if (metadata == null) return null;
+        final Metadata snapshot = new Metadata();
+        snapshot.merge(metadata);
+        return snapshot;
+    }
+
+    /**
+     * @param request  headers sent with the request, null when unknown
+     * @param headers  headers of the response, null when none were received
+     * @param trailers trailers of the response, null when none were received
+     * @return rendering of json object with a member for each known metadata
+     */
+    Utf8Buffer.Chunks chunks(final Metadata request, final Metadata headers, final Metadata trailers) {
+        return out -> {
+            out.append('{');
+            boolean first = section("request", request, true, out);
+            first = section("headers", headers, first, out);
+            section("trailers", trailers, first, out);
+            out.append("\n}");
+            return false;
+        };
+    }
+
+    private boolean section(final String name, final Metadata metadata, final boolean first, final Appendable out)
+            throws IOException {
+        if (metadata == null) return first;
+        if (!first) out.append(',');
+        out.append("\n  \"").append(name).append("\": {");
+        boolean firstKey = true;
+        for (String key : metadata.keys()) {
+            final KeyPlan plan = plan(key);
+            if (!firstKey) out.append(',');
+            firstKey = false;
+            out.append("\n    ").append(plan.name);
+            if (plan.binary != null) {
+                values(metadata.getAll(plan.binary), plan.redacted, out);
+            } else {
+                values(metadata.getAll(plan.ascii), plan.redacted, out);
+            }
+        }
+        out.append(firstKey ? "}" : "\n  }");
+        return false;
+    }
+
+    /**
+     * Writing single value as json string and several values as json array
+     */
+    private static void values(final Iterable<?> values, final boolean redacted, final Appendable out)
+            throws IOException {
+        final Iterator<?> iterator = values == null ? Collections.emptyIterator() : values.iterator();
+        if (!iterator.hasNext()) {
+            out.append("[]");
+            return;
+        }
+        final Object value = iterator.next();
+        if (!iterator.hasNext()) {
+            value(value, redacted, out);
+            return;
+        }
+        out.append('[');
+        value(value, redacted, out);
+        while (iterator.hasNext()) {
+            out.append(", ");
+            value(iterator.next(), redacted, out);
+        }
+        out.append(']');
+    }
+
+    private static void value(final Object value, final boolean redacted, final Appendable out) throws IOException {
+        out.append('"');
+        if (redacted) {
+            out.append(REDACTED);
+        } else if (value instanceof byte[]) {
+            base64((byte[]) value, out);
+        } else {
+            escape((String) value, out);
+        }
+        out.append('"');
+    }
+
+    private static void base64(final byte[] bytes, final Appendable out) throws IOException {
+        int i = 0;
+        for (; i + 2 < bytes.length; i += 3) {
+            final int bits = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8 | bytes[i + 2] & 0xFF;
+            out.append(BASE64[bits >>> 18])
+                    .append(BASE64[bits >>> 12 & 0x3F])
+                    .append(BASE64[bits >>> 6 & 0x3F])
+                    .append(BASE64[bits & 0x3F]);
+        }
+        if (i < bytes.length) {
+            final int bits = (bytes[i] & 0xFF) << 16 | (i + 1 < bytes.length ? (bytes[i + 1] & 0xFF) << 8 : 0);
+            out.append(BASE64[bits >>> 18]).append(BASE64[bits >>> 12 & 0x3F]);
+            out.append(i + 1 < bytes.length ? BASE64[bits >>> 6 & 0x3F] : '=').append('=');
+        }
+    }
+
+    /**
+     * Escaping json string, ascii metadata values are printable, so only quotes and backslashes are expected
+     */
+    private static void escape(final String value, final Appendable out) throws IOException {
+        final int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            final char ch = value.charAt(i);
+            if (ch == '"' || ch == '\\' || ch < 0x20) {
+                out.append(value, start, i).append('\\');
+                if (ch < 0x20) {
+                    out.append(String.format(Locale.ROOT, "u%04x", (int) ch));
+                } else {
+                    out.append(ch);
+                }
+                start = i + 1;
+            }
+        }
+        out.append(value, start, length);
+    }
+
+    /**
+     * @return plan of rendering values of the key, cached unless there are too many keys already
+     */
+    private KeyPlan plan(final String key) {
+        final KeyPlan cached = plans.get(key);
+        if (cached != null) return cached;
+        final KeyPlan plan = new KeyPlan(key, redacted.contains(key));
+        if (plans.size() >= MAX_PLANS) return plan;
+        final KeyPlan raced = plans.putIfAbsent(key, plan);
+        return raced != null ? raced : plan;
+    }
+
+    /**
+     * Escaped json name of a key followed by the separator of its values, typed key and redaction of its values
+     */
+    private static final class KeyPlan {
+        private final String name;
+        private final Metadata.Key<String> ascii;
+        private final Metadata.Key<byte[]> binary;
+        private final boolean redacted;
+
+        KeyPlan(final String key, final boolean redacted) {
+            final StringBuilder name = new StringBuilder().append('"');
+            try {
+                escape(key, name);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.name = name.append("\": ").toString();
+            if (key.endsWith(Metadata.BINARY_HEADER_SUFFIX)) {
+                this.ascii = null;
+                this.binary = Metadata.Key.of(key, Metadata.BINARY_BYTE_MARSHALLER);
+            } else {
+                this.ascii = Metadata.Key.of(key, Metadata.ASCII_STRING_MARSHALLER);
+                this.binary = null;
+            }
+            this.redacted = redacted;
+        }
+    }
+}
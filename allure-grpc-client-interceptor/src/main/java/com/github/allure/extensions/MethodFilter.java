@@ -0,0 +1,213 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import io.grpc.MethodDescriptor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Include and exclude rules of intercepted methods. Calls of methods which are not matched are not wrapped by the
+ * interceptor at all.
+ *
+ * <p>Rules are given by full method name like {@code helloworld.Greeter/SayHello} with {@code *} wildcard, by service
+ * name and by method type. Method is matched when it matches every kind of given include rules and no exclude rule.
+ * Rules are compiled once on {@link Builder#build()} and the decision is cached per {@link MethodDescriptor}, up to a
+ * bound, so descriptors generated at runtime, for example by reflection or grpc-web proxies, are matched without
+ * caching past it.
+ */
+public final class MethodFilter {
+
+    private static final MethodFilter ALL = builder().build();
+    private static final int MAX_DECISIONS = 1024;
+
+    private final Rule include;
+    private final Rule exclude;
+    private final ConcurrentMap<MethodDescriptor<?, ?>, Boolean> decisions = new ConcurrentHashMap<>();
+
+    private MethodFilter(final Builder builder) {
+        this.include = new Rule(builder.includeMethods, builder.includeServices, builder.includeTypes);
+        this.exclude = new Rule(builder.excludeMethods, builder.excludeServices, builder.excludeTypes);
+    }
+
+    /**
+     * @return filter matching all methods
+     */
+    public static MethodFilter all() {
+        return ALL;
+    }
+
+    /**
+     * @return builder of filter without rules
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param method descriptor of called method
+     * @return true when calls of the method should be intercepted
+     */
+    public boolean matches(final MethodDescriptor<?, ?> method) {
+        if (this == ALL) return true;
+        final Boolean cached = decisions.get(method);
+        if (cached != null) return cached;
+        final boolean decision = include.matchesAllOf(method) && !exclude.matchesAnyOf(method);
+        if (decisions.size() < MAX_DECISIONS) decisions.putIfAbsent(method, decision);
+        return decision;
+    }
+
+    /**
+     * Compiled rules of one direction, empty kinds of rules are skipped
+     */
+    private static final class Rule {
+        private final Set<String> methods;
+        private final Pattern methodPattern;
+        private final Set<String> services;
+        private final Set<MethodDescriptor.MethodType> types;
+
+        Rule(final List<String> methods, final Set<String> services, final Set<MethodDescriptor.MethodType> types) {
+            final Set<String> exact = new HashSet<>();
+            final List<String> wildcards = new ArrayList<>();
+            for (String method : methods) {
+                if (method.indexOf('*') < 0) exact.add(method);
+                else wildcards.add(glob(method));
+            }
+            this.methods = exact.isEmpty() ? null : exact;
+            this.methodPattern = wildcards.isEmpty() ? null : Pattern.compile(String.join("|", wildcards));
+            this.services = services.isEmpty() ? null : new HashSet<>(services);
+            this.types = types.isEmpty() ? null : EnumSet.copyOf(types);
+        }
+
+        boolean matchesAllOf(final MethodDescriptor<?, ?> method) {
+            return (methods == null && methodPattern == null || matchesName(method))
+                    && (services == null || services.contains(method.getServiceName()))
+                    && (types == null || types.contains(method.getType()));
+        }
+
+        boolean matchesAnyOf(final MethodDescriptor<?, ?> method) {
+            return matchesName(method)
+                    || services != null && services.contains(method.getServiceName())
+                    || types != null && types.contains(method.getType());
+        }
+
+        private boolean matchesName(final MethodDescriptor<?, ?> method) {
+            final String name = method.getFullMethodName();
+            return methods != null && methods.contains(name)
+                    || methodPattern != null && methodPattern.matcher(name).matches();
+        }
+
+        private static String glob(final String pattern) {
+            final StringBuilder regex = new StringBuilder();
+            int from = 0;
+            for (int star = pattern.indexOf('*'); star >= 0; star = pattern.indexOf('*', from)) {
+                if (star > from) regex.append(Pattern.quote(pattern.substring(from, star)));
+                regex.append(".*");
+                from = star + 1;
+            }
+            if (from < pattern.length()) regex.append(Pattern.quote(pattern.substring(from)));
+            return "(?:" + regex + ")";
+        }
+    }
+
+    /**
+     * Builder of method filter, rules of the same kind are combined
+     */
+    public static final class Builder {
+        private final List<String> includeMethods = new ArrayList<>();
+        private final Set<String> includeServices = new HashSet<>();
+        private final Set<MethodDescriptor.MethodType> includeTypes = new HashSet<>();
+        private final List<String> excludeMethods = new ArrayList<>();
+        private final Set<String> excludeServices = new HashSet<>();
+        private final Set<MethodDescriptor.MethodType> excludeTypes = new HashSet<>();
+
+        private Builder() {}
+
+        /**
+         * @param fullMethodNames full method names, {@code *} matches any characters
+         * @return this builder
+         */
+        public Builder includeMethods(final String... fullMethodNames) {
+            Collections.addAll(includeMethods, fullMethodNames);
+            return this;
+        }
+
+        /**
+         * @param serviceNames service names like {@code helloworld.Greeter}
+         * @return this builder
+         */
+        public Builder includeServices(final String... serviceNames) {
+            Collections.addAll(includeServices, serviceNames);
+            return this;
+        }
+
+        /**
+         * @param types method types
+         * @return this builder
+         */
+        public Builder includeTypes(final MethodDescriptor.MethodType... types) {
+            includeTypes.addAll(Arrays.asList(types));
+            return this;
+        }
+
+        /**
+         * @param fullMethodNames full method names, {@code *} matches any characters
+         * @return this builder
+         */
+        public Builder excludeMethods(final String... fullMethodNames) {
+            Collections.addAll(excludeMethods, fullMethodNames);
+            return this;
+        }
+
+        /**
+         * @param serviceNames service names like {@code grpc.health.v1.Health}
+         * @return this builder
+         */
+        public Builder excludeServices(final String... serviceNames) {
+            Collections.addAll(excludeServices, serviceNames);
+            return this;
+        }
+
+        /**
+         * @param types method types
+         * @return this builder
+         */
+        public Builder excludeTypes(final MethodDescriptor.MethodType... types) {
+            excludeTypes.addAll(Arrays.asList(types));
+            return this;
+        }
+
+        public MethodFilter build() {
+            return new MethodFilter(this);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Messages of one call in arrival order, first messages and last messages are kept in memory and the middle is spilled
+ * to memory-mapped segments of temporary files, see {@link SegmentedLog}. Messages are added by one gRPC callback
+ * thread at a time and read only after the call is closed.
+ */
+@Slf4j
+class PayloadBuffer implements PayloadCapture, Closeable {
+
+    private final int headLimit;
+    private final int tailLimit;
+    private final Path directory;
+    private final int segmentSize;
+    private final ProtoFormatter formatter;
+    private final boolean timestamps;
+    private final List<Message> head = new ArrayList<>();
+    private final ArrayDeque<Message> tail = new ArrayDeque<>();
+    private final ArrayDeque<Long> tailTimes = new ArrayDeque<>();
+    private long[] headTimes = new long[0];
+
+    private SegmentedLog spill;
+    private Parser<? extends Message> parser;
+    private long lost;
+
+    PayloadBuffer(
+            final int headLimit,
+            final int tailLimit,
+            final Path directory,
+            final ProtoFormatter formatter,
+            final boolean timestamps) {
+        this(headLimit, tailLimit, directory, SegmentedLog.DEFAULT_SEGMENT_SIZE, formatter, timestamps);
+    }
+
+    PayloadBuffer(
+            final int headLimit,
+            final int tailLimit,
+            final Path directory,
+            final int segmentSize,
+            final ProtoFormatter formatter,
+            final boolean timestamps) {
+        this.headLimit = headLimit;
+        this.tailLimit = tailLimit;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.formatter = formatter;
+        this.timestamps = timestamps;
+    }
+
+    @Override
+    public void add(final Message message, final long timeMillis) {
+        final long time = timestamps ? timeMillis : 0;
+        if (head.size() < headLimit) {
+            if (timestamps) {
+                if (headTimes.length == head.size()) {
+                    headTimes = Arrays.copyOf(headTimes, Math.max(8, Math.min(headLimit, head.size() * 2)));
+                }
+                headTimes[head.size()] = time;
+            }
+            head.add(message);
+            return;
+        }
+        tail.addLast(message);
+        if (timestamps) tailTimes.addLast(time);
+        if (tail.size() > tailLimit) {
+            spill(tail.removeFirst(), timestamps ? tailTimes.removeFirst() : 0);
+        }
+    }
+
+    /**
+     * @return true when some messages are in temporary files and should not be rendered in memory
+     */
+    boolean isSpilled() {
+        return spill != null;
+    }
+
+    /**
+     * @return count of kept messages
+     */
+    long size() {
+        return head.size() + (spill == null ? 0 : spill.size()) + tail.size();
+    }
+
+    /**
+     * @return messages kept in memory, only if nothing was spilled
+     */
+    List<Message> messages() {
+        if (isSpilled()) throw new IllegalStateException("Messages were spilled to temporary files");
+        if (tail.isEmpty()) return head;
+        final List<Message> messages = new ArrayList<>(head.size() + tail.size());
+        messages.addAll(head);
+        messages.addAll(tail);
+        return messages;
+    }
+
+    /**
+     * Attaching messages rendered one by one while the attachment is written, spilled messages are parsed one by one
+     * as well, so neither rendered attachment nor spilled messages are kept in memory as a whole
+     */
+    @Override
+    public void attachTo(final InteractionStep step, final String name) {
+        try {
+            final Cursor cursor = new Cursor();
+            step.attach(name, formatter.mimeType(), formatter.fileExtension(), new Utf8Buffer.Chunks() {
+                private ProtoFormatter.IncrementalPrinter printer;
+
+                @Override
+                public boolean render(final Appendable out) throws IOException {
+                    if (printer == null) printer = formatter.incrementalPrinter(out);
+                    final boolean next = cursor.next();
+                    printer.lost(cursor.lost);
+                    if (next) {
+                        printer.print(cursor.message, timestamps ? ProtoFormatter.timestamp(cursor.time) : null);
+                        return true;
+                    }
+                    printer.finish();
+                    return false;
+                }
+            });
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Visiting all messages in arrival order, spilled messages are parsed one by one
+     *
+     * @param visitor consumer of messages with their epoch millis, millis are 0 when timestamps are not kept
+     * @throws IOException when temporary file is not readable
+     */
+    void forEach(final Visitor visitor) throws IOException {
+        final Cursor cursor = new Cursor();
+        while (cursor.next()) {
+            visitor.visit(cursor.message, cursor.time);
+        }
+    }
+
+    /**
+     * Deleting temporary files
+     */
+    @Override
+    public void close() {
+        if (spill != null) spill.close();
+    }
+
+    private void spill(final Message message, final long time) {
+        if (lost > 0) {
+            lost++;
+            return;
+        }
+        try {
+            if (spill == null) {
+                spill = new SegmentedLog(directory, segmentSize);
+                parser = message.getParserForType();
+            }
+            spill.append(message, time);
+        } catch (IOException | RuntimeException e) {
+            lost++;
+            log.warn("Could not spill gRPC messages to temporary file, further messages are marked as lost", e);
+        }
+    }
+
+    /**
+     * Reading of all messages in arrival order: head, then spilled messages parsed from the log, then tail. Messages
+     * which could not be spilled are reported once right before the tail.
+     */
+    private final class Cursor {
+        private final Iterator<Message> tailMessages = tail.iterator();
+        private final Iterator<Long> tailTimeIterator = tailTimes.iterator();
+        private int headIndex;
+        private int spillIndex;
+        private boolean lostRead;
+        private Message message;
+        private long time;
+        private long lost;
+
+        /**
+         * @return true when the next message and its epoch millis are read, millis are 0 when timestamps are not kept,
+         *         count of messages lost right before it or at the end is read as well
+         * @throws IOException when temporary file is not readable
+         */
+        boolean next() throws IOException {
+            lost = 0;
+            if (headIndex < head.size()) {
+                time = timestamps ? headTimes[headIndex] : 0;
+                message = head.get(headIndex++);
+                return true;
+            }
+            if (spill != null && spillIndex < spill.size()) {
+                time = spill.timestamp(spillIndex);
+                message = spill.message(spillIndex++, parser);
+                return true;
+            }
+            if (!lostRead) {
+                lostRead = true;
+                lost = PayloadBuffer.this.lost;
+            }
+            if (tailMessages.hasNext()) {
+                time = timestamps ? tailTimeIterator.next() : 0;
+                message = tailMessages.next();
+                return true;
+            }
+            message = null;
+            return false;
+        }
+    }
+
+    /**
+     * Consumer of buffered messages
+     */
+    interface Visitor {
+        void visit(Message message, long timestampMillis) throws IOException;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import java.nio.file.Path;
+
+/**
+ * Policy of keeping messages of one gRPC call until they are attached.
+ *
+ * <p>{@link #unbounded()} keeps all messages in memory. {@link #headTail(int, int)} keeps first and last messages in
+ * memory and spills the middle of long streams to memory-mapped segments of temporary files in serialized form, so
+ * heap per call is bounded no matter how long the stream runs. Kept messages are rendered one by one while the
+ * attachment is written. {@link #incremental()} formats each message as it arrives to an open temporary file, so
+ * formatting cost is spread over the call and messages are not retained at all. {@link #binary()} attaches serialized
+ * messages in {@link BinaryPayloadFormat} without formatting them during the test run, they are rendered by the
+ * allure-grpc-binary-renderer module when the report is generated.
+ */
+public final class PayloadBufferPolicy {
+
+    private static final PayloadBufferPolicy UNBOUNDED =
+            new PayloadBufferPolicy(Integer.MAX_VALUE, 0, null, SegmentedLog.DEFAULT_SEGMENT_SIZE, Mode.BUFFER);
+    private static final PayloadBufferPolicy INCREMENTAL = incremental(null);
+    private static final PayloadBufferPolicy BINARY = binary(null);
+
+    private final int head;
+    private final int tail;
+    private final Path directory;
+    private final int segmentSize;
+    private final Mode mode;
+
+    private PayloadBufferPolicy(
+            final int head, final int tail, final Path directory, final int segmentSize, final Mode mode) {
+        this.head = head;
+        this.tail = tail;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.mode = mode;
+    }
+
+    /**
+     * @return policy keeping all messages in memory
+     */
+    public static PayloadBufferPolicy unbounded() {
+        return UNBOUNDED;
+    }
+
+    /**
+     * @param head count of first messages kept in memory
+     * @param tail count of last messages kept in memory
+     * @return policy spilling other messages to default temporary directory
+     */
+    public static PayloadBufferPolicy headTail(final int head, final int tail) {
+        return headTail(head, tail, null);
+    }
+
+    /**
+     * @param head      count of first messages kept in memory
+     * @param tail      count of last messages kept in memory
+     * @param directory directory for temporary files, default temporary directory when null
+     * @return policy spilling other messages to temporary files in the directory
+     */
+    public static PayloadBufferPolicy headTail(final int head, final int tail, final Path directory) {
+        return headTail(head, tail, directory, SegmentedLog.DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param head        count of first messages kept in memory
+     * @param tail        count of last messages kept in memory
+     * @param directory   directory for temporary files, default temporary directory when null
+     * @param segmentSize size in bytes of one memory-mapped segment of spilled messages, 16 MiB by default
+     * @return policy spilling other messages to temporary files in the directory
+     */
+    public static PayloadBufferPolicy headTail(
+            final int head, final int tail, final Path directory, final int segmentSize) {
+        if (head < 0 || tail < 0) {
+            throw new IllegalArgumentException("head and tail should not be negative: " + head + ", " + tail);
+        }
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("segmentSize should be positive: " + segmentSize);
+        }
+        return new PayloadBufferPolicy(head, tail, directory, segmentSize, Mode.BUFFER);
+    }
+
+    /**
+     * @return policy formatting each message as it arrives to default temporary directory
+     */
+    public static PayloadBufferPolicy incremental() {
+        return INCREMENTAL;
+    }
+
+    /**
+     * @param directory directory for temporary files, default temporary directory when null
+     * @return policy formatting each message as it arrives to temporary files in the directory
+     */
+    public static PayloadBufferPolicy incremental(final Path directory) {
+        return new PayloadBufferPolicy(0, 0, directory, 0, Mode.INCREMENTAL);
+    }
+
+    /**
+     * @return policy attaching serialized messages in {@link BinaryPayloadFormat}, rendered when the report is
+     *     generated
+     */
+    public static PayloadBufferPolicy binary() {
+        return BINARY;
+    }
+
+    /**
+     * @param directory directory for temporary files of large attachments, default temporary directory when null
+     * @return policy attaching serialized messages with their descriptors
+     */
+    public static PayloadBufferPolicy binary(final Path directory) {
+        return new PayloadBufferPolicy(0, 0, directory, 0, Mode.BINARY);
+    }
+
+    /**
+     * @param formatter  formatter of attached messages
+     * @param timestamps true to attach time of each message
+     * @return capture of messages of one call in one direction
+     */
+    PayloadCapture newCapture(final ProtoFormatter formatter, final boolean timestamps) {
+        switch (mode) {
+            case INCREMENTAL:
+                return new IncrementalPayloads(directory, formatter, timestamps);
+            case BINARY:
+                return new BinaryPayloads(directory, timestamps);
+            default:
+                return new PayloadBuffer(head, tail, directory, segmentSize, formatter, timestamps);
+        }
+    }
+
+    private enum Mode {
+        BUFFER,
+        INCREMENTAL,
+        BINARY
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import com.google.protobuf.Message;
+
+/**
+ * Capture of messages of one gRPC call in one direction. Messages are added by one thread at a time, see
+ * {@link CallRecording}, the capture is attached once after the call is closed and then released.
+ */
+interface PayloadCapture {
+
+    /**
+     * @param message next message of the call
+     */
+    default void add(final Message message) {
+        add(message, System.currentTimeMillis());
+    }
+
+    /**
+     * @param message    next message of the call
+     * @param timeMillis epoch millis the message was sent or received
+     */
+    void add(Message message, long timeMillis);
+
+    /**
+     * Attaching captured messages to the step and releasing all resources of the capture
+     *
+     * @param step interaction step
+     * @param name attachment name
+     */
+    void attachTo(InteractionStep step, String name);
+}
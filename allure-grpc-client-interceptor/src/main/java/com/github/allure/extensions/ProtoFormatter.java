@@ -23,22 +23,82 @@
  */
 package com.github.allure.extensions;
 
-import com.github.underscore.U;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 import com.google.protobuf.TextFormat;
+import com.google.protobuf.TypeRegistry;
 import com.google.protobuf.util.JsonFormat;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
- * Utility class to pretty formatting proto messages to json or plaintext if FORMAT_PROTO_TO_JSON is false.
+ * Formatter to pretty formatting proto messages to json or plaintext. Instances are immutable and thread-safe, all
+ * printers are built once with the instance and reused for every message.
+ *
+ * <p>Static methods are kept for compatibility and format with default instances chosen by FORMAT_PROTO_TO_JSON.
  */
 @SuppressWarnings("MS_SHOULD_BE_FINAL")
 public class ProtoFormatter {
 
+    /**
+     * @deprecated configure formatter instance with {@link #builder()} and pass it to the interceptor instead
+     */
+    @Deprecated
     public static boolean FORMAT_PROTO_TO_JSON = true;
 
+    private static final ProtoFormatter JSON = builder().build();
+    private static final ProtoFormatter TEXT = builder().formatToJson(false).build();
+
+    private final boolean formatToJson;
+    private final boolean omittingInsignificantWhitespace;
+    private final JsonFormat.Printer jsonPrinter;
+    private final TextFormat.Printer textPrinter;
+    private final ProtoJsonWriter jsonWriter;
+    private final int maxMessageSize;
+    private final long maxAttachmentSize;
+
+    private ProtoFormatter(final Builder builder) {
+        this.formatToJson = builder.formatToJson;
+        this.omittingInsignificantWhitespace = builder.omittingInsignificantWhitespace;
+        this.maxMessageSize = builder.maxMessageSize;
+        this.maxAttachmentSize = builder.maxAttachmentSize;
+
+        JsonFormat.Printer json = JsonFormat.printer().usingTypeRegistry(builder.typeRegistry);
+        if (builder.preservingProtoFieldNames) json = json.preservingProtoFieldNames();
+        if (builder.includingDefaultValueFields) json = json.includingDefaultValueFields();
+        if (builder.printingEnumsAsInts) json = json.printingEnumsAsInts();
+        if (builder.omittingInsignificantWhitespace) json = json.omittingInsignificantWhitespace();
+        this.jsonPrinter = json;
+        this.textPrinter = TextFormat.printer().usingTypeRegistry(builder.typeRegistry);
+        this.jsonWriter = new ProtoJsonWriter(
+                builder.typeRegistry,
+                builder.preservingProtoFieldNames,
+                builder.includingDefaultValueFields,
+                builder.printingEnumsAsInts,
+                !builder.omittingInsignificantWhitespace,
+                builder.maxFieldSize,
+                builder.maxRepeatedElements);
+    }
+
+    /**
+     * @return builder of formatter with json formatting and proto field names by default
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return default formatter instance chosen by FORMAT_PROTO_TO_JSON at the moment of call
+     */
+    @SuppressWarnings("deprecation")
+    public static ProtoFormatter getDefault() {
+        return FORMAT_PROTO_TO_JSON ? JSON : TEXT;
+    }
+
     /**
      * Converting any proto messages to Json array format with field names
      *
@@ -46,52 +106,485 @@ public class ProtoFormatter {
      * @return formatted string json or plaintext
      */
     public static String format(final List<Message> responses) {
+        return getDefault().print(responses);
+    }
+
+    /**
+     * Converting one proto message to Json format with field names
+     *
+     * @param protoMessage proto message
+     * @return String in json or plaintext format
+     * @throws InvalidProtocolBufferException while formatting is broken somehow
+     */
+    public static String format(final Message protoMessage) throws InvalidProtocolBufferException {
+        return getDefault().print(protoMessage);
+    }
+
+    /**
+     * Converting any proto messages to Json array or plaintext
+     *
+     * @param responses any proto messages counted from 0 to many
+     * @return formatted string json or plaintext
+     */
+    public String print(final List<Message> responses) {
         if (responses.size() == 0) return "";
 
-        if (FORMAT_PROTO_TO_JSON) {
-            if (responses.size() == 1) {
-                try {
-                    final String json = format(responses.get(0));
-                    return U.formatJson(json);
-                } catch (InvalidProtocolBufferException ignored) {
-                    return responses.get(0).toString();
-                }
-            } else {
-                return U.formatJson("["
-                        + responses.stream()
-                                .map(message -> {
-                                    try {
-                                        return format(message);
-                                    } catch (InvalidProtocolBufferException ignored) {
-                                        return "unable_to_format: \"" + message.toString() + "\"";
-                                    }
-                                })
-                                .collect(Collectors.joining(","))
-                        + "]");
-            }
-        } else {
-            if (responses.size() == 1) {
-                return responses.get(0).toString();
-            } else {
-                final StringBuilder sb = new StringBuilder();
-                responses.forEach(message -> sb.append(message.toString()));
-                return sb.toString();
-            }
+        final StringBuilder sb = new StringBuilder();
+        try {
+            printTo(responses, sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        return sb.toString();
     }
 
     /**
-     * Converting one proto message to Json format with field names
+     * Writing any proto messages as Json array or plaintext straight to the destination in one pass. Json is written
+     * from message descriptors without intermediate strings, Any with type unknown for the type registry is written
+     * with base64 value.
+     *
+     * @param responses any proto messages counted from 0 to many
+     * @param out       destination of formatted messages
+     * @throws IOException while destination is not writable
+     */
+    public void printTo(final List<Message> responses, final Appendable out) throws IOException {
+        printTo(responses.iterator(), out);
+    }
+
+    /**
+     * Writing proto messages as Json array or plaintext straight to the destination while iterating, so messages could
+     * be read lazily one by one. Single message is written as Json object same as {@link #print(List)} does.
+     *
+     * @param responses iterator of any proto messages counted from 0 to many
+     * @param out       destination of formatted messages
+     * @throws IOException while destination is not writable
+     */
+    public void printTo(final Iterator<? extends Message> responses, final Appendable out) throws IOException {
+        final IncrementalPrinter printer = incrementalPrinter(out);
+        while (responses.hasNext()) {
+            printer.print(responses.next());
+        }
+        printer.finish();
+    }
+
+    /**
+     * @param out destination of formatted messages
+     * @return printer appending messages one by one with the same output as {@link #printTo(Iterator, Appendable)}
+     */
+    public IncrementalPrinter incrementalPrinter(final Appendable out) {
+        return new IncrementalPrinter(out);
+    }
+
+    /**
+     * Formatting epoch millis as time of message in attachments
+     *
+     * @param timestampMillis epoch millis
+     * @return ISO-8601 time in UTC
+     */
+    public static String timestamp(final long timestampMillis) {
+        return Instant.ofEpochMilli(timestampMillis).toString();
+    }
+
+    /**
+     * Converting one proto message to Json or plaintext
      *
      * @param protoMessage proto message
      * @return String in json or plaintext format
      * @throws InvalidProtocolBufferException while formatting is broken somehow
      */
-    public static String format(final Message protoMessage) throws InvalidProtocolBufferException {
-        if (FORMAT_PROTO_TO_JSON) {
-            return JsonFormat.printer().preservingProtoFieldNames().print(protoMessage);
+    public String print(final Message protoMessage) throws InvalidProtocolBufferException {
+        if (isLimited()) {
+            return print(Collections.singletonList(protoMessage));
+        } else if (formatToJson) {
+            return jsonPrinter.print(protoMessage);
         } else {
-            return TextFormat.printer().printToString(protoMessage);
+            return textPrinter.printToString(protoMessage);
+        }
+    }
+
+    /**
+     * @return MIME type of formatted messages, application/json or text/plain
+     */
+    public String mimeType() {
+        return formatToJson ? InteractionStep.APPLICATION_JSON : InteractionStep.TEXT_PLAIN;
+    }
+
+    /**
+     * @return extension of attachment files of formatted messages with leading dot
+     */
+    public String fileExtension() {
+        return formatToJson ? InteractionStep.JSON : InteractionStep.TXT;
+    }
+
+    private boolean isLimited() {
+        return maxMessageSize != Integer.MAX_VALUE || maxAttachmentSize != Long.MAX_VALUE || jsonWriter.isLimited();
+    }
+
+    /**
+     * Builder of immutable formatter, all options are applied once to the printers of the formatter
+     */
+    public static class Builder {
+        private boolean formatToJson = true;
+        private boolean preservingProtoFieldNames = true;
+        private boolean includingDefaultValueFields = false;
+        private boolean printingEnumsAsInts = false;
+        private boolean omittingInsignificantWhitespace = false;
+        private TypeRegistry typeRegistry = TypeRegistry.getEmptyTypeRegistry();
+        private int maxFieldSize = Integer.MAX_VALUE;
+        private int maxRepeatedElements = Integer.MAX_VALUE;
+        private int maxMessageSize = Integer.MAX_VALUE;
+        private long maxAttachmentSize = Long.MAX_VALUE;
+
+        private Builder() {}
+
+        /**
+         * @param formatToJson true for json, false for proto plaintext format
+         * @return this builder
+         */
+        public Builder formatToJson(final boolean formatToJson) {
+            this.formatToJson = formatToJson;
+            return this;
+        }
+
+        /**
+         * @param preservingProtoFieldNames true for original proto field names, false for lowerCamelCase json names
+         * @return this builder
+         */
+        public Builder preservingProtoFieldNames(final boolean preservingProtoFieldNames) {
+            this.preservingProtoFieldNames = preservingProtoFieldNames;
+            return this;
+        }
+
+        /**
+         * @param includingDefaultValueFields true to print fields with default values
+         * @return this builder
+         */
+        public Builder includingDefaultValueFields(final boolean includingDefaultValueFields) {
+            this.includingDefaultValueFields = includingDefaultValueFields;
+            return this;
+        }
+
+        /**
+         * @param printingEnumsAsInts true to print enum numbers instead of names
+         * @return this builder
+         */
+        public Builder printingEnumsAsInts(final boolean printingEnumsAsInts) {
+            this.printingEnumsAsInts = printingEnumsAsInts;
+            return this;
+        }
+
+        /**
+         * @param omittingInsignificantWhitespace true for compact json without indentation
+         * @return this builder
+         */
+        public Builder omittingInsignificantWhitespace(final boolean omittingInsignificantWhitespace) {
+            this.omittingInsignificantWhitespace = omittingInsignificantWhitespace;
+            return this;
+        }
+
+        /**
+         * @param typeRegistry registry of message types to resolve google.protobuf.Any content
+         * @return this builder
+         */
+        public Builder typeRegistry(final TypeRegistry typeRegistry) {
+            this.typeRegistry = typeRegistry;
+            return this;
+        }
+
+        /**
+         * @param maxFieldSize max length of json string fields in characters and of bytes fields in bytes, longer
+         *                     values are cut and marked with their full size in bytes and sha-256 digest
+         * @return this builder
+         */
+        public Builder maxFieldSize(final int maxFieldSize) {
+            this.maxFieldSize = positive("maxFieldSize", maxFieldSize);
+            return this;
+        }
+
+        /**
+         * @param maxRepeatedElements max count of written elements of json repeated and map fields, the rest is
+         *                            summarized with its count
+         * @return this builder
+         */
+        public Builder maxRepeatedElements(final int maxRepeatedElements) {
+            this.maxRepeatedElements = positive("maxRepeatedElements", maxRepeatedElements);
+            return this;
+        }
+
+        /**
+         * @param maxMessageSize max count of characters rendered for one message, rendering of the message stops at
+         *                       the limit and it is marked with its serialized size
+         * @return this builder
+         */
+        public Builder maxMessageSize(final int maxMessageSize) {
+            this.maxMessageSize = positive("maxMessageSize", maxMessageSize);
+            return this;
+        }
+
+        /**
+         * @param maxAttachmentSize max count of characters rendered for all messages of one attachment, messages past
+         *                          the limit are not rendered and only counted
+         * @return this builder
+         */
+        public Builder maxAttachmentSize(final long maxAttachmentSize) {
+            if (maxAttachmentSize <= 0) {
+                throw new IllegalArgumentException("maxAttachmentSize should be positive: " + maxAttachmentSize);
+            }
+            this.maxAttachmentSize = maxAttachmentSize;
+            return this;
+        }
+
+        /**
+         * @return independent builder with the same options
+         */
+        public Builder copy() {
+            final Builder copy = new Builder();
+            copy.formatToJson = formatToJson;
+            copy.preservingProtoFieldNames = preservingProtoFieldNames;
+            copy.includingDefaultValueFields = includingDefaultValueFields;
+            copy.printingEnumsAsInts = printingEnumsAsInts;
+            copy.omittingInsignificantWhitespace = omittingInsignificantWhitespace;
+            copy.typeRegistry = typeRegistry;
+            copy.maxFieldSize = maxFieldSize;
+            copy.maxRepeatedElements = maxRepeatedElements;
+            copy.maxMessageSize = maxMessageSize;
+            copy.maxAttachmentSize = maxAttachmentSize;
+            return copy;
+        }
+
+        private static int positive(final String name, final int value) {
+            if (value <= 0) throw new IllegalArgumentException(name + " should be positive: " + value);
+            return value;
+        }
+
+        public ProtoFormatter build() {
+            return new ProtoFormatter(this);
+        }
+    }
+
+    /**
+     * Printer formatting each message as it arrives, only the first json message is held until it is known whether
+     * output is single object or array. Size limits of the formatter are enforced while messages are rendered, json
+     * messages are rendered ahead into a scratch buffer, so a cut message is written as json string and the output
+     * stays valid json.
+     */
+    public final class IncrementalPrinter {
+        private final Appendable out;
+        private final StringBuilder scratch;
+        private final LimitedAppendable limited;
+        private Message pending;
+        private String pendingTimestamp;
+        private long count;
+        private long skipped;
+        private long skippedSize;
+
+        private IncrementalPrinter(final Appendable out) {
+            this.out = out;
+            final boolean sizeLimited = maxMessageSize != Integer.MAX_VALUE || maxAttachmentSize != Long.MAX_VALUE;
+            this.scratch = sizeLimited && formatToJson ? new StringBuilder() : null;
+            this.limited = isLimited() ? new LimitedAppendable(scratch != null ? scratch : out) : null;
+        }
+
+        /**
+         * @param message next message
+         * @throws IOException while destination is not writable
+         */
+        public void print(final Message message) throws IOException {
+            print(message, null);
+        }
+
+        /**
+         * @param message   next message
+         * @param timestamp time of the message, json objects get it as @timestamp key and plaintext as comment line,
+         *                  null to skip
+         * @throws IOException while destination is not writable
+         */
+        public void print(final Message message, final String timestamp) throws IOException {
+            count++;
+            if (limited != null && limited.written >= maxAttachmentSize) {
+                skip(message);
+            } else if (!formatToJson) {
+                render(message, () -> {
+                    if (timestamp != null) target().append("# ").append(timestamp).append('\n');
+                    textPrinter.print(message, target());
+                });
+            } else if (count == 1) {
+                pending = message;
+                pendingTimestamp = timestamp;
+            } else {
+                if (count == 2) {
+                    final Message first = pending;
+                    pending = null;
+                    out.append('[');
+                    element(true, first, pendingTimestamp);
+                }
+                element(false, message, timestamp);
+            }
+        }
+
+        /**
+         * Writing marker of messages which were lost before they could be printed in place of them, as string element
+         * of json array or comment line of plaintext
+         *
+         * @param messages count of lost messages, nothing is written when it is 0
+         * @throws IOException while destination is not writable
+         */
+        public void lost(final long messages) throws IOException {
+            if (messages <= 0) return;
+            final String marker = "[lost: " + messages + " messages could not be kept for the attachment]";
+            if (!formatToJson) {
+                out.append("# ").append(marker).append('\n');
+                return;
+            }
+            if (count <= 1) out.append('[');
+            if (count == 1) {
+                element(true, pending, pendingTimestamp);
+                pending = null;
+            }
+            jsonWriter.startArrayElement(count == 0, out);
+            jsonWriter.writeString(marker, out);
+            // marker is an element of the array, so output is an array from now on
+            count = Math.max(count, 1) + 1;
+        }
+
+        /**
+         * Writing held message and closing json array after the last message
+         *
+         * @throws IOException while destination is not writable
+         */
+        public void finish() throws IOException {
+            if (formatToJson && count == 1) {
+                render(pending, () -> jsonWriter.write(pending, pendingTimestamp, target()));
+                pending = null;
+            } else if (formatToJson && count > 1) {
+                if (skipped > 0) {
+                    jsonWriter.startArrayElement(false, out);
+                    jsonWriter.writeString(skippedMarker(), out);
+                }
+                jsonWriter.endArray(out);
+            } else if (skipped > 0) {
+                out.append("\n...").append(skippedMarker());
+            }
+        }
+
+        private Appendable target() {
+            return limited != null ? limited : out;
+        }
+
+        private void skip(final Message message) {
+            skipped++;
+            skippedSize += message.getSerializedSize();
+        }
+
+        private void element(final boolean first, final Message message, final String timestamp) throws IOException {
+            if (limited != null && limited.written >= maxAttachmentSize) {
+                skip(message);
+                return;
+            }
+            jsonWriter.startArrayElement(first, out);
+            render(message, () -> jsonWriter.writeArrayElementValue(message, timestamp, target()));
+        }
+
+        /**
+         * Rendering within the limit of one message and of the whole attachment, rendering stops when the limit is
+         * reached and the message is marked as truncated
+         */
+        private void render(final Message message, final Rendering rendering) throws IOException {
+            if (limited == null) {
+                rendering.render();
+                return;
+            }
+            limited.limit = Math.min(maxAttachmentSize, limited.written + maxMessageSize);
+            try {
+                rendering.render();
+                if (scratch != null) out.append(scratch);
+            } catch (LimitedAppendable.LimitReachedException e) {
+                if (scratch != null) {
+                    jsonWriter.writeString(scratch.append("...").append(truncatedMarker(message)).toString(), out);
+                } else {
+                    out.append("...").append(truncatedMarker(message));
+                }
+            } finally {
+                if (scratch != null) scratch.setLength(0);
+            }
+        }
+
+        private String truncatedMarker(final Message message) {
+            final StringBuilder marker = new StringBuilder("[truncated: ");
+            if (message != null) {
+                marker.append("message of ").append(message.getSerializedSize()).append(" bytes serialized, ");
+            }
+            if (limited.limit >= maxAttachmentSize) {
+                marker.append("attachment limit ").append(maxAttachmentSize);
+            } else {
+                marker.append("message limit ").append(maxMessageSize);
+            }
+            return marker.append(" characters]").toString();
+        }
+
+        private String skippedMarker() {
+            return "[truncated: " + skipped + " more messages of " + skippedSize + " bytes serialized]";
+        }
+    }
+
+    private interface Rendering {
+        void render() throws IOException;
+    }
+
+    /**
+     * Destination counting written characters and refusing to write past the limit
+     */
+    private static final class LimitedAppendable implements Appendable {
+        private final Appendable out;
+        private long written;
+        private long limit = Long.MAX_VALUE;
+
+        private LimitedAppendable(final Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        public Appendable append(final CharSequence csq) throws IOException {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(final CharSequence csq, final int start, final int end) throws IOException {
+            final int length = end - start;
+            if (written + length > limit) {
+                final int fits = (int) (limit - written);
+                out.append(csq, start, start + fits);
+                written = limit;
+                throw LimitReachedException.INSTANCE;
+            }
+            out.append(csq, start, end);
+            written += length;
+            return this;
+        }
+
+        @Override
+        public Appendable append(final char c) throws IOException {
+            if (written >= limit) throw LimitReachedException.INSTANCE;
+            out.append(c);
+            written++;
+            return this;
+        }
+
+        /**
+         * Thrown without stack trace to stop rendering of a message
+         */
+        private static final class LimitReachedException extends IOException {
+            private static final long serialVersionUID = 1L;
+            private static final LimitReachedException INSTANCE = new LimitReachedException();
+
+            private LimitReachedException() {
+                super("Size limit is reached", null);
+            }
+
+            @Override
+            public synchronized Throwable fillInStackTrace() {
+                return this;
+            }
         }
     }
 }
@@ -0,0 +1,849 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import com.google.common.io.BaseEncoding;
+import com.google.protobuf.Any;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.OneofDescriptor;
+import com.google.protobuf.Duration;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.FieldMask;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.TypeRegistry;
+import com.google.protobuf.util.Durations;
+import com.google.protobuf.util.FieldMaskUtil;
+import com.google.protobuf.util.Timestamps;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Single pass json writer rendering proto messages straight from descriptors into one {@link Appendable}.
+ *
+ * <p>Pretty output is the same as printing with JsonFormat and re-formatting the result with 2 spaces indentation,
+ * which was done before, but without intermediate strings and re-parsing of the whole document.
+ *
+ * <p>Each message type is written by a plan built on its first use and cached by descriptor: well-known type mapping
+ * and fields ordered by number with escaped names, so repeated writing of known types neither walks the field map of
+ * messages nor escapes their names again.
+ */
+final class ProtoJsonWriter {
+
+    static final String TRUNCATED = "[truncated]";
+    private static final String TRUNCATED_OPEN = "[truncated: ";
+    private static final String[] INDENTS = new String[32];
+    /*
+     * Bound of cached plans, descriptors built at runtime, for example by the binary payload renderer, are not cached
+     * past it
+     */
+    private static final int MAX_PLANS = 1024;
+
+    static {
+        INDENTS[0] = "";
+        for (int i = 1; i < INDENTS.length; i++) {
+            INDENTS[i] = INDENTS[i - 1] + "  ";
+        }
+    }
+
+    private final TypeRegistry typeRegistry;
+    private final boolean preservingProtoFieldNames;
+    private final boolean includingDefaultValueFields;
+    private final boolean printingEnumsAsInts;
+    private final boolean pretty;
+    private final int maxFieldSize;
+    private final int maxRepeatedElements;
+    private final ConcurrentMap<Descriptor, Plan> plans = new ConcurrentHashMap<>();
+
+    ProtoJsonWriter(
+            final TypeRegistry typeRegistry,
+            final boolean preservingProtoFieldNames,
+            final boolean includingDefaultValueFields,
+            final boolean printingEnumsAsInts,
+            final boolean pretty) {
+        this(
+                typeRegistry,
+                preservingProtoFieldNames,
+                includingDefaultValueFields,
+                printingEnumsAsInts,
+                pretty,
+                Integer.MAX_VALUE,
+                Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxFieldSize        max length of string fields in characters and of bytes fields in bytes, longer values
+     *                            are truncated and written with their size and sha-256 digest
+     * @param maxRepeatedElements max count of written elements of repeated and map fields, the rest is counted
+     */
+    ProtoJsonWriter(
+            final TypeRegistry typeRegistry,
+            final boolean preservingProtoFieldNames,
+            final boolean includingDefaultValueFields,
+            final boolean printingEnumsAsInts,
+            final boolean pretty,
+            final int maxFieldSize,
+            final int maxRepeatedElements) {
+        this.typeRegistry = typeRegistry;
+        this.preservingProtoFieldNames = preservingProtoFieldNames;
+        this.includingDefaultValueFields = includingDefaultValueFields;
+        this.printingEnumsAsInts = printingEnumsAsInts;
+        this.pretty = pretty;
+        this.maxFieldSize = maxFieldSize;
+        this.maxRepeatedElements = maxRepeatedElements;
+    }
+
+    /**
+     * @return true when fields or repeated fields are truncated
+     */
+    boolean isLimited() {
+        return maxFieldSize != Integer.MAX_VALUE || maxRepeatedElements != Integer.MAX_VALUE;
+    }
+
+    /**
+     * Writing proto messages as json array
+     *
+     * @param messages proto messages
+     * @param out      destination of json
+     * @throws IOException when destination is not writable
+     */
+    void writeArray(final Iterator<? extends MessageOrBuilder> messages, final Appendable out) throws IOException {
+        out.append('[');
+        boolean first = true;
+        while (messages.hasNext()) {
+            writeArrayElement(first, messages.next(), out);
+            first = false;
+        }
+        endArray(out);
+    }
+
+    /**
+     * Writing next element of json array, opening bracket should be already written
+     *
+     * @param first   true for the first element of array
+     * @param message proto message
+     * @param out     destination of json
+     * @throws IOException when destination is not writable
+     */
+    void writeArrayElement(final boolean first, final MessageOrBuilder message, final Appendable out)
+            throws IOException {
+        writeArrayElement(first, message, null, out);
+    }
+
+    /**
+     * Writing next element of json array with time of the message, opening bracket should be already written
+     *
+     * @param first     true for the first element of array
+     * @param message   proto message
+     * @param timestamp time of the message written as @timestamp key of json object, null to skip
+     * @param out       destination of json
+     * @throws IOException when destination is not writable
+     */
+    void writeArrayElement(
+            final boolean first, final MessageOrBuilder message, final String timestamp, final Appendable out)
+            throws IOException {
+        startArrayElement(first, out);
+        writeArrayElementValue(message, timestamp, out);
+    }
+
+    /**
+     * Writing separator of next element of json array, opening bracket should be already written
+     *
+     * @param first true for the first element of array
+     * @param out   destination of json
+     * @throws IOException when destination is not writable
+     */
+    void startArrayElement(final boolean first, final Appendable out) throws IOException {
+        entry(first, 1, out);
+    }
+
+    /**
+     * Writing element of json array after its separator
+     *
+     * @param message   proto message
+     * @param timestamp time of the message written as @timestamp key of json object, null to skip
+     * @param out       destination of json
+     * @throws IOException when destination is not writable
+     */
+    void writeArrayElementValue(final MessageOrBuilder message, final String timestamp, final Appendable out)
+            throws IOException {
+        writeMessage(message, timestamp, 1, out);
+    }
+
+    /**
+     * Writing closing bracket of json array
+     *
+     * @param out destination of json
+     * @throws IOException when destination is not writable
+     */
+    void endArray(final Appendable out) throws IOException {
+        close(']', 0, out);
+    }
+
+    /**
+     * Writing one proto message as json
+     *
+     * @param message proto message
+     * @param out     destination of json
+     * @throws IOException when destination is not writable
+     */
+    void write(final MessageOrBuilder message, final Appendable out) throws IOException {
+        writeMessage(message, 0, out);
+    }
+
+    /**
+     * Writing one proto message as json with time of the message
+     *
+     * @param message   proto message
+     * @param timestamp time of the message written as @timestamp key of json object, null to skip
+     * @param out       destination of json
+     * @throws IOException when destination is not writable
+     */
+    void write(final MessageOrBuilder message, final String timestamp, final Appendable out) throws IOException {
+        writeMessage(message, timestamp, 0, out);
+    }
+
+    /**
+     * Time is written only into messages written as plain json objects, well-known types keep their json mapping
+     */
+    private void writeMessage(
+            final MessageOrBuilder message, final String timestamp, final int indent, final Appendable out)
+            throws IOException {
+        final Plan plan = plan(message.getDescriptorForType());
+        if (timestamp != null && plan.kind == Kind.OBJECT) {
+            writeObject(message, plan, null, timestamp, indent, out);
+        } else {
+            writeMessage(message, indent, out);
+        }
+    }
+
+    private void writeMessage(final MessageOrBuilder message, final int indent, final Appendable out)
+            throws IOException {
+        final Plan plan = plan(message.getDescriptorForType());
+        switch (plan.kind) {
+            case ANY:
+                writeAny(message, plan, indent, out);
+                break;
+            case WRAPPER:
+                final FieldDescriptor valueField = plan.fields[0].descriptor;
+                writeValue(valueField, message.getField(valueField), indent, out);
+                break;
+            case TIMESTAMP:
+                writeString(Timestamps.toString(Timestamp.parseFrom(toByteString(message))), out);
+                break;
+            case DURATION:
+                writeString(Durations.toString(Duration.parseFrom(toByteString(message))), out);
+                break;
+            case FIELD_MASK:
+                writeString(FieldMaskUtil.toJsonString(FieldMask.parseFrom(toByteString(message))), out);
+                break;
+            case STRUCT:
+                writeMap(plan.fields[0], message.getField(plan.fields[0].descriptor), indent, out);
+                break;
+            case VALUE:
+                final Map<FieldDescriptor, Object> kind = message.getAllFields();
+                if (kind.isEmpty()) {
+                    out.append("null");
+                } else {
+                    final Map.Entry<FieldDescriptor, Object> value =
+                            kind.entrySet().iterator().next();
+                    writeValue(value.getKey(), value.getValue(), indent, out);
+                }
+                break;
+            case LIST_VALUE:
+                final FieldDescriptor valuesField = plan.fields[0].descriptor;
+                writeRepeated(valuesField, message.getField(valuesField), indent, out);
+                break;
+            default:
+                writeObject(message, plan, null, null, indent, out);
+        }
+    }
+
+    /**
+     * Any with type unknown for the type registry is written with raw base64 value instead of failing whole output
+     */
+    private void writeAny(final MessageOrBuilder message, final Plan plan, final int indent, final Appendable out)
+            throws IOException {
+        final String typeUrl = (String) message.getField(plan.fields[0].descriptor);
+        final ByteString content = (ByteString) message.getField(plan.fields[1].descriptor);
+        if (Any.getDefaultInstance().equals(message)) {
+            out.append('{');
+            close('}', indent, out);
+            return;
+        }
+
+        Descriptor type;
+        try {
+            type = typeRegistry.getDescriptorForTypeUrl(typeUrl);
+        } catch (InvalidProtocolBufferException ignored) {
+            type = null;
+        }
+        if (type == null) {
+            out.append('{');
+            entry(true, indent + 1, out);
+            name("@type", out);
+            writeString(typeUrl, out);
+            entry(false, indent + 1, out);
+            name("value", out);
+            writeString(BaseEncoding.base64().encode(content.toByteArray()), out);
+            close('}', indent, out);
+            return;
+        }
+
+        final Message contentMessage = DynamicMessage.parseFrom(type, content);
+        final Plan contentPlan = plan(type);
+        if (contentPlan.kind != Kind.OBJECT) {
+            out.append('{');
+            entry(true, indent + 1, out);
+            name("@type", out);
+            writeString(typeUrl, out);
+            entry(false, indent + 1, out);
+            name("value", out);
+            writeMessage(contentMessage, indent + 1, out);
+            close('}', indent, out);
+        } else {
+            writeObject(contentMessage, contentPlan, typeUrl, null, indent, out);
+        }
+    }
+
+    private void writeObject(
+            final MessageOrBuilder message,
+            final Plan plan,
+            final String typeUrl,
+            final String timestamp,
+            final int indent,
+            final Appendable out)
+            throws IOException {
+        out.append('{');
+        boolean first = true;
+        if (typeUrl != null) {
+            entry(true, indent + 1, out);
+            name("@type", out);
+            writeString(typeUrl, out);
+            first = false;
+        }
+        if (timestamp != null) {
+            entry(first, indent + 1, out);
+            name("@timestamp", out);
+            writeString(timestamp, out);
+            first = false;
+        }
+        if (plan.fields == null) {
+            for (Map.Entry<FieldDescriptor, Object> field : fieldsToWrite(message).entrySet()) {
+                entry(first, indent + 1, out);
+                first = false;
+                writeField(new FieldPlan(field.getKey(), key(field.getKey())), field.getValue(), indent + 1, out);
+            }
+        } else {
+            for (FieldPlan field : plan.fields) {
+                final FieldDescriptor descriptor = field.descriptor;
+                final boolean present = descriptor.isRepeated()
+                        ? message.getRepeatedFieldCount(descriptor) > 0
+                        : message.hasField(descriptor);
+                if (!present && (!includingDefaultValueFields || field.omittedUnset)) continue;
+                entry(first, indent + 1, out);
+                first = false;
+                writeField(field, message.getField(descriptor), indent + 1, out);
+            }
+        }
+        close('}', indent, out);
+    }
+
+    private void writeField(final FieldPlan field, final Object value, final int indent, final Appendable out)
+            throws IOException {
+        out.append(field.key);
+        if (field.descriptor.isMapField()) {
+            writeMap(field, value, indent, out);
+        } else if (field.descriptor.isRepeated()) {
+            writeRepeated(field.descriptor, value, indent, out);
+        } else {
+            writeValue(field.descriptor, value, indent, out);
+        }
+    }
+
+    /**
+     * Extensions are written only from the field map of messages, so fields of extendable types are not planned
+     */
+    private Map<FieldDescriptor, Object> fieldsToWrite(final MessageOrBuilder message) {
+        if (!includingDefaultValueFields) {
+            return message.getAllFields();
+        }
+        final Map<FieldDescriptor, Object> fields = new TreeMap<>(message.getAllFields());
+        for (FieldDescriptor field : message.getDescriptorForType().getFields()) {
+            if (field.isOptional()) {
+                if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE && !message.hasField(field)) {
+                    continue;
+                }
+                final OneofDescriptor oneof = field.getContainingOneof();
+                if (oneof != null && !message.hasField(field)) {
+                    continue;
+                }
+            }
+            if (!fields.containsKey(field)) {
+                fields.put(field, message.getField(field));
+            }
+        }
+        return fields;
+    }
+
+    private void writeRepeated(final FieldDescriptor field, final Object value, final int indent, final Appendable out)
+            throws IOException {
+        final List<?> elements = (List<?>) value;
+        final int written = Math.min(elements.size(), maxRepeatedElements);
+        out.append('[');
+        for (int i = 0; i < written; i++) {
+            entry(i == 0, indent + 1, out);
+            writeValue(field, elements.get(i), indent + 1, out);
+        }
+        if (written < elements.size()) {
+            entry(written == 0, indent + 1, out);
+            writeString(truncatedCount(elements.size() - written, elements.size(), "elements"), out);
+        }
+        close(']', indent, out);
+    }
+
+    private void writeMap(final FieldPlan field, final Object value, final int indent, final Appendable out)
+            throws IOException {
+        final FieldDescriptor keyField = field.mapKey;
+        final FieldDescriptor valueField = field.mapValue;
+        final List<?> entries = (List<?>) value;
+        final int written = Math.min(entries.size(), maxRepeatedElements);
+        out.append('{');
+        for (int i = 0; i < written; i++) {
+            final Message mapEntry = (Message) entries.get(i);
+            entry(i == 0, indent + 1, out);
+            writeString(mapKey(keyField, mapEntry.getField(keyField)), out);
+            out.append(pretty ? ": " : ":");
+            writeValue(valueField, mapEntry.getField(valueField), indent + 1, out);
+        }
+        if (written < entries.size()) {
+            entry(written == 0, indent + 1, out);
+            writeString(TRUNCATED, out);
+            out.append(pretty ? ": " : ":");
+            writeString(truncatedCount(entries.size() - written, entries.size(), "entries"), out);
+        }
+        close('}', indent, out);
+    }
+
+    private void writeValue(final FieldDescriptor field, final Object value, final int indent, final Appendable out)
+            throws IOException {
+        switch (field.getType()) {
+            case INT32:
+            case SINT32:
+            case SFIXED32:
+                out.append(Integer.toString((Integer) value));
+                break;
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+                out.append('"').append(Long.toString((Long) value)).append('"');
+                break;
+            case UINT32:
+            case FIXED32:
+                out.append(Integer.toUnsignedString((Integer) value));
+                break;
+            case UINT64:
+            case FIXED64:
+                out.append('"').append(Long.toUnsignedString((Long) value)).append('"');
+                break;
+            case BOOL:
+                out.append((Boolean) value ? "true" : "false");
+                break;
+            case FLOAT:
+                final Float floatValue = (Float) value;
+                if (floatValue.isNaN() || floatValue.isInfinite()) {
+                    writeNonFinite(floatValue, out);
+                } else {
+                    out.append(pretty ? decimal(floatValue.toString()) : floatValue.toString());
+                }
+                break;
+            case DOUBLE:
+                final Double doubleValue = (Double) value;
+                if (doubleValue.isNaN() || doubleValue.isInfinite()) {
+                    writeNonFinite(doubleValue, out);
+                } else {
+                    out.append(pretty ? decimal(doubleValue.toString()) : doubleValue.toString());
+                }
+                break;
+            case STRING:
+                final String string = (String) value;
+                if (string.length() > maxFieldSize) {
+                    writeString(truncatedString(string), out);
+                } else {
+                    writeString(string, out);
+                }
+                break;
+            case BYTES:
+                final ByteString bytes = (ByteString) value;
+                if (bytes.size() > maxFieldSize) {
+                    out.append('"')
+                            .append(BaseEncoding.base64().encode(bytes.substring(0, maxFieldSize).toByteArray()))
+                            .append(truncatedSize(bytes.size(), digest(bytes)))
+                            .append('"');
+                } else {
+                    out.append('"')
+                            .append(BaseEncoding.base64().encode(bytes.toByteArray()))
+                            .append('"');
+                }
+                break;
+            case ENUM:
+                final EnumValueDescriptor enumValue = (EnumValueDescriptor) value;
+                if (field.getEnumType().getFullName().equals("google.protobuf.NullValue")) {
+                    out.append("null");
+                } else if (printingEnumsAsInts || enumValue.getIndex() == -1) {
+                    out.append(Integer.toString(enumValue.getNumber()));
+                } else {
+                    out.append('"').append(enumValue.getName()).append('"');
+                }
+                break;
+            case MESSAGE:
+            case GROUP:
+                writeMessage((Message) value, indent, out);
+                break;
+        }
+    }
+
+    private static void writeNonFinite(final Number value, final Appendable out) throws IOException {
+        if (Double.isNaN(value.doubleValue())) {
+            out.append("\"NaN\"");
+        } else if (value.doubleValue() < 0) {
+            out.append("\"-Infinity\"");
+        } else {
+            out.append("\"Infinity\"");
+        }
+    }
+
+    private static String mapKey(final FieldDescriptor keyField, final Object key) {
+        switch (keyField.getType()) {
+            case UINT32:
+            case FIXED32:
+                return Integer.toUnsignedString((Integer) key);
+            case UINT64:
+            case FIXED64:
+                return Long.toUnsignedString((Long) key);
+            default:
+                return String.valueOf(key);
+        }
+    }
+
+    /**
+     * Decimal numbers keep the representation of legacy re-formatting, where long or zero-ended decimals became
+     * BigDecimal and others became Double
+     */
+    private static String decimal(final String number) {
+        if (number.length() > 9
+                || (number.contains(".")
+                        && number.length() - number.lastIndexOf('.') > 2
+                        && number.charAt(number.length() - 1) == '0')) {
+            return new BigDecimal(number).toString();
+        }
+        return Double.valueOf(number).toString();
+    }
+
+    private void name(final String name, final Appendable out) throws IOException {
+        writeString(name, out);
+        out.append(pretty ? ": " : ":");
+    }
+
+    private void entry(final boolean first, final int indent, final Appendable out) throws IOException {
+        if (!first) out.append(',');
+        if (pretty) out.append('\n').append(indent(indent));
+    }
+
+    private void close(final char bracket, final int indent, final Appendable out) throws IOException {
+        if (pretty) out.append('\n').append(indent(indent));
+        out.append(bracket);
+    }
+
+    private static String indent(final int indent) {
+        if (indent < INDENTS.length) return INDENTS[indent];
+        final StringBuilder sb = new StringBuilder(INDENTS[INDENTS.length - 1]);
+        for (int i = INDENTS.length - 1; i < indent; i++) {
+            sb.append("  ");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writing json string, pretty output escapes like legacy re-formatting did, compact output escapes like JsonFormat
+     */
+    private String truncatedString(final String value) {
+        int end = maxFieldSize;
+        if (end > 0 && Character.isHighSurrogate(value.charAt(end - 1))) end--;
+        final byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        return value.substring(0, end) + truncatedSize(utf8.length, digest(ByteString.copyFrom(utf8)));
+    }
+
+    private static String truncatedSize(final long size, final String digest) {
+        return "..." + TRUNCATED_OPEN + size + " bytes, sha-256 " + digest + "]";
+    }
+
+    private static String truncatedCount(final int more, final int size, final String what) {
+        return TRUNCATED_OPEN + more + " more of " + size + " " + what + "]";
+    }
+
+    private static String digest(final ByteString bytes) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (ByteBuffer buffer : bytes.asReadOnlyByteBufferList()) {
+            digest.update(buffer);
+        }
+        return BaseEncoding.base16().lowerCase().encode(digest.digest());
+    }
+
+    /**
+     * Writing json string escaped the same way as string fields
+     *
+     * @param value string value
+     * @param out   destination of json
+     * @throws IOException when destination is not writable
+     */
+    void writeString(final String value, final Appendable out) throws IOException {
+        out.append('"');
+        final int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            final char ch = value.charAt(i);
+            final String replacement = pretty ? escapePretty(ch) : escapeCompact(ch);
+            if (replacement != null) {
+                out.append(value, start, i).append(replacement);
+                start = i + 1;
+            }
+        }
+        out.append(value, start, length).append('"');
+    }
+
+    private static String escapePretty(final char ch) {
+        final String shortEscape = shortEscape(ch);
+        if (shortEscape != null) return shortEscape;
+        if (ch <= 0x1F || ch >= 0x7F && ch <= 0x9F || ch >= 0x2000 && ch <= 0x20FF && ch != 0x20AC) {
+            return unicodeEscape(Integer.toHexString(ch).toUpperCase());
+        }
+        return null;
+    }
+
+    private static String escapeCompact(final char ch) {
+        final String shortEscape = shortEscape(ch);
+        if (shortEscape != null) return shortEscape;
+        switch (ch) {
+            case '<':
+            case '>':
+            case '&':
+            case '=':
+            case '\'':
+            case 0x2028:
+            case 0x2029:
+                return unicodeEscape(Integer.toHexString(ch));
+            default:
+                return ch <= 0x1F ? unicodeEscape(Integer.toHexString(ch)) : null;
+        }
+    }
+
+    private static String shortEscape(final char ch) {
+        switch (ch) {
+            case '"':
+                return "\\\"";
+            case '\\':
+                return "\\\\";
+            case '\b':
+                return "\\b";
+            case '\f':
+                return "\\f";
+            case '\n':
+                return "\\n";
+            case '\r':
+                return "\\r";
+            case '\t':
+                return "\\t";
+            default:
+                return null;
+        }
+    }
+
+    private static String unicodeEscape(final String hex) {
+        return "\\u0000".substring(0, 6 - hex.length()) + hex;
+    }
+
+    /**
+     * @return plan of writing messages of the type, cached unless there are too many types already
+     */
+    private Plan plan(final Descriptor descriptor) {
+        final Plan cached = plans.get(descriptor);
+        if (cached != null) return cached;
+        final Plan plan = new Plan(descriptor);
+        if (plans.size() >= MAX_PLANS) return plan;
+        final Plan raced = plans.putIfAbsent(descriptor, plan);
+        return raced != null ? raced : plan;
+    }
+
+    /**
+     * @return escaped json name of the field followed by the separator of its value
+     */
+    private String key(final FieldDescriptor field) {
+        final StringBuilder key = new StringBuilder();
+        try {
+            name(preservingProtoFieldNames ? field.getName() : field.getJsonName(), key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return key.toString();
+    }
+
+    private static Kind kind(final String fullName) {
+        switch (fullName) {
+            case "google.protobuf.Any":
+                return Kind.ANY;
+            case "google.protobuf.BoolValue":
+            case "google.protobuf.Int32Value":
+            case "google.protobuf.UInt32Value":
+            case "google.protobuf.Int64Value":
+            case "google.protobuf.UInt64Value":
+            case "google.protobuf.StringValue":
+            case "google.protobuf.BytesValue":
+            case "google.protobuf.FloatValue":
+            case "google.protobuf.DoubleValue":
+                return Kind.WRAPPER;
+            case "google.protobuf.Timestamp":
+                return Kind.TIMESTAMP;
+            case "google.protobuf.Duration":
+                return Kind.DURATION;
+            case "google.protobuf.FieldMask":
+                return Kind.FIELD_MASK;
+            case "google.protobuf.Struct":
+                return Kind.STRUCT;
+            case "google.protobuf.Value":
+                return Kind.VALUE;
+            case "google.protobuf.ListValue":
+                return Kind.LIST_VALUE;
+            default:
+                return Kind.OBJECT;
+        }
+    }
+
+    private static ByteString toByteString(final MessageOrBuilder message) {
+        if (message instanceof Message) {
+            return ((Message) message).toByteString();
+        }
+        return ((Message.Builder) message).build().toByteString();
+    }
+
+    /**
+     * Json mapping of message type
+     */
+    private enum Kind {
+        OBJECT,
+        ANY,
+        WRAPPER,
+        TIMESTAMP,
+        DURATION,
+        FIELD_MASK,
+        STRUCT,
+        VALUE,
+        LIST_VALUE
+    }
+
+    /**
+     * Writing plan of one message type. Objects have fields ordered by number as in the field map of messages, null
+     * for extendable types. Well-known types have the fields of their json mapping: value of wrappers, fields of
+     * Struct, values of ListValue, type url and value of Any.
+     */
+    private final class Plan {
+        private final Kind kind;
+        private final FieldPlan[] fields;
+
+        private Plan(final Descriptor descriptor) {
+            this.kind = kind(descriptor.getFullName());
+            switch (kind) {
+                case ANY:
+                    this.fields = new FieldPlan[] {field(descriptor, "type_url"), field(descriptor, "value")};
+                    break;
+                case WRAPPER:
+                case LIST_VALUE:
+                    this.fields = new FieldPlan[] {field(descriptor, kind == Kind.WRAPPER ? "value" : "values")};
+                    break;
+                case STRUCT:
+                    this.fields = new FieldPlan[] {field(descriptor, "fields")};
+                    break;
+                case OBJECT:
+                    this.fields = descriptor.isExtendable()
+                            ? null
+                            : descriptor.getFields().stream()
+                                    .sorted(Comparator.comparingInt(FieldDescriptor::getNumber))
+                                    .map(field -> new FieldPlan(field, key(field)))
+                                    .toArray(FieldPlan[]::new);
+                    break;
+                default:
+                    this.fields = new FieldPlan[0];
+            }
+        }
+
+        private FieldPlan field(final Descriptor descriptor, final String name) {
+            final FieldDescriptor field = descriptor.findFieldByName(name);
+            return new FieldPlan(field, key(field));
+        }
+    }
+
+    /**
+     * Field with its escaped key, key and value fields of map entries and whether its unset value is omitted even
+     * when default values are included: unset messages and members of oneof
+     */
+    private static final class FieldPlan {
+        private final FieldDescriptor descriptor;
+        private final String key;
+        private final FieldDescriptor mapKey;
+        private final FieldDescriptor mapValue;
+        private final boolean omittedUnset;
+
+        private FieldPlan(final FieldDescriptor descriptor, final String key) {
+            this.descriptor = descriptor;
+            this.key = key;
+            this.mapKey = descriptor.isMapField() ? descriptor.getMessageType().findFieldByName("key") : null;
+            this.mapValue = descriptor.isMapField() ? descriptor.getMessageType().findFieldByName("value") : null;
+            this.omittedUnset = descriptor.isOptional()
+                    && (descriptor.getJavaType() == FieldDescriptor.JavaType.MESSAGE
+                            || descriptor.getContainingOneof() != null);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.qameta.allure.model.Attachment;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Rewriting of attachments in allure results before the report is generated. Attachments are found anywhere in test
+ * results and containers: in the result itself, its steps and fixtures.
+ */
+public final class ResultsAttachments {
+
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+    private ResultsAttachments() {}
+
+    /**
+     * @param directory allure results directory
+     * @param type      MIME type of rewritten attachments
+     * @param rewriting rewriting of attachment files, source and type of the attachment are updated by the rewriting
+     * @return number of rewritten attachments
+     * @throws IOException when results are not readable or writable
+     */
+    public static int rewrite(final Path directory, final String type, final Rewriting rewriting) throws IOException {
+        int rewritten = 0;
+        try (DirectoryStream<Path> results = Files.newDirectoryStream(directory, "*-{result,container}.json")) {
+            for (Path result : results) {
+                final JsonElement json;
+                try (Reader reader = Files.newBufferedReader(result, StandardCharsets.UTF_8)) {
+                    json = JsonParser.parseReader(reader);
+                }
+                final int rewrittenInResult = rewrite(json, type, rewriting);
+                if (rewrittenInResult == 0) continue;
+                try (Writer writer = Files.newBufferedWriter(result, StandardCharsets.UTF_8)) {
+                    GSON.toJson(json, writer);
+                }
+                rewritten += rewrittenInResult;
+            }
+        }
+        return rewritten;
+    }
+
+    private static int rewrite(final JsonElement json, final String type, final Rewriting rewriting)
+            throws IOException {
+        int rewritten = 0;
+        if (json.isJsonArray()) {
+            for (JsonElement element : (JsonArray) json) {
+                rewritten += rewrite(element, type, rewriting);
+            }
+        } else if (json.isJsonObject()) {
+            final JsonObject object = json.getAsJsonObject();
+            final JsonElement attachmentType = object.get("type");
+            final JsonElement source = object.get("source");
+            if (attachmentType != null && source != null && type.equals(attachmentType.getAsString())) {
+                final Attachment attachment = new Attachment().setSource(source.getAsString()).setType(type);
+                if (!rewriting.rewrite(attachment)) return 0;
+                object.addProperty("source", attachment.getSource());
+                object.addProperty("type", attachment.getType());
+                return 1;
+            }
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                rewritten += rewrite(entry.getValue(), type, rewriting);
+            }
+        }
+        return rewritten;
+    }
+
+    /**
+     * Rewriting of one attachment
+     */
+    public interface Rewriting {
+
+        /**
+         * @param attachment source and type of attachment to be updated
+         * @return true when attachment is rewritten
+         * @throws IOException when attachment is not readable or writable
+         */
+        boolean rewrite(Attachment attachment) throws IOException;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import io.grpc.MethodDescriptor;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Policy deciding at the start of a call whether the call is attached. Calls which are not sampled are not captured or
+ * formatted, only a failed step with method and status is recorded when such a call is closed with non-OK status.
+ *
+ * @see InterceptorOptions.Builder#samplingPolicy(SamplingPolicy)
+ */
+@FunctionalInterface
+public interface SamplingPolicy {
+
+    /**
+     * Default policy attaching every call
+     */
+    SamplingPolicy ALWAYS = method -> true;
+
+    /**
+     * Deciding whether the call is attached, called once per call from the thread starting the call
+     *
+     * @param method descriptor of called method
+     * @return true to attach requests, responses and metadata of the call
+     */
+    boolean isSampled(MethodDescriptor<?, ?> method);
+
+    /**
+     * @return policy attaching every call
+     */
+    static SamplingPolicy always() {
+        return ALWAYS;
+    }
+
+    /**
+     * @return policy attaching only calls closed with non-OK status
+     */
+    static SamplingPolicy failuresOnly() {
+        return method -> false;
+    }
+
+    /**
+     * @param n period of sampling, first call and every n-th call after it are attached
+     * @return policy attaching every n-th call counted across all methods
+     */
+    static SamplingPolicy everyNth(final int n) {
+        if (n < 1) throw new IllegalArgumentException("Sampling period should be positive: " + n);
+        if (n == 1) return ALWAYS;
+        final AtomicLong calls = new AtomicLong();
+        return method -> calls.getAndIncrement() % n == 0;
+    }
+
+    /**
+     * @param rate probability of call to be attached from 0 to 1
+     * @return policy attaching random calls with given probability
+     */
+    static SamplingPolicy rate(final double rate) {
+        if (!(rate >= 0 && rate <= 1)) throw new IllegalArgumentException("Sampling rate should be in [0, 1]: " + rate);
+        if (rate == 1) return ALWAYS;
+        return method -> ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    /**
+     * @param policies policies by full method name like {@code helloworld.Greeter/SayHello} or by service name like
+     *                 {@code helloworld.Greeter}, full method name takes precedence
+     * @param fallback policy of methods not listed
+     * @return policy delegating to policy of called method
+     */
+    static SamplingPolicy perMethod(final Map<String, SamplingPolicy> policies, final SamplingPolicy fallback) {
+        final Map<String, SamplingPolicy> copy = new HashMap<>(policies);
+        return method -> {
+            SamplingPolicy policy = copy.get(method.getFullMethodName());
+            if (policy == null) policy = copy.get(method.getServiceName());
+            return (policy != null ? policy : fallback).isSampled(method);
+        };
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only log of serialized messages in memory-mapped segments of temporary files. Each frame is the length of the
+ * message, its timestamp and the message serialized straight into the mapped segment, so appending a message costs a
+ * copy of its bytes without stream buffers and system calls. Positions of frames are indexed, so any frame could be
+ * read when the attachment is rendered. Frames larger than a segment get a segment of their own.
+ *
+ * <p>Messages are appended by one thread at a time and read only after appending is finished.
+ *
+ * <p>Buffers are positioned through {@link Buffer} and duplicated through {@link ByteBuffer}: the covariant overrides
+ * added in JDK 9 and JDK 17 are not present on Java 8 runtime.
+ */
+@Slf4j
+final class SegmentedLog implements Closeable {
+
+    /**
+     * Default size of one segment in bytes
+     */
+    static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final int HEADER = Integer.BYTES + Long.BYTES;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final List<Path> files = new ArrayList<>();
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private MappedByteBuffer current;
+    private long[] index = new long[64];
+    private int size;
+
+    /**
+     * @param directory   directory of segment files, default temporary directory when null
+     * @param segmentSize size of one segment in bytes
+     */
+    SegmentedLog(final Path directory, final int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * @param message   appended message
+     * @param timestamp timestamp of the message
+     * @throws IOException when segment file could not be created or mapped
+     */
+    void append(final Message message, final long timestamp) throws IOException {
+        final int length = message.getSerializedSize();
+        if (length > Integer.MAX_VALUE - HEADER) throw new IOException("Message is too large: " + length);
+        final int frame = HEADER + length;
+        if (current == null || current.remaining() < frame) current = map(Math.max(segmentSize, frame));
+        final int offset = current.position();
+        current.putInt(length).putLong(timestamp);
+        final CodedOutputStream out = CodedOutputStream.newInstance(current);
+        message.writeTo(out);
+        out.flush();
+        if (size == index.length) index = Arrays.copyOf(index, size * 2);
+        index[size++] = (long) (segments.size() - 1) << 32 | offset;
+    }
+
+    /**
+     * @return count of appended messages
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param frame  index of the frame
+     * @param parser parser of the message type
+     * @return message of the frame
+     * @throws InvalidProtocolBufferException when the frame could not be parsed
+     */
+    Message message(final int frame, final Parser<? extends Message> parser) throws InvalidProtocolBufferException {
+        final ByteBuffer segment = segment(frame);
+        final int body = segment.position() + HEADER;
+        ((Buffer) segment).limit(body + segment.getInt(segment.position())).position(body);
+        return parser.parseFrom(segment);
+    }
+
+    /**
+     * @param frame index of the frame
+     * @return timestamp of the message of the frame
+     */
+    long timestamp(final int frame) {
+        final ByteBuffer segment = segment(frame);
+        return segment.getLong(segment.position() + Integer.BYTES);
+    }
+
+    /**
+     * Deleting segment files, mappings are released once segments are garbage collected
+     */
+    @Override
+    public void close() {
+        current = null;
+        segments.clear();
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // mapped files could not be deleted on some platforms until they are unmapped
+                file.toFile().deleteOnExit();
+                log.debug("Could not delete temporary file {}", file, e);
+            }
+        }
+        files.clear();
+    }
+
+    /**
+     * @return view of the segment positioned at the frame
+     */
+    private ByteBuffer segment(final int frame) {
+        if (frame < 0 || frame >= size) throw new IndexOutOfBoundsException("Frame " + frame + " of " + size);
+        final long position = index[frame];
+        final ByteBuffer segment = ((ByteBuffer) segments.get((int) (position >>> 32))).duplicate();
+        ((Buffer) segment).position((int) position);
+        return segment;
+    }
+
+    private MappedByteBuffer map(final int capacity) throws IOException {
+        final Path file = directory == null
+                ? Files.createTempFile("allure-grpc-", ".log")
+                : Files.createTempFile(directory, "allure-grpc-", ".log");
+        files.add(file);
+        try (FileChannel channel =
+                FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            segments.add(segment);
+            return segment;
+        }
+    }
+}
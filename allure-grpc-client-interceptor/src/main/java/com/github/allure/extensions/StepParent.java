@@ -0,0 +1,197 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import io.grpc.CallOptions;
+import io.qameta.allure.Allure;
+import io.qameta.allure.AllureLifecycle;
+import io.qameta.allure.internal.AllureThreadContext;
+import io.qameta.allure.model.StepResult;
+import java.lang.reflect.Field;
+import java.util.UUID;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Parent of interaction steps resolved once per call, see {@link AllureGrpcParent}. A parent is either a test, fixture
+ * or step of Allure lifecycle, or a step of client call which is being started on this thread, so calls of in-process
+ * servers are nested into the client call which made them.
+ *
+ * <p>Steps are started in the parent with {@link AllureLifecycle#startStep(String, String, StepResult)} on the thread
+ * starting the call and stopped with {@link AllureLifecycle#stopStep(String)} on the thread closing it, so step
+ * listeners see every step and the steps are added to the parent under the same lock as steps of the test itself.
+ * Starting a step pushes it onto Allure thread context of the starting thread and stopping pops thread context of the
+ * stopping thread, which are different threads for asynchronous calls. The step is taken off thread context right
+ * after it is started and put on it right before it is stopped, so thread context of test and gRPC threads is left as
+ * it was.
+ */
+@Slf4j
+final class StepParent {
+
+    private static final ThreadLocal<InteractionStep> STARTING_CALL = new ThreadLocal<>();
+    private static final Field THREAD_CONTEXT = threadContextField();
+
+    private final AllureLifecycle lifecycle;
+    private final String uuid;
+
+    private StepParent(final AllureLifecycle lifecycle, final String uuid) {
+        this.lifecycle = lifecycle;
+        this.uuid = uuid;
+    }
+
+    private static StepParent of(final AllureLifecycle lifecycle, final String uuid) {
+        return uuid == null ? null : new StepParent(lifecycle, uuid);
+    }
+
+    /**
+     * @param callOptions options of intercepted client call
+     * @return parent of client call, null when the call is made outside of the test
+     */
+    static StepParent client(final CallOptions callOptions) {
+        final AllureLifecycle lifecycle = Allure.getLifecycle();
+        String uuid = callOptions.getOption(AllureGrpcParent.CALL_OPTION);
+        if (uuid == null) uuid = AllureGrpcParent.CONTEXT_KEY.get();
+        if (uuid == null) uuid = lifecycle.getCurrentTestCaseOrStep().orElse(null);
+        return of(lifecycle, uuid);
+    }
+
+    /**
+     * @return parent of server call, null when the call arrives outside of the test
+     */
+    static StepParent server() {
+        final AllureLifecycle lifecycle = Allure.getLifecycle();
+        final InteractionStep clientStep = STARTING_CALL.get();
+        if (clientStep != null) return new StepParent(lifecycle, clientStep.uuid());
+        return current(lifecycle);
+    }
+
+    /**
+     * @return parent bound to current gRPC context or current on this thread, null outside of the test
+     */
+    static StepParent current() {
+        return current(Allure.getLifecycle());
+    }
+
+    private static StepParent current(final AllureLifecycle lifecycle) {
+        String uuid = AllureGrpcParent.CONTEXT_KEY.get();
+        if (uuid == null) uuid = lifecycle.getCurrentTestCaseOrStep().orElse(null);
+        return of(lifecycle, uuid);
+    }
+
+    /**
+     * Starting client call, server calls arriving on this thread meanwhile are nested into the step of the call
+     *
+     * @param clientStep step of client call
+     * @param start      start of client call
+     */
+    static void starting(final InteractionStep clientStep, final Runnable start) {
+        final InteractionStep previous = STARTING_CALL.get();
+        STARTING_CALL.set(clientStep);
+        try {
+            start.run();
+        } finally {
+            if (previous == null) {
+                STARTING_CALL.remove();
+            } else {
+                STARTING_CALL.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Stopping the step on this thread after it is updated
+     *
+     * @param lifecycle lifecycle the step is started in
+     * @param stepUuid  UUID of the step
+     * @param update    update of the step before it is stopped
+     */
+    static void stop(final AllureLifecycle lifecycle, final String stepUuid, final Consumer<StepResult> update) {
+        final AllureThreadContext context = threadContext(lifecycle);
+        try {
+            lifecycle.updateStep(stepUuid, update);
+            if (context != null) context.start(stepUuid);
+            lifecycle.stopStep(stepUuid);
+        } catch (RuntimeException e) {
+            log.error("Could not stop gRPC step {}", stepUuid, e);
+        } finally {
+            // the step is left on thread context when Allure could not find it
+            leave(context, stepUuid);
+        }
+    }
+
+    AllureLifecycle lifecycle() {
+        return lifecycle;
+    }
+
+    /**
+     * Starting running step in the parent, it is stopped with {@link InteractionStep#finish}
+     *
+     * @param stepResult step started with its start time, current time when it is not set
+     * @return UUID of the step
+     */
+    String start(final StepResult stepResult) {
+        final String stepUuid = UUID.randomUUID().toString();
+        final Long start = stepResult.getStart();
+        try {
+            lifecycle.startStep(uuid, stepUuid, stepResult);
+            if (start != null) stepResult.setStart(start);
+        } finally {
+            leave(threadContext(lifecycle), stepUuid);
+        }
+        return stepUuid;
+    }
+
+    /**
+     * Taking the step off thread context of this thread when it is current there
+     */
+    private static void leave(final AllureThreadContext context, final String stepUuid) {
+        if (context != null && context.getCurrent().filter(stepUuid::equals).isPresent()) context.stop();
+    }
+
+    /**
+     * @return thread context of the lifecycle, null when it is not accessible
+     */
+    private static AllureThreadContext threadContext(final AllureLifecycle lifecycle) {
+        if (THREAD_CONTEXT == null) return null;
+        try {
+            return (AllureThreadContext) THREAD_CONTEXT.get(lifecycle);
+        } catch (IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Allure lifecycle has no public access to thread context, its field is read once
+     */
+    private static Field threadContextField() {
+        try {
+            final Field field = AllureLifecycle.class.getDeclaredField("threadContext");
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException | RuntimeException e) {
+            log.warn("Allure thread context is not accessible, gRPC steps stay current on threads starting them", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Destination of rendered attachments encoding characters straight to UTF-8 bytes, reused by the thread which renders
+ * attachments, so rendering of attachments in memory allocates neither strings nor byte arrays once the buffer has
+ * grown to the usual size of attachments. Malformed surrogates are encoded as {@code '?'} like
+ * {@link String#getBytes(java.nio.charset.Charset)} does. Buffers grown past {@link #MAX_RETAINED} bytes are not kept.
+ *
+ * <p>Content could also be rendered chunk by chunk while it is read, see {@link #inputStream(Chunks)}, so the buffer
+ * holds only one chunk at a time no matter how large the attachment is.
+ */
+final class Utf8Buffer implements Appendable {
+
+    static final int MAX_RETAINED = 1024 * 1024;
+    private static final int INITIAL = 8 * 1024;
+    private static final ThreadLocal<Utf8Buffer> BUFFERS = ThreadLocal.withInitial(Utf8Buffer::new);
+
+    private byte[] bytes = new byte[INITIAL];
+    private int size;
+    private char highSurrogate;
+    private boolean acquired;
+
+    /**
+     * @return empty buffer of this thread, or a new buffer when the buffer of this thread is already in use
+     */
+    static Utf8Buffer acquire() {
+        final Utf8Buffer buffer = BUFFERS.get();
+        if (buffer.acquired) return new Utf8Buffer();
+        buffer.acquired = true;
+        return buffer;
+    }
+
+    /**
+     * Returning the buffer to its thread, content and streams of the buffer should not be used afterwards
+     */
+    void release() {
+        size = 0;
+        highSurrogate = 0;
+        if (bytes.length > MAX_RETAINED) bytes = new byte[INITIAL];
+        acquired = false;
+    }
+
+    /**
+     * @return count of encoded bytes, high surrogate at the end is not counted until it is completed
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return stream of encoded bytes reading the buffer itself
+     */
+    InputStream inputStream() {
+        completeSurrogate();
+        return new ByteArrayInputStream(bytes, 0, size);
+    }
+
+    /**
+     * @param chunks rendering of the rest of content into this buffer
+     * @return stream of encoded bytes, next chunk is rendered into the cleared buffer once bytes of the buffer are read
+     */
+    ChunkedStream inputStream(final Chunks chunks) {
+        return new ChunkedStream(chunks);
+    }
+
+    @Override
+    public Utf8Buffer append(final CharSequence csq) {
+        return csq == null ? append("null", 0, 4) : append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Utf8Buffer append(final CharSequence csq, final int start, final int end) {
+        if (csq == null) return append("null", start, end);
+        ensureCapacity(3L * (end - start) + 1);
+        int i = start;
+        if (highSurrogate == 0) {
+            final byte[] out = bytes;
+            int position = size;
+            for (char c; i < end && (c = csq.charAt(i)) < 0x80; i++) {
+                out[position++] = (byte) c;
+            }
+            size = position;
+        }
+        for (; i < end; i++) {
+            encode(csq.charAt(i));
+        }
+        return this;
+    }
+
+    @Override
+    public Utf8Buffer append(final char c) {
+        ensureCapacity(4);
+        encode(c);
+        return this;
+    }
+
+    /**
+     * Encoding one character, capacity for 4 bytes should be ensured
+     */
+    private void encode(final char c) {
+        if (highSurrogate != 0) {
+            final char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                final int codePoint = Character.toCodePoint(high, c);
+                bytes[size++] = (byte) (0xF0 | codePoint >> 18);
+                bytes[size++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                bytes[size++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                bytes[size++] = (byte) (0x80 | codePoint & 0x3F);
+                return;
+            }
+            bytes[size++] = '?';
+        }
+        if (c < 0x80) {
+            bytes[size++] = (byte) c;
+        } else if (c < 0x800) {
+            bytes[size++] = (byte) (0xC0 | c >> 6);
+            bytes[size++] = (byte) (0x80 | c & 0x3F);
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            bytes[size++] = '?';
+        } else {
+            bytes[size++] = (byte) (0xE0 | c >> 12);
+            bytes[size++] = (byte) (0x80 | c >> 6 & 0x3F);
+            bytes[size++] = (byte) (0x80 | c & 0x3F);
+        }
+    }
+
+    private void completeSurrogate() {
+        if (highSurrogate == 0) return;
+        highSurrogate = 0;
+        ensureCapacity(1);
+        bytes[size++] = '?';
+    }
+
+    private void ensureCapacity(final long more) {
+        final long required = size + more;
+        if (required <= bytes.length) return;
+        if (required > Integer.MAX_VALUE - 8) throw new OutOfMemoryError("Attachment is too large to render in memory");
+        bytes = Arrays.copyOf(bytes, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, 2L * bytes.length)));
+    }
+
+    /**
+     * Rendering of content chunk by chunk
+     */
+    interface Chunks {
+
+        /**
+         * @param out destination of the next chunk
+         * @return false when content is complete and nothing was rendered
+         * @throws IOException when content could not be rendered
+         */
+        boolean render(Appendable out) throws IOException;
+    }
+
+    /**
+     * Stream of content already in the buffer followed by chunks rendered as the stream is read
+     */
+    final class ChunkedStream extends InputStream {
+
+        private final Chunks chunks;
+        private int position;
+        private long read;
+        private long renderNanos;
+        private boolean finished;
+
+        private ChunkedStream(final Chunks chunks) {
+            this.chunks = chunks;
+        }
+
+        /**
+         * @return count of bytes read from the stream
+         */
+        long size() {
+            return read;
+        }
+
+        /**
+         * @return time of rendering chunks while the stream was read
+         */
+        long renderNanos() {
+            return renderNanos;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] to, final int offset, final int length) throws IOException {
+            if (length == 0) return 0;
+            while (position == size) {
+                if (finished) return -1;
+                size = 0;
+                position = 0;
+                final long started = System.nanoTime();
+                finished = !chunks.render(Utf8Buffer.this);
+                if (finished) completeSurrogate();
+                renderNanos += System.nanoTime() - started;
+            }
+            final int count = Math.min(length, size - position);
+            System.arraycopy(bytes, position, to, offset, count);
+            position += count;
+            read += count;
+            return count;
+        }
+    }
+}
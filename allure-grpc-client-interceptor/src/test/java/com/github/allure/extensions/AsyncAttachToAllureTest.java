@@ -0,0 +1,112 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static com.github.allure.extensions.AllureResultsUtils.attachmentContent;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.allure.extensions.config.AsyncClientTestConfiguration;
+import com.github.allure.extensions.config.GrpcServerEmulator;
+import io.qameta.allure.model.Status;
+import io.qameta.allure.model.StepResult;
+import io.qameta.allure.test.AllureResults;
+import io.qameta.allure.test.RunUtils;
+import java.util.Iterator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Attachments written by async attachment writer should be completed before the test result is written.
+ */
+@EnableAutoConfiguration
+@SpringBootTest(
+        classes = AsyncClientTestConfiguration.class,
+        properties = {
+            "grpc.server.port=-1",
+            "grpc.server.in-process-name=async-attach-test",
+            "grpc.client.testing.address=in-process:async-attach-test"
+        })
+public class AsyncAttachToAllureTest {
+
+    @Autowired
+    GreeterGrpc.GreeterBlockingStub greeterBlockingStub;
+
+    @Autowired
+    GrpcServerEmulator grpcServerEmulator;
+
+    @BeforeEach
+    public void setUpServer() {
+        grpcServerEmulator.setReturnError(false);
+        ProtoFormatter.FORMAT_PROTO_TO_JSON = true;
+    }
+
+    final HelloRequest request = HelloRequest.newBuilder().setName("Smoke").build();
+
+    @Test
+    public void allAttachmentsWrittenForUnaryTest() {
+        final AllureResults allureResults =
+                RunUtils.runWithinTestContext(() -> greeterBlockingStub.sayHello(request));
+        final StepResult stepResult =
+                allureResults.getTestResults().get(0).getSteps().get(0);
+        assertEquals(Status.PASSED, stepResult.getStatus(), "step result is correct for async attachments");
+        assertEquals(5, stepResult.getAttachments().size(), "all attachments flushed before test result written");
+        assertEquals(
+                "{\n  \"message\": \"Hi Smoke\"\n}",
+                attachmentContent(allureResults, stepResult, "gRPC responses"),
+                "response attached");
+    }
+
+    @Test
+    public void allAttachmentsWrittenForStreamTest() {
+        final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+            final Iterator<HelloReply> helloReplyIterator = greeterBlockingStub.sayHelloStream(request);
+            while (helloReplyIterator.hasNext()) {
+                helloReplyIterator.next();
+            }
+        });
+        final StepResult stepResult =
+                allureResults.getTestResults().get(0).getSteps().get(0);
+        assertEquals(5, stepResult.getAttachments().size(), "all attachments flushed before test result written");
+        assertTrue(
+                attachmentContent(allureResults, stepResult, "gRPC responses").contains("And again Hi Smoke"),
+                "all streamed responses attached");
+    }
+
+    @Test
+    public void negativeStatusWrittenForUnaryTest() {
+        grpcServerEmulator.setReturnError(true);
+        final AllureResults allureResults =
+                RunUtils.runWithinTestContext(() -> greeterBlockingStub.sayHello(request));
+        final StepResult stepResult =
+                allureResults.getTestResults().get(0).getSteps().get(0);
+        assertEquals(Status.FAILED, stepResult.getStatus(), "negative step result is correct for async attachments");
+        assertTrue(
+                attachmentContent(allureResults, stepResult, "gRPC status").contains("UNKNOWN"),
+                "negative status attached");
+    }
+}
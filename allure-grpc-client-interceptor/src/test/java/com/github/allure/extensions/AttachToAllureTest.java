@@ -184,7 +184,7 @@ public class AttachToAllureTest {
     }
 
     /*
-     * Headers tests --------------------------------------------------------------------------------------------------
+     * Metadata tests --------------------------------------------------------------------------------------------------
      */
     @Test
     public void headersAttachmentForUnaryTest() {
@@ -193,8 +193,8 @@ public class AttachToAllureTest {
                 allureResults.getTestResults().get(0).getSteps().get(0);
         final List<Attachment> attachmentList = stepResult.getAttachments();
         assertTrue(
-                attachmentList.stream().anyMatch(x -> x.getName().equals("gRPC headers")),
-                "interceptor attached gRPC header");
+                attachmentList.stream().anyMatch(x -> x.getName().equals("gRPC metadata")),
+                "interceptor attached gRPC metadata");
     }
 
     @Test
@@ -204,8 +204,8 @@ public class AttachToAllureTest {
                 allureResults.getTestResults().get(0).getSteps().get(0);
         final List<Attachment> attachmentList = stepResult.getAttachments();
         assertTrue(
-                attachmentList.stream().anyMatch(x -> x.getName().equals("gRPC headers")),
-                "interceptor attached gRPC header");
+                attachmentList.stream().anyMatch(x -> x.getName().equals("gRPC metadata")),
+                "interceptor attached gRPC metadata");
     }
 
     /*
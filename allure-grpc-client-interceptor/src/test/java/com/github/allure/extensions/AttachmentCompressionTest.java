@@ -0,0 +1,221 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static com.github.allure.extensions.AllureResultsUtils.firstStep;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.allure.extensions.config.InProcessGreeter;
+import com.google.protobuf.Message;
+import io.qameta.allure.Feature;
+import io.qameta.allure.FileSystemResultsWriter;
+import io.qameta.allure.model.Attachment;
+import io.qameta.allure.model.StepResult;
+import io.qameta.allure.test.AllureResults;
+import io.qameta.allure.test.RunUtils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Attachments above compression threshold should be written as gzip and decompressed back in allure results.
+ */
+@Feature("Attachment compression")
+public class AttachmentCompressionTest {
+
+    final HelloRequest request = HelloRequest.newBuilder().setName("Compressed").build();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void attachmentsAboveThresholdAreCompressed() throws IOException {
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .attachmentCompression(AttachmentCompression.gzip(1024))
+                .payloadBufferPolicy(PayloadBufferPolicy.incremental())
+                .messageTimestamps(false)
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            greeter.getGrpcServerEmulator().setStreamRepeats(1000);
+            final List<Message> replies = new ArrayList<>();
+            final AllureResults allureResults = RunUtils.runWithinTestContext(
+                    () -> greeter.blockingStub().sayHelloStream(request).forEachRemaining(replies::add));
+
+            final StepResult step = firstStep(allureResults);
+            final Attachment responses = attachment(step, "gRPC responses");
+            assertEquals(AttachmentCompression.GZIP_TYPE, responses.getType());
+            assertTrue(responses.getSource().endsWith(".json.gz"));
+            final byte[] compressed = allureResults.getAttachments().get(responses.getSource());
+            final String expected = ProtoFormatter.builder().build().print(replies);
+            assertTrue(compressed.length < expected.length() / 10);
+            assertEquals(expected, gunzip(compressed));
+
+            final Attachment method = attachment(step, "gRPC method");
+            assertEquals("text/plain", method.getType());
+            assertTrue(method.getSource().endsWith(".txt"));
+            final Attachment metadata = attachment(step, "gRPC metadata");
+            assertEquals("application/json", metadata.getType());
+            assertTrue(metadata.getSource().endsWith(".json"));
+        }
+    }
+
+    @Test
+    public void renderedPayloadsAreCompressedAboveThreshold() throws IOException {
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .attachmentCompression(AttachmentCompression.gzip(1024))
+                .payloadBufferPolicy(PayloadBufferPolicy.headTail(3, 3, directory))
+                .messageTimestamps(false)
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            greeter.getGrpcServerEmulator().setStreamRepeats(1000);
+            final List<Message> replies = new ArrayList<>();
+            final AllureResults allureResults = RunUtils.runWithinTestContext(
+                    () -> greeter.blockingStub().sayHelloStream(request).forEachRemaining(replies::add));
+
+            final StepResult step = firstStep(allureResults);
+            final Attachment responses = attachment(step, "gRPC responses");
+            assertEquals(AttachmentCompression.GZIP_TYPE, responses.getType());
+            assertEquals(
+                    ProtoFormatter.builder().build().print(replies),
+                    gunzip(allureResults.getAttachments().get(responses.getSource())));
+            final Attachment requests = attachment(step, "gRPC request");
+            assertEquals("application/json", requests.getType());
+            assertEquals(0, Files.list(directory).count());
+        }
+    }
+
+    @Test
+    public void compressedResultsAreDecompressedInPlace() throws IOException {
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .attachmentCompression(AttachmentCompression.gzip(0))
+                .payloadBufferPolicy(PayloadBufferPolicy.binary())
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            final AllureResults allureResults =
+                    RunUtils.runWithinTestContext(() -> greeter.blockingStub().sayHello(request));
+            final FileSystemResultsWriter writer = new FileSystemResultsWriter(directory);
+            allureResults.getTestResults().forEach(writer::write);
+            allureResults
+                    .getAttachments()
+                    .forEach((source, content) -> writer.write(source, new ByteArrayInputStream(content)));
+
+            assertEquals(5, AttachmentCompression.decompressResults(directory));
+            assertEquals(0, AttachmentCompression.decompressResults(directory));
+
+            final StepResult step = firstStep(allureResults);
+            final String status = attachment(step, "gRPC status").getSource();
+            assertFalse(Files.exists(directory.resolve(status)));
+            final Path decompressed = directory.resolve(status.replace(".txt.gz", ".txt"));
+            assertEquals(
+                    "Status{code=OK, description=null, cause=null}",
+                    new String(Files.readAllBytes(decompressed), StandardCharsets.UTF_8));
+            final String response = attachment(step, "gRPC responses").getSource();
+            assertTrue(Files.exists(directory.resolve(response.replace(".binpb.gz", ".binpb"))));
+        }
+    }
+
+    @Test
+    public void interruptedDecompressionIsCompletedByRerun() throws IOException {
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .attachmentCompression(AttachmentCompression.gzip(0))
+                .payloadBufferPolicy(PayloadBufferPolicy.binary())
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            final AllureResults allureResults =
+                    RunUtils.runWithinTestContext(() -> greeter.blockingStub().sayHello(request));
+            final FileSystemResultsWriter writer = new FileSystemResultsWriter(directory);
+            allureResults.getTestResults().forEach(writer::write);
+            allureResults
+                    .getAttachments()
+                    .forEach((source, content) -> writer.write(source, new ByteArrayInputStream(content)));
+            final Map<Path, byte[]> written = new HashMap<>();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    written.put(file, Files.readAllBytes(file));
+                }
+            }
+
+            assertEquals(5, AttachmentCompression.decompressResults(directory));
+            for (Map.Entry<Path, byte[]> file : written.entrySet()) {
+                Files.write(file.getKey(), file.getValue());
+            }
+            assertEquals(5, AttachmentCompression.decompressResults(directory));
+            for (Map.Entry<Path, byte[]> file : written.entrySet()) {
+                if (file.getKey().toString().endsWith("-result.json")) Files.write(file.getKey(), file.getValue());
+            }
+            assertEquals(5, AttachmentCompression.decompressResults(directory));
+            assertEquals(0, AttachmentCompression.decompressResults(directory));
+
+            final String status = attachment(firstStep(allureResults), "gRPC status").getSource();
+            assertFalse(Files.exists(directory.resolve(status)));
+            assertEquals(
+                    "Status{code=OK, description=null, cause=null}",
+                    new String(
+                            Files.readAllBytes(directory.resolve(status.replace(".txt.gz", ".txt"))),
+                            StandardCharsets.UTF_8));
+            try (Stream<Path> files = Files.list(directory)) {
+                assertTrue(files.noneMatch(x -> x.toString().endsWith(".tmp")));
+            }
+        }
+    }
+
+    @Test
+    public void negativeThresholdIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> AttachmentCompression.gzip(-1));
+    }
+
+    private static Attachment attachment(final StepResult step, final String name) {
+        return step.getAttachments().stream()
+                .filter(x -> x.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("no attachment " + name));
+    }
+
+    private static String gunzip(final byte[] compressed) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
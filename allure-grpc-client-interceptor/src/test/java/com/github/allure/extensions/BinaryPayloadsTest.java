@@ -0,0 +1,161 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static com.github.allure.extensions.AllureResultsUtils.firstStep;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.allure.extensions.config.InProcessGreeter;
+import com.google.protobuf.Any;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorSet;
+import com.google.protobuf.StringValue;
+import com.google.protobuf.UInt64Value;
+import io.qameta.allure.Feature;
+import io.qameta.allure.model.Attachment;
+import io.qameta.allure.model.StepResult;
+import io.qameta.allure.test.AllureResults;
+import io.qameta.allure.test.RunUtils;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Binary attachments should keep serialized messages and reference descriptor sets written once per allure results.
+ */
+@Feature("Binary payloads")
+public class BinaryPayloadsTest {
+
+    final HelloRequest request = HelloRequest.newBuilder().setName("Binary").build();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void messagesAreWrittenAsRecords() throws IOException {
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .payloadBufferPolicy(PayloadBufferPolicy.binary())
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            greeter.getGrpcServerEmulator().setStreamRepeats(3);
+            final AllureResults allureResults = RunUtils.runWithinTestContext(
+                    () -> greeter.blockingStub().sayHelloStream(request).forEachRemaining(reply -> {}));
+
+            final List<Any> records = records(allureResults, firstStep(allureResults), "gRPC responses");
+            assertEquals(13, records.size());
+            assertEquals(BinaryPayloadFormat.DESCRIPTOR_SET_SOURCE_TYPE_URL, records.get(0).getTypeUrl());
+            assertEquals(BinaryPayloadFormat.TIMESTAMP_TYPE_URL, records.get(1).getTypeUrl());
+            assertEquals("And again Hi Binary", HelloReply.parseFrom(records.get(4).getValue()).getMessage());
+        }
+    }
+
+    @Test
+    public void descriptorSetIsWrittenOncePerResults() throws IOException {
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .payloadBufferPolicy(PayloadBufferPolicy.binary())
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                greeter.blockingStub().sayHello(request);
+                greeter.blockingStub().sayHello(request);
+            });
+
+            final List<String> descriptorSets = allureResults.getAttachments().keySet().stream()
+                    .filter(x -> x.endsWith(BinaryPayloadFormat.DESCRIPTOR_SET_SUFFIX))
+                    .collect(Collectors.toList());
+            assertEquals(1, descriptorSets.size());
+            final FileDescriptorSet set =
+                    FileDescriptorSet.parseFrom(allureResults.getAttachments().get(descriptorSets.get(0)));
+            assertTrue(set.getFileList().stream()
+                    .map(FileDescriptorProto::getName)
+                    .anyMatch(x -> x.equals("helloworld.proto")));
+            for (StepResult step : allureResults.getTestResults().get(0).getSteps()) {
+                for (String name : new String[] {"gRPC request", "gRPC responses"}) {
+                    final Any reference = records(allureResults, step, name).get(0);
+                    assertEquals(descriptorSets.get(0), StringValue.parseFrom(reference.getValue()).getValue());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void temporaryFileIsDeletedAfterAttaching() throws IOException {
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .payloadBufferPolicy(PayloadBufferPolicy.binary(directory))
+                .messageTimestamps(false)
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            greeter.getGrpcServerEmulator().setStreamRepeats(50_000);
+            final AllureResults allureResults = RunUtils.runWithinTestContext(
+                    () -> greeter.blockingStub().sayHelloStream(request).forEachRemaining(reply -> {}));
+
+            assertEquals(100_001, records(allureResults, firstStep(allureResults), "gRPC responses").size());
+            assertEquals(0, Files.list(directory).count());
+        }
+    }
+
+    @Test
+    public void messagesLostToFailedWriteAreMarked() throws IOException {
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .payloadBufferPolicy(PayloadBufferPolicy.binary(directory.resolve("missing")))
+                .messageTimestamps(false)
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            greeter.getGrpcServerEmulator().setStreamRepeats(20_000);
+            final AllureResults allureResults = RunUtils.runWithinTestContext(
+                    () -> greeter.blockingStub().sayHelloStream(request).forEachRemaining(reply -> {}));
+
+            final List<Any> records = records(allureResults, firstStep(allureResults), "gRPC responses");
+            assertEquals(1, records.size());
+            assertEquals(BinaryPayloadFormat.LOST_TYPE_URL, records.get(0).getTypeUrl());
+            assertEquals(40_000, UInt64Value.parseFrom(records.get(0).getValue()).getValue());
+        }
+    }
+
+    private static List<Any> records(final AllureResults allureResults, final StepResult step, final String name)
+            throws IOException {
+        final Attachment attachment = step.getAttachments().stream()
+                .filter(x -> x.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("no attachment " + name));
+        assertEquals(BinaryPayloadFormat.MIME_TYPE, attachment.getType());
+        assertTrue(attachment.getSource().endsWith(BinaryPayloadFormat.FILE_EXTENSION));
+        final List<Any> records = new ArrayList<>();
+        try (InputStream in = new ByteArrayInputStream(allureResults.getAttachments().get(attachment.getSource()))) {
+            Any record;
+            while ((record = Any.parseDelimitedFrom(in)) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static com.github.allure.extensions.AllureResultsUtils.firstStep;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.allure.extensions.config.InProcessGreeter;
+import io.qameta.allure.Feature;
+import io.qameta.allure.model.Parameter;
+import io.qameta.allure.model.StepResult;
+import io.qameta.allure.test.AllureResults;
+import io.qameta.allure.test.RunUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Timing and sizes of calls should be recorded as step parameters.
+ */
+@Feature("Call metrics")
+public class CallMetricsTest {
+
+    final HelloRequest request = HelloRequest.newBuilder().setName("Metrics").build();
+
+    @Test
+    public void clientCallMetricsAreStepParameters() {
+        final AllureGrpcClientInterceptor interceptor =
+                AllureGrpcClientInterceptor.builder().callMetrics(true).build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            greeter.getGrpcServerEmulator().setStreamRepeats(5);
+            final List<HelloReply> replies = new ArrayList<>();
+            final AllureResults allureResults = RunUtils.runWithinTestContext(
+                    () -> greeter.blockingStub().sayHelloStream(request).forEachRemaining(replies::add));
+
+            final StepResult step = firstStep(allureResults);
+            assertEquals(
+                    Arrays.asList(
+                            "time to headers, ms",
+                            "time to first response, ms",
+                            "duration, ms",
+                            "requests",
+                            "request bytes",
+                            "responses",
+                            "response bytes"),
+                    step.getParameters().stream().map(Parameter::getName).collect(Collectors.toList()));
+            final Map<String, String> parameters = parameters(step);
+            assertEquals("1", parameters.get("requests"));
+            assertEquals(String.valueOf(request.getSerializedSize()), parameters.get("request bytes"));
+            assertEquals("10", parameters.get("responses"));
+            assertEquals(
+                    String.valueOf(replies.stream().mapToInt(HelloReply::getSerializedSize).sum()),
+                    parameters.get("response bytes"));
+            final double headers = Double.parseDouble(parameters.get("time to headers, ms"));
+            final double firstResponse = Double.parseDouble(parameters.get("time to first response, ms"));
+            final double duration = Double.parseDouble(parameters.get("duration, ms"));
+            assertTrue(0 <= headers && headers <= firstResponse && firstResponse <= duration);
+        }
+    }
+
+    @Test
+    public void serverCallMetricsAreStepParameters() {
+        final AllureGrpcServerInterceptor interceptor =
+                AllureGrpcServerInterceptor.builder().callMetrics(true).build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            final AllureResults allureResults =
+                    RunUtils.runWithinTestContext(() -> greeter.blockingStub().sayHello(request));
+
+            final Map<String, String> parameters = parameters(firstStep(allureResults));
+            assertEquals("1", parameters.get("requests"));
+            assertEquals("1", parameters.get("responses"));
+            assertTrue(parameters.containsKey("time to headers, ms"));
+            assertTrue(parameters.containsKey("duration, ms"));
+        }
+    }
+
+    @Test
+    public void callMetricsCouldBeTurnedOff() {
+        final AllureGrpcClientInterceptor interceptor =
+                AllureGrpcClientInterceptor.builder().callMetrics(false).build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            final AllureResults allureResults =
+                    RunUtils.runWithinTestContext(() -> greeter.blockingStub().sayHello(request));
+
+            assertTrue(firstStep(allureResults).getParameters().isEmpty());
+        }
+    }
+
+    @Test
+    public void callMetricsAreOffByDefault() {
+        try (InProcessGreeter greeter = new InProcessGreeter(new AllureGrpcClientInterceptor())) {
+            final AllureResults allureResults =
+                    RunUtils.runWithinTestContext(() -> greeter.blockingStub().sayHello(request));
+
+            assertTrue(firstStep(allureResults).getParameters().isEmpty());
+        }
+    }
+
+    private static Map<String, String> parameters(final StepResult step) {
+        return step.getParameters().stream().collect(Collectors.toMap(Parameter::getName, Parameter::getValue));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.protobuf.Message;
+import io.qameta.allure.Feature;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Closing a call should never wait for another thread applying events, its action runs after the events appended before
+ * and is awaited before the test result is written.
+ */
+@Feature("Concurrent calls")
+public class CallRecordingTest {
+
+    @Test
+    public void closeLeavesActionToThreadApplyingEvents() throws InterruptedException {
+        final CountDownLatch formatting = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        final List<String> order = new CopyOnWriteArrayList<>();
+        final CallRecording recording = new CallRecording(null, new BlockingCapture(formatting, released), null, null);
+
+        final Thread sender = new Thread(() -> recording.request(HelloRequest.getDefaultInstance()));
+        sender.start();
+        assertTrue(formatting.await(10, TimeUnit.SECONDS));
+        final Thread closer = new Thread(() -> {
+            recording.close((requests, responses, metrics, end) ->
+                    order.add("closed on " + Thread.currentThread().getName()));
+            order.add("returned");
+        });
+        closer.start();
+        closer.join(10_000);
+        assertEquals(Collections.singletonList("returned"), order);
+
+        released.countDown();
+        sender.join(10_000);
+        assertEquals(Arrays.asList("returned", "closed on " + sender.getName()), order);
+    }
+
+    @Test
+    public void flushWaitsForPendingClose() throws InterruptedException {
+        final CountDownLatch formatting = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        final List<String> order = new CopyOnWriteArrayList<>();
+        final CallRecording recording = new CallRecording(null, new BlockingCapture(formatting, released), null, null);
+
+        final Thread sender = new Thread(() -> recording.request(HelloRequest.getDefaultInstance()));
+        sender.start();
+        assertTrue(formatting.await(10, TimeUnit.SECONDS));
+        recording.close((requests, responses, metrics, end) -> order.add("closed"));
+        final Thread writer = new Thread(() -> {
+            CallRecording.flush();
+            order.add("flushed");
+        });
+        writer.start();
+        writer.join(200);
+        assertTrue(order.isEmpty(), order::toString);
+
+        released.countDown();
+        writer.join(10_000);
+        sender.join(10_000);
+        assertEquals(Arrays.asList("closed", "flushed"), order);
+    }
+
+    @Test
+    public void closeAppliedInPlaceReturnsAfterAction() {
+        final List<String> order = new CopyOnWriteArrayList<>();
+        final CallRecording recording = new CallRecording(null, new BlockingCapture(null, null), null, null);
+
+        recording.close((requests, responses, metrics, end) -> order.add("closed"));
+        recording.close((requests, responses, metrics, end) -> order.add("closed again"));
+        order.add("returned");
+        assertEquals(Arrays.asList("closed", "returned"), order);
+    }
+
+    /**
+     * Capture blocking in the first added message until it is released
+     */
+    private static final class BlockingCapture implements PayloadCapture {
+
+        private final CountDownLatch formatting;
+        private final CountDownLatch released;
+
+        BlockingCapture(final CountDownLatch formatting, final CountDownLatch released) {
+            this.formatting = formatting;
+            this.released = released;
+        }
+
+        @Override
+        public void add(final Message message, final long timeMillis) {
+            formatting.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void attachTo(final InteractionStep step, final String name) {}
+    }
+}
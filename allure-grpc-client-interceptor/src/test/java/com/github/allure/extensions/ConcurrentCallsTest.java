@@ -0,0 +1,165 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static com.github.allure.extensions.AllureResultsUtils.attachmentContent;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.allure.extensions.config.InProcessGreeter;
+import io.grpc.stub.StreamObserver;
+import io.qameta.allure.Feature;
+import io.qameta.allure.model.Parameter;
+import io.qameta.allure.model.Status;
+import io.qameta.allure.model.StepResult;
+import io.qameta.allure.test.AllureResults;
+import io.qameta.allure.test.RunUtils;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Thousands of concurrent async calls, started on their own threads and completed on gRPC executor threads, should
+ * each be attached completely to their own step.
+ */
+@Feature("Concurrent calls")
+public class ConcurrentCallsTest {
+
+    private final AllureGrpcClientInterceptor interceptor =
+            AllureGrpcClientInterceptor.builder().messageTimestamps(false).callMetrics(true).build();
+
+    @Test
+    public void concurrentUnaryCallsAreAttached() {
+        final int calls = 2000;
+        try (InProcessGreeter greeter = InProcessGreeter.withExecutors(interceptor)) {
+            final Completion completion = new Completion(calls);
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                startConcurrently(calls, i -> greeter.asyncStub()
+                        .sayHello(HelloRequest.newBuilder().setName("call-" + i).build(), completion));
+                completion.await();
+            });
+            completion.assertCompleted();
+
+            final List<StepResult> steps = allureResults.getTestResults().get(0).getSteps();
+            assertEquals(calls, steps.size());
+            for (StepResult step : steps) {
+                assertEquals(Status.PASSED, step.getStatus());
+                assertEquals(5, step.getAttachments().size());
+                final String request = attachmentContent(allureResults, step, "gRPC request");
+                final String name = request.substring(request.indexOf("call-"), request.lastIndexOf('"'));
+                assertTrue(attachmentContent(allureResults, step, "gRPC responses").contains("Hi " + name));
+                assertEquals("1", parameter(step, "responses"));
+            }
+        }
+    }
+
+    @Test
+    public void concurrentBidiStreamingCallsAreAttached() {
+        final int calls = 200;
+        final int messages = 50;
+        try (InProcessGreeter greeter = InProcessGreeter.withExecutors(interceptor)) {
+            final Completion completion = new Completion(calls);
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                startConcurrently(calls, i -> {
+                    final StreamObserver<HelloRequest> requests = greeter.asyncStub().sayHelloBidiStream(completion);
+                    for (int j = 0; j < messages; j++) {
+                        requests.onNext(HelloRequest.newBuilder().setName(i + "-" + j).build());
+                    }
+                    requests.onCompleted();
+                });
+                completion.await();
+            });
+            completion.assertCompleted();
+
+            final List<StepResult> steps = allureResults.getTestResults().get(0).getSteps();
+            assertEquals(calls, steps.size());
+            for (StepResult step : steps) {
+                assertEquals(Status.PASSED, step.getStatus());
+                assertEquals(String.valueOf(messages), parameter(step, "requests"));
+                assertEquals(String.valueOf(messages), parameter(step, "responses"));
+                final String requests = attachmentContent(allureResults, step, "gRPC requests");
+                final String responses = attachmentContent(allureResults, step, "gRPC responses");
+                assertEquals(messages + 1, requests.split("\"name\"", -1).length);
+                assertEquals(messages + 1, responses.split("\"message\"", -1).length);
+            }
+        }
+    }
+
+    private static void startConcurrently(final int calls, final IntConsumer call) {
+        for (int i = 0; i < calls; i++) {
+            final int index = i;
+            new Thread(() -> call.accept(index)).start();
+        }
+    }
+
+    private static String parameter(final StepResult step, final String name) {
+        return step.getParameters().stream()
+                .filter(parameter -> parameter.getName().equals(name))
+                .map(Parameter::getValue)
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("no parameter " + name));
+    }
+
+    /**
+     * Observer of all calls counting completed and failed ones
+     */
+    private static final class Completion implements StreamObserver<HelloReply> {
+        private final CountDownLatch completed;
+        private final AtomicInteger failed = new AtomicInteger();
+
+        Completion(final int calls) {
+            this.completed = new CountDownLatch(calls);
+        }
+
+        @Override
+        public void onNext(final HelloReply value) {}
+
+        @Override
+        public void onError(final Throwable t) {
+            failed.incrementAndGet();
+            completed.countDown();
+        }
+
+        @Override
+        public void onCompleted() {
+            completed.countDown();
+        }
+
+        void await() {
+            try {
+                completed.await(60, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void assertCompleted() {
+            assertEquals(0, completed.getCount());
+            assertEquals(0, failed.get());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static com.github.allure.extensions.AllureResultsUtils.attachmentContent;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.github.allure.extensions.config.InProcessGreeter;
+import io.qameta.allure.model.StepResult;
+import io.qameta.allure.test.AllureResults;
+import io.qameta.allure.test.RunUtils;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Interceptor should format messages with the formatter passed to constructor.
+ */
+public class FormatterInjectionTest {
+
+    final HelloRequest request = HelloRequest.newBuilder().setName("Smoke").build();
+
+    @Test
+    public void interceptorUsesInjectedFormatter() {
+        ProtoFormatter.FORMAT_PROTO_TO_JSON = true;
+        final ProtoFormatter formatter = ProtoFormatter.builder().formatToJson(false).build();
+        try (InProcessGreeter greeter = new InProcessGreeter(new AllureGrpcClientInterceptor(formatter))) {
+            final AllureResults allureResults =
+                    RunUtils.runWithinTestContext(() -> greeter.blockingStub().sayHello(request));
+            final StepResult stepResult =
+                    allureResults.getTestResults().get(0).getSteps().get(0);
+            assertEquals("name: \"Smoke\"\n", attachmentContent(allureResults, stepResult, "gRPC request"));
+            assertEquals("message: \"Hi Smoke\"\n", attachmentContent(allureResults, stepResult, "gRPC responses"));
+        }
+    }
+}
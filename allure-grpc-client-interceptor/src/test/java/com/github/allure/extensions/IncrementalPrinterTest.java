@@ -0,0 +1,97 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.protobuf.Message;
+import io.qameta.allure.Feature;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Messages printed one by one should be formatted same as all messages printed at once.
+ */
+@Feature("Formatter")
+public class IncrementalPrinterTest {
+
+    final ProtoFormatter json = ProtoFormatter.builder().build();
+    final ProtoFormatter compact =
+            ProtoFormatter.builder().omittingInsignificantWhitespace(true).build();
+    final ProtoFormatter text = ProtoFormatter.builder().formatToJson(false).build();
+
+    @Test
+    public void printingOneByOneSameAsAtOnce() throws IOException {
+        for (int count : new int[] {0, 1, 2, 5}) {
+            assertPrintedOneByOneSameAsAtOnce(count);
+        }
+    }
+
+    @Test
+    public void lostMessagesAreMarkedInPlace() throws IOException {
+        final Message reply = HelloReply.newBuilder().setMessage("reply").build();
+        final StringBuilder out = new StringBuilder();
+        final ProtoFormatter.IncrementalPrinter printer = compact.incrementalPrinter(out);
+        printer.print(reply);
+        printer.lost(3);
+        printer.print(reply);
+        printer.finish();
+        assertEquals(
+                "[{\"message\":\"reply\"},\"[lost: 3 messages could not be kept for the attachment]\","
+                        + "{\"message\":\"reply\"}]",
+                out.toString());
+
+        out.setLength(0);
+        final ProtoFormatter.IncrementalPrinter onlyLost = compact.incrementalPrinter(out);
+        onlyLost.lost(3);
+        onlyLost.finish();
+        assertEquals("[\"[lost: 3 messages could not be kept for the attachment]\"]", out.toString());
+
+        out.setLength(0);
+        final ProtoFormatter.IncrementalPrinter plaintext = text.incrementalPrinter(out);
+        plaintext.print(reply);
+        plaintext.lost(3);
+        plaintext.finish();
+        assertEquals(
+                "message: \"reply\"\n# [lost: 3 messages could not be kept for the attachment]\n", out.toString());
+    }
+
+    private void assertPrintedOneByOneSameAsAtOnce(final int count) throws IOException {
+        final List<Message> messages = IntStream.range(0, count)
+                .mapToObj(i -> HelloReply.newBuilder().setMessage("reply " + i).build())
+                .collect(Collectors.toList());
+        for (ProtoFormatter formatter : new ProtoFormatter[] {json, compact, text}) {
+            final StringBuilder out = new StringBuilder();
+            final ProtoFormatter.IncrementalPrinter printer = formatter.incrementalPrinter(out);
+            for (Message message : messages) {
+                printer.print(message);
+            }
+            printer.finish();
+            assertEquals(formatter.print(messages), out.toString());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.allure.extensions.config.InProcessGreeter;
+import io.grpc.MethodDescriptor;
+import io.qameta.allure.Feature;
+import io.qameta.allure.test.AllureResults;
+import io.qameta.allure.test.RunUtils;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Overhead of interceptors should be reported to interceptor metrics.
+ */
+@Feature("Interceptor metrics")
+public class InterceptorMetricsTest {
+
+    final HelloRequest request = HelloRequest.newBuilder().setName("Metrics").build();
+
+    @Test
+    public void formattingAndWritingAreReported() {
+        final RecordingMetrics metrics = new RecordingMetrics();
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .interceptorMetrics(metrics)
+                .callMetrics(false)
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            greeter.getGrpcServerEmulator().setStreamRepeats(5);
+            final AllureResults allureResults = RunUtils.runWithinTestContext(
+                    () -> greeter.blockingStub().sayHelloStream(request).forEachRemaining(reply -> {}));
+
+            assertEquals(1, metrics.captured.size());
+            assertEquals(11, (int) metrics.captured.get(0));
+            assertEquals(1, metrics.formatted.get());
+            assertEquals(5, metrics.written.get());
+            assertEquals(
+                    allureResults.getAttachments().values().stream().mapToLong(content -> content.length).sum(),
+                    metrics.writtenBytes.get());
+            assertTrue(metrics.methods.stream().allMatch(GreeterGrpc.getSayHelloStreamMethod()::equals));
+        }
+    }
+
+    @Test
+    public void sampledOutCallsAreReported() {
+        final RecordingMetrics metrics = new RecordingMetrics();
+        final AllureGrpcServerInterceptor interceptor = AllureGrpcServerInterceptor.builder()
+                .interceptorMetrics(metrics)
+                .samplingPolicy(SamplingPolicy.failuresOnly())
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            RunUtils.runWithinTestContext(() -> {
+                greeter.blockingStub().sayHello(request);
+                greeter.blockingStub().sayHello(request);
+            });
+
+            assertEquals(2, metrics.sampledOut.get());
+            assertTrue(metrics.captured.isEmpty());
+        }
+    }
+
+    @Test
+    public void rejectedAttachmentTasksAreReported() throws InterruptedException {
+        final RecordingMetrics metrics = new RecordingMetrics();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        try (AsyncAttachmentWriter writer = new AsyncAttachmentWriter(1, 5_000, metrics)) {
+            writer.submit(() -> {
+                started.countDown();
+                try {
+                    blocked.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            writer.submit(() -> {});
+            final AtomicInteger inline = new AtomicInteger();
+            writer.submit(inline::incrementAndGet);
+
+            assertEquals(1, inline.get());
+            assertEquals(1, metrics.rejected.get());
+            blocked.countDown();
+        }
+    }
+
+    private static final class RecordingMetrics implements InterceptorMetrics {
+        final AtomicInteger sampledOut = new AtomicInteger();
+        final List<Integer> captured = new CopyOnWriteArrayList<>();
+        final AtomicInteger formatted = new AtomicInteger();
+        final AtomicInteger written = new AtomicInteger();
+        final AtomicLong writtenBytes = new AtomicLong();
+        final AtomicInteger rejected = new AtomicInteger();
+        final List<MethodDescriptor<?, ?>> methods = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void callSampledOut(final MethodDescriptor<?, ?> method) {
+            sampledOut.incrementAndGet();
+        }
+
+        @Override
+        public void callCaptured(final MethodDescriptor<?, ?> method, final int messages) {
+            methods.add(method);
+            captured.add(messages);
+        }
+
+        @Override
+        public void payloadsFormatted(final MethodDescriptor<?, ?> method, final long nanos) {
+            methods.add(method);
+            assertTrue(nanos >= 0);
+            formatted.incrementAndGet();
+        }
+
+        @Override
+        public void attachmentWritten(final MethodDescriptor<?, ?> method, final long nanos, final long bytes) {
+            methods.add(method);
+            written.incrementAndGet();
+            writtenBytes.addAndGet(bytes);
+        }
+
+        @Override
+        public void attachmentTaskRejected() {
+            rejected.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.grpc.Metadata;
+import io.qameta.allure.Feature;
+import java.io.IOException;
+import java.util.Base64;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Metadata renderer should merge request headers, response headers and trailers into one json object.
+ */
+@Feature("Metadata")
+public class MetadataRendererTest {
+
+    static final Metadata.Key<String> AUTHORIZATION =
+            Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER);
+    static final Metadata.Key<String> TRACE = Metadata.Key.of("x-trace", Metadata.ASCII_STRING_MARSHALLER);
+    static final Metadata.Key<byte[]> DETAILS = Metadata.Key.of("error-details-bin", Metadata.BINARY_BYTE_MARSHALLER);
+
+    @Test
+    public void sectionsAreMergedAndValuesRedacted() throws IOException {
+        final Metadata request = new Metadata();
+        request.put(AUTHORIZATION, "Bearer secret");
+        request.put(TRACE, "a\"b");
+        final Metadata trailers = new Metadata();
+        trailers.put(TRACE, "one");
+        trailers.put(TRACE, "two");
+
+        final String json = render(MetadataRenderer.getDefault(), request, null, trailers);
+        assertFalse(json.contains("secret"));
+        assertTrue(json.contains("\"authorization\": \"[redacted]\""));
+        assertTrue(json.contains("\"x-trace\": \"a\\\"b\""));
+        assertTrue(json.contains("\"trailers\": {\n    \"x-trace\": [\"one\", \"two\"]\n  }"));
+        assertFalse(json.contains("\"headers\""));
+    }
+
+    @Test
+    public void binaryValuesAreBase64Encoded() throws IOException {
+        for (int length = 0; length < 6; length++) {
+            final byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) bytes[i] = (byte) (0xF0 + i * 7);
+            final Metadata headers = new Metadata();
+            headers.put(DETAILS, bytes);
+
+            final String json = render(MetadataRenderer.redacting(), null, headers, null);
+            assertEquals(
+                    "{\n  \"headers\": {\n    \"error-details-bin\": \""
+                            + Base64.getEncoder().encodeToString(bytes) + "\"\n  }\n}",
+                    json);
+        }
+    }
+
+    @Test
+    public void redactedKeysAreCaseInsensitive() throws IOException {
+        final Metadata headers = new Metadata();
+        headers.put(TRACE, "visible");
+        headers.put(DETAILS, new byte[] {1, 2, 3});
+
+        final String json = render(MetadataRenderer.redacting("X-Trace", "Error-Details-Bin"), null, headers, null);
+        assertFalse(json.contains("visible"));
+        assertTrue(json.contains("\"error-details-bin\": \"[redacted]\""));
+    }
+
+    private static String render(
+            final MetadataRenderer renderer, final Metadata request, final Metadata headers, final Metadata trailers)
+            throws IOException {
+        final StringBuilder out = new StringBuilder();
+        final Utf8Buffer.Chunks chunks = renderer.chunks(request, headers, trailers);
+        while (chunks.render(out)) {
+            // rendering all chunks
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.allure.extensions.config.InProcessGreeter;
+import io.grpc.MethodDescriptor;
+import io.qameta.allure.Feature;
+import io.qameta.allure.model.StepResult;
+import io.qameta.allure.test.AllureResults;
+import io.qameta.allure.test.RunUtils;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Method filter should match methods by name patterns, service names and method types.
+ */
+@Feature("Method filter")
+public class MethodFilterTest {
+
+    final MethodDescriptor<HelloRequest, HelloReply> unary = GreeterGrpc.getSayHelloMethod();
+    final MethodDescriptor<HelloRequest, HelloReply> stream = GreeterGrpc.getSayHelloStreamMethod();
+    final MethodDescriptor<HelloRequest, HelloReply> bidi = GreeterGrpc.getSayHelloBidiStreamMethod();
+
+    @Test
+    public void emptyFilterMatchesEverything() {
+        assertTrue(MethodFilter.all().matches(unary));
+        assertTrue(MethodFilter.builder().build().matches(bidi));
+    }
+
+    @Test
+    public void methodsAreMatchedByExactNameAndWildcard() {
+        final MethodFilter exact = MethodFilter.builder().includeMethods(unary.getFullMethodName()).build();
+        assertTrue(exact.matches(unary));
+        assertFalse(exact.matches(stream));
+
+        final MethodFilter wildcard = MethodFilter.builder()
+                .includeMethods(GreeterGrpc.SERVICE_NAME + "/SayHello*")
+                .excludeMethods("*Bidi*")
+                .build();
+        assertTrue(wildcard.matches(unary));
+        assertTrue(wildcard.matches(stream));
+        assertFalse(wildcard.matches(bidi));
+    }
+
+    @Test
+    public void generatedDescriptorsAreMatchedPastCacheBound() {
+        final MethodFilter filter = MethodFilter.builder().excludeMethods("generated.Service/Skipped*").build();
+        for (int i = 0; i < 3000; i++) {
+            final MethodDescriptor<HelloRequest, HelloReply> generated = unary.toBuilder()
+                    .setFullMethodName("generated.Service/" + (i % 2 == 0 ? "Skipped" : "Kept") + i)
+                    .build();
+            assertEquals(i % 2 != 0, filter.matches(generated));
+        }
+        assertTrue(filter.matches(unary));
+    }
+
+    @Test
+    public void wildcardDoesNotTreatNameAsRegex() {
+        final MethodFilter filter = MethodFilter.builder().includeMethods("com.github.allure.extensions.*").build();
+        assertTrue(filter.matches(unary));
+        final MethodFilter dots = MethodFilter.builder().includeMethods("com?github*").build();
+        assertFalse(dots.matches(unary));
+    }
+
+    @Test
+    public void includeKindsAreCombinedAndExcludesWin() {
+        final MethodFilter filter = MethodFilter.builder()
+                .includeServices(GreeterGrpc.SERVICE_NAME)
+                .includeTypes(MethodDescriptor.MethodType.UNARY, MethodDescriptor.MethodType.SERVER_STREAMING)
+                .excludeTypes(MethodDescriptor.MethodType.SERVER_STREAMING)
+                .build();
+        assertTrue(filter.matches(unary));
+        assertFalse(filter.matches(stream));
+        assertFalse(filter.matches(bidi));
+        assertFalse(MethodFilter.builder()
+                .excludeServices(GreeterGrpc.SERVICE_NAME)
+                .build()
+                .matches(unary));
+    }
+
+    @Test
+    public void excludedCallsAreNotAttached() {
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .protoFormatter(ProtoFormatter.getDefault())
+                .methodFilter(MethodFilter.builder()
+                        .excludeTypes(MethodDescriptor.MethodType.SERVER_STREAMING)
+                        .build())
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            final HelloRequest request = HelloRequest.newBuilder().setName("Filter").build();
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                greeter.blockingStub().sayHelloStream(request).forEachRemaining(reply -> {});
+                greeter.blockingStub().sayHello(request);
+            });
+
+            final List<StepResult> steps = allureResults.getTestResults().get(0).getSteps();
+            assertEquals(1, steps.size());
+            assertEquals("gRPC interaction " + unary.getFullMethodName(), steps.get(0).getName());
+        }
+    }
+}
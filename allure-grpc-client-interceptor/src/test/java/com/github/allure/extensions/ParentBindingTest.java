@@ -0,0 +1,232 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.allure.extensions.config.InProcessGreeter;
+import io.grpc.Context;
+import io.grpc.stub.StreamObserver;
+import io.qameta.allure.Allure;
+import io.qameta.allure.Feature;
+import io.qameta.allure.model.Stage;
+import io.qameta.allure.model.Status;
+import io.qameta.allure.model.StepResult;
+import io.qameta.allure.test.AllureResults;
+import io.qameta.allure.test.RunUtils;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Calls should be attached to the test or step bound to them explicitly, not to whatever is current on the thread
+ * which happens to start or close the call.
+ */
+@Feature("Parent binding")
+public class ParentBindingTest {
+
+    private final HelloRequest request = HelloRequest.newBuilder().setName("Parent").build();
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void startExecutor() throws Exception {
+        // started outside of test context, so its thread does not inherit Allure thread context of the test
+        executor = Executors.newSingleThreadExecutor();
+        executor.submit(() -> {}).get();
+    }
+
+    @AfterEach
+    public void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void callOptionTakesPrecedenceOverCurrentStep() {
+        try (InProcessGreeter greeter = new InProcessGreeter(new AllureGrpcClientInterceptor())) {
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                final String testUuid = Allure.getLifecycle().getCurrentTestCase().orElse(null);
+                Allure.step("outer", () -> greeter.blockingStub()
+                        .withOption(AllureGrpcParent.CALL_OPTION, testUuid)
+                        .sayHello(request));
+            });
+
+            final List<StepResult> steps = allureResults.getTestResults().get(0).getSteps();
+            assertEquals(2, steps.size());
+            assertEquals("outer", steps.get(0).getName());
+            assertTrue(steps.get(0).getSteps().isEmpty());
+            assertEquals("gRPC interaction com.github.allure.extensions.Greeter/SayHello", steps.get(1).getName());
+        }
+    }
+
+    @Test
+    public void callOptionBindsRunningStepOnOtherThread() {
+        try (InProcessGreeter greeter = new InProcessGreeter(new AllureGrpcClientInterceptor())) {
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> Allure.step("outer", () -> {
+                final String stepUuid = Allure.getLifecycle().getCurrentTestCaseOrStep().orElse(null);
+                CompletableFuture.supplyAsync(
+                                () -> greeter.blockingStub()
+                                        .withOption(AllureGrpcParent.CALL_OPTION, stepUuid)
+                                        .sayHello(request),
+                                executor)
+                        .join();
+            }));
+
+            final List<StepResult> steps = allureResults.getTestResults().get(0).getSteps();
+            assertEquals(1, steps.size());
+            assertEquals(1, steps.get(0).getSteps().size());
+            assertEquals(Status.PASSED, steps.get(0).getSteps().get(0).getStatus());
+        }
+    }
+
+    @Test
+    public void stepIsRunningUntilCallIsClosed() {
+        try (InProcessGreeter greeter = new InProcessGreeter(new AllureGrpcClientInterceptor())) {
+            final AtomicReference<StepResult> running = new AtomicReference<>();
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                final CompletableFuture<HelloReply> reply = new CompletableFuture<>();
+                final StreamObserver<HelloRequest> requests =
+                        greeter.asyncStub().sayHelloClientStream(new StreamObserver<HelloReply>() {
+                            @Override
+                            public void onNext(final HelloReply value) {
+                                reply.complete(value);
+                            }
+
+                            @Override
+                            public void onError(final Throwable t) {
+                                reply.completeExceptionally(t);
+                            }
+
+                            @Override
+                            public void onCompleted() {}
+                        });
+                requests.onNext(request);
+                Allure.getLifecycle().updateTestCase(test -> running.set(test.getSteps().get(0)));
+                assertEquals(Stage.RUNNING, running.get().getStage());
+                assertNull(running.get().getStop());
+                assertNull(running.get().getStatus());
+                requests.onCompleted();
+                reply.join();
+            });
+
+            final StepResult step = allureResults.getTestResults().get(0).getSteps().get(0);
+            assertEquals(Stage.FINISHED, step.getStage());
+            assertEquals(Status.PASSED, step.getStatus());
+            assertTrue(step.getStop() >= step.getStart());
+        }
+    }
+
+    @Test
+    public void threadContextIsKeptByCallsClosedOnTestThread() {
+        try (InProcessGreeter greeter = new InProcessGreeter(new AllureGrpcClientInterceptor())) {
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                Allure.step("outer", () -> greeter.blockingStub().sayHello(request));
+                Allure.step("after");
+            });
+
+            final List<StepResult> steps = allureResults.getTestResults().get(0).getSteps();
+            assertEquals(2, steps.size());
+            assertEquals("outer", steps.get(0).getName());
+            assertEquals(1, steps.get(0).getSteps().size());
+            assertEquals(Stage.FINISHED, steps.get(0).getSteps().get(0).getStage());
+            assertEquals("after", steps.get(1).getName());
+        }
+    }
+
+    @Test
+    public void contextCarriesTestToOtherThreads() {
+        try (InProcessGreeter greeter = new InProcessGreeter(new AllureGrpcClientInterceptor())) {
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                final Context context = AllureGrpcParent.current();
+                CompletableFuture.supplyAsync(
+                                () -> greeter.blockingStub().sayHello(request),
+                                context.fixedContextExecutor(executor))
+                        .join();
+                CompletableFuture.supplyAsync(() -> greeter.blockingStub().sayHello(request), executor)
+                        .join();
+            });
+
+            final List<StepResult> steps = allureResults.getTestResults().get(0).getSteps();
+            assertEquals(1, steps.size());
+            assertEquals(Status.PASSED, steps.get(0).getStatus());
+        }
+    }
+
+    @Test
+    public void overlappingAsyncCallsAreSiblings() {
+        try (InProcessGreeter greeter = InProcessGreeter.withExecutors(new AllureGrpcClientInterceptor())) {
+            final Replies replies = new Replies();
+            final AtomicReference<String> currentAfterStart = new AtomicReference<>();
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                greeter.asyncStub().sayHello(request, replies);
+                greeter.asyncStub().sayHello(request, replies);
+                currentAfterStart.set(Allure.getLifecycle().getCurrentTestCaseOrStep().orElse(null));
+                replies.await();
+            });
+
+            assertEquals(allureResults.getTestResults().get(0).getUuid(), currentAfterStart.get());
+            final List<StepResult> steps = allureResults.getTestResults().get(0).getSteps();
+            assertEquals(2, steps.size());
+            for (StepResult step : steps) {
+                assertTrue(step.getSteps().isEmpty());
+                assertEquals(Status.PASSED, step.getStatus());
+            }
+        }
+    }
+
+    /**
+     * Observer of two calls
+     */
+    private static final class Replies implements StreamObserver<HelloReply> {
+        private final CountDownLatch completed = new CountDownLatch(2);
+
+        @Override
+        public void onNext(final HelloReply value) {}
+
+        @Override
+        public void onError(final Throwable t) {}
+
+        @Override
+        public void onCompleted() {
+            completed.countDown();
+        }
+
+        void await() {
+            try {
+                assertTrue(completed.await(10, TimeUnit.SECONDS), "calls are closed");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
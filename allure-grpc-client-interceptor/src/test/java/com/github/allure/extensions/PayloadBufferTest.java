@@ -0,0 +1,111 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.protobuf.Message;
+import io.qameta.allure.Feature;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Payload buffer should keep head and tail in memory and spill the middle keeping arrival order.
+ */
+@Feature("Payload buffer")
+public class PayloadBufferTest {
+
+    @TempDir
+    Path directory;
+
+    final List<Message> messages = IntStream.range(0, 10)
+            .mapToObj(i -> HelloReply.newBuilder().setMessage("reply " + i).build())
+            .collect(Collectors.toList());
+
+    @Test
+    public void shortStreamIsKeptInMemory() throws IOException {
+        final PayloadBuffer buffer = new PayloadBuffer(5, 5, directory, ProtoFormatter.getDefault(), false);
+        messages.forEach(buffer::add);
+        assertFalse(buffer.isSpilled());
+        assertEquals(messages, buffer.messages());
+        assertEquals(0, Files.list(directory).count());
+    }
+
+    @Test
+    public void middleOfLongStreamIsSpilledInOrder() throws IOException {
+        final PayloadBuffer buffer = new PayloadBuffer(2, 3, directory, ProtoFormatter.getDefault(), false);
+        messages.forEach(buffer::add);
+        assertTrue(buffer.isSpilled());
+        assertEquals(10, buffer.size());
+        assertEquals(1, Files.list(directory).count());
+
+        final List<Message> read = new ArrayList<>();
+        buffer.forEach((message, time) -> read.add(message));
+        assertEquals(messages, read);
+
+        buffer.close();
+        assertEquals(0, Files.list(directory).count());
+    }
+
+    @Test
+    public void everythingIsSpilledWithoutHeadAndTail() throws IOException {
+        final PayloadBuffer buffer = new PayloadBuffer(0, 0, directory, ProtoFormatter.getDefault(), false);
+        messages.forEach(buffer::add);
+
+        final List<Message> read = new ArrayList<>();
+        buffer.forEach((message, time) -> read.add(message));
+        assertEquals(messages, read);
+        buffer.close();
+    }
+
+    @Test
+    public void timestampsAreKeptInMemoryAndSpilled() throws IOException {
+        final long before = System.currentTimeMillis();
+        final PayloadBuffer buffer = new PayloadBuffer(3, 3, directory, ProtoFormatter.getDefault(), true);
+        messages.forEach(buffer::add);
+        final long after = System.currentTimeMillis();
+
+        final List<Message> read = new ArrayList<>();
+        final List<Long> times = new ArrayList<>();
+        buffer.forEach((message, time) -> {
+            read.add(message);
+            times.add(time);
+        });
+        assertEquals(messages, read);
+        for (int i = 0; i < times.size(); i++) {
+            assertTrue(times.get(i) >= before && times.get(i) <= after, "timestamp of message " + i);
+            assertTrue(i == 0 || times.get(i) >= times.get(i - 1), "timestamps in arrival order");
+        }
+        buffer.close();
+    }
+}
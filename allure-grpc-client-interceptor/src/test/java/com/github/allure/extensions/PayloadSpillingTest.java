@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static com.github.allure.extensions.AllureResultsUtils.attachmentContent;
+import static com.github.allure.extensions.AllureResultsUtils.firstStep;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.github.allure.extensions.config.InProcessGreeter;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.google.protobuf.Message;
+import io.qameta.allure.model.StepResult;
+import io.qameta.allure.test.AllureResults;
+import io.qameta.allure.test.RunUtils;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Responses spilled or incrementally formatted to temporary file should be attached same as responses kept in memory.
+ */
+public class PayloadSpillingTest {
+
+    final HelloRequest request = HelloRequest.newBuilder().setName("Stream").build();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void spilledResponsesAreAttachedInOrder() throws IOException {
+        final ProtoFormatter formatter = ProtoFormatter.builder().build();
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .protoFormatter(formatter)
+                .payloadBufferPolicy(PayloadBufferPolicy.headTail(3, 3, directory))
+                .messageTimestamps(false)
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            greeter.getGrpcServerEmulator().setStreamRepeats(50);
+            final List<Message> replies = new ArrayList<>();
+            final AllureResults allureResults = RunUtils.runWithinTestContext(
+                    () -> greeter.blockingStub().sayHelloStream(request).forEachRemaining(replies::add));
+
+            assertEquals(100, replies.size());
+            assertEquals(
+                    formatter.print(replies),
+                    attachmentContent(allureResults, firstStep(allureResults), "gRPC responses"));
+            assertEquals(0, Files.list(directory).count());
+        }
+    }
+
+    @Test
+    public void responsesLostToFailedSpillAreMarked() {
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .payloadBufferPolicy(PayloadBufferPolicy.headTail(2, 2, directory.resolve("missing")))
+                .messageTimestamps(false)
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            greeter.getGrpcServerEmulator().setStreamRepeats(50);
+            final AllureResults allureResults = RunUtils.runWithinTestContext(
+                    () -> greeter.blockingStub().sayHelloStream(request).forEachRemaining(reply -> {}));
+
+            final JsonArray responses = JsonParser.parseString(
+                            attachmentContent(allureResults, firstStep(allureResults), "gRPC responses"))
+                    .getAsJsonArray();
+            assertEquals(5, responses.size());
+            assertEquals(
+                    "[lost: 96 messages could not be kept for the attachment]",
+                    responses.get(2).getAsString());
+        }
+    }
+
+    @Test
+    public void responsesLostToFailedIncrementalFormattingAreMarked() {
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .payloadBufferPolicy(PayloadBufferPolicy.incremental(directory.resolve("missing")))
+                .messageTimestamps(false)
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            greeter.getGrpcServerEmulator().setStreamRepeats(50);
+            final AllureResults allureResults = RunUtils.runWithinTestContext(
+                    () -> greeter.blockingStub().sayHelloStream(request).forEachRemaining(reply -> {}));
+
+            final JsonArray responses = JsonParser.parseString(
+                            attachmentContent(allureResults, firstStep(allureResults), "gRPC responses"))
+                    .getAsJsonArray();
+            assertEquals(1, responses.size());
+            assertEquals(
+                    "[lost: 100 messages could not be kept for the attachment]",
+                    responses.get(0).getAsString());
+        }
+    }
+
+    @Test
+    public void incrementallyFormattedResponsesAreAttached() throws IOException {
+        final ProtoFormatter formatter = ProtoFormatter.builder().build();
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .protoFormatter(formatter)
+                .payloadBufferPolicy(PayloadBufferPolicy.incremental(directory))
+                .messageTimestamps(false)
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            greeter.getGrpcServerEmulator().setStreamRepeats(50);
+            final List<Message> replies = new ArrayList<>();
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                greeter.blockingStub().sayHelloStream(request).forEachRemaining(replies::add);
+                greeter.blockingStub().sayHello(request);
+            });
+
+            final StepResult streamStep = allureResults.getTestResults().get(0).getSteps().get(0);
+            final StepResult unaryStep = allureResults.getTestResults().get(0).getSteps().get(1);
+            assertEquals(formatter.print(replies), attachmentContent(allureResults, streamStep, "gRPC responses"));
+            assertEquals(
+                    "{\n  \"message\": \"Hi Stream\"\n}",
+                    attachmentContent(allureResults, unaryStep, "gRPC responses"));
+            assertEquals(0, Files.list(directory).count());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static com.github.allure.extensions.AllureResultsUtils.attachmentContent;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.allure.extensions.config.InProcessGreeter;
+import io.grpc.MethodDescriptor;
+import io.grpc.StatusRuntimeException;
+import io.qameta.allure.Feature;
+import io.qameta.allure.model.Status;
+import io.qameta.allure.model.StepResult;
+import io.qameta.allure.test.AllureResults;
+import io.qameta.allure.test.RunUtils;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Sampling policy should decide which calls are attached while failures of other calls are still recorded.
+ */
+@Feature("Sampling")
+public class SamplingTest {
+
+    final HelloRequest request = HelloRequest.newBuilder().setName("Sampling").build();
+    final MethodDescriptor<HelloRequest, HelloReply> unary = GreeterGrpc.getSayHelloMethod();
+    final MethodDescriptor<HelloRequest, HelloReply> stream = GreeterGrpc.getSayHelloStreamMethod();
+
+    @Test
+    public void everyNthCallIsSampled() {
+        final SamplingPolicy policy = SamplingPolicy.everyNth(3);
+        assertEquals(4, IntStream.range(0, 10).filter(i -> policy.isSampled(unary)).count());
+        assertThrows(IllegalArgumentException.class, () -> SamplingPolicy.everyNth(0));
+    }
+
+    @Test
+    public void rateBoundsAreExact() {
+        assertTrue(IntStream.range(0, 100).allMatch(i -> SamplingPolicy.rate(1).isSampled(unary)));
+        assertTrue(IntStream.range(0, 100).noneMatch(i -> SamplingPolicy.rate(0).isSampled(unary)));
+        assertThrows(IllegalArgumentException.class, () -> SamplingPolicy.rate(1.5));
+        assertThrows(IllegalArgumentException.class, () -> SamplingPolicy.rate(Double.NaN));
+    }
+
+    @Test
+    public void perMethodPolicyPrefersFullMethodName() {
+        final SamplingPolicy byMethod = SamplingPolicy.perMethod(
+                Collections.singletonMap(unary.getFullMethodName(), SamplingPolicy.always()),
+                SamplingPolicy.failuresOnly());
+        assertTrue(byMethod.isSampled(unary));
+        assertFalse(byMethod.isSampled(stream));
+
+        final SamplingPolicy byService = SamplingPolicy.perMethod(
+                Collections.singletonMap(GreeterGrpc.SERVICE_NAME, SamplingPolicy.failuresOnly()),
+                SamplingPolicy.always());
+        assertFalse(byService.isSampled(unary));
+        assertFalse(byService.isSampled(stream));
+    }
+
+    @Test
+    public void notSampledCallsAreNotAttached() {
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .protoFormatter(ProtoFormatter.getDefault())
+                .samplingPolicy(SamplingPolicy.everyNth(3))
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                for (int i = 0; i < 6; i++) {
+                    greeter.blockingStub().sayHello(request);
+                }
+            });
+
+            final List<StepResult> steps = allureResults.getTestResults().get(0).getSteps();
+            assertEquals(2, steps.size());
+            assertEquals(
+                    "{\n  \"message\": \"Hi Sampling\"\n}",
+                    attachmentContent(allureResults, steps.get(1), "gRPC responses"));
+        }
+    }
+
+    @Test
+    public void failuresOfNotSampledCallsAreRecorded() {
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .protoFormatter(ProtoFormatter.getDefault())
+                .samplingPolicy(SamplingPolicy.failuresOnly())
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                greeter.blockingStub().sayHello(request);
+                greeter.getGrpcServerEmulator().setReturnError(true);
+                assertThrows(StatusRuntimeException.class, () -> greeter.blockingStub().sayHello(request));
+            });
+
+            final List<StepResult> steps = allureResults.getTestResults().get(0).getSteps();
+            assertEquals(1, steps.size());
+            final StepResult step = steps.get(0);
+            assertEquals(Status.FAILED, step.getStatus());
+            assertTrue(attachmentContent(allureResults, step, "gRPC status").contains("UNKNOWN"));
+            assertTrue(step.getAttachments().stream().anyMatch(x -> x.getName().equals("gRPC method")));
+            assertTrue(step.getAttachments().stream().noneMatch(x -> x.getName().equals("gRPC request")));
+        }
+    }
+
+    @Test
+    public void failureOfNotSampledCaptureIsRecordedOnce() {
+        final InterceptorOptions options = new CaptureOptions()
+                .protoFormatter(ProtoFormatter.getDefault())
+                .samplingPolicy(SamplingPolicy.failuresOnly())
+                .options();
+        final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+            final CallCapture capture = CallCapture.start(options, unary);
+            capture.close(io.grpc.Status.UNAVAILABLE);
+            capture.close(io.grpc.Status.UNAVAILABLE);
+            capture.cancel();
+        });
+
+        final List<StepResult> steps = allureResults.getTestResults().get(0).getSteps();
+        assertEquals(1, steps.size());
+        assertEquals(Status.FAILED, steps.get(0).getStatus());
+        assertTrue(attachmentContent(allureResults, steps.get(0), "gRPC status").contains("UNAVAILABLE"));
+    }
+
+    /**
+     * Options of call captures, as built by capture builders of other modules
+     */
+    private static final class CaptureOptions extends InterceptorOptions.Builder<CaptureOptions> {}
+}
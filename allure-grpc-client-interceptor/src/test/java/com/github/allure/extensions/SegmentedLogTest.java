@@ -0,0 +1,80 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.qameta.allure.Feature;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Segmented log should keep frames readable in any order across segments and delete its files on close.
+ */
+@Feature("Payload buffer")
+public class SegmentedLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void framesAreReadAcrossSegments() throws IOException {
+        final SegmentedLog log = new SegmentedLog(directory, 64);
+        for (int i = 0; i < 100; i++) {
+            log.append(HelloReply.newBuilder().setMessage("reply " + i).build(), 1000L + i);
+        }
+        assertEquals(100, log.size());
+        assertTrue(Files.list(directory).count() > 1);
+
+        for (int i = 99; i >= 0; i -= 7) {
+            assertEquals("reply " + i, ((HelloReply) log.message(i, HelloReply.parser())).getMessage());
+            assertEquals(1000L + i, log.timestamp(i));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> log.timestamp(100));
+
+        log.close();
+        assertEquals(0, Files.list(directory).count());
+    }
+
+    @Test
+    public void frameLargerThanSegmentGetsOwnSegment() throws IOException {
+        final SegmentedLog log = new SegmentedLog(directory, 64);
+        final StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 1000; i++) large.append('x');
+        log.append(HelloReply.newBuilder().setMessage("small").build(), 1);
+        log.append(HelloReply.newBuilder().setMessage(large.toString()).build(), 2);
+        log.append(HelloReply.newBuilder().setMessage("after").build(), 3);
+
+        assertEquals(3, Files.list(directory).count());
+        assertEquals(large.toString(), ((HelloReply) log.message(1, HelloReply.parser())).getMessage());
+        assertEquals("after", ((HelloReply) log.message(2, HelloReply.parser())).getMessage());
+        assertEquals(3, log.timestamp(2));
+        log.close();
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static com.github.allure.extensions.AllureResultsUtils.attachmentContent;
+import static com.github.allure.extensions.AllureResultsUtils.firstStep;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.allure.extensions.config.InProcessGreeter;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import io.qameta.allure.Feature;
+import io.qameta.allure.model.Attachment;
+import io.qameta.allure.model.Status;
+import io.qameta.allure.model.StepResult;
+import io.qameta.allure.test.AllureResults;
+import io.qameta.allure.test.RunUtils;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Server interceptor should attach inbound requests, outbound responses, headers and status of each call.
+ */
+@Feature("Server interceptor")
+public class ServerInterceptorTest {
+
+    final HelloRequest request = HelloRequest.newBuilder().setName("Server").build();
+
+    @Test
+    public void unaryCallIsAttached() {
+        try (InProcessGreeter greeter = new InProcessGreeter(new AllureGrpcServerInterceptor())) {
+            final AllureResults allureResults =
+                    RunUtils.runWithinTestContext(() -> greeter.blockingStub().sayHello(request));
+
+            final StepResult step = firstStep(allureResults);
+            assertEquals("gRPC server interaction com.github.allure.extensions.Greeter/SayHello", step.getName());
+            assertEquals(Status.PASSED, step.getStatus());
+            assertTrue(step.getStart() <= step.getStop());
+            assertEquals(
+                    Arrays.asList("gRPC method", "gRPC metadata", "gRPC request", "gRPC responses", "gRPC status"),
+                    step.getAttachments().stream().map(Attachment::getName).collect(Collectors.toList()));
+            final String metadata = attachmentContent(allureResults, step, "gRPC metadata");
+            assertTrue(metadata.contains("\"request\": {"));
+            assertTrue(metadata.contains("\"trailers\": {"));
+            assertTrue(attachmentContent(allureResults, step, "gRPC request").contains("\"name\": \"Server\""));
+            assertTrue(attachmentContent(allureResults, step, "gRPC responses").contains("Hi Server"));
+        }
+    }
+
+    @Test
+    public void bidiStreamingCallIsAttached() throws InterruptedException {
+        try (InProcessGreeter greeter = new InProcessGreeter(AllureGrpcServerInterceptor.builder()
+                .messageTimestamps(false)
+                .build())) {
+            final CountDownLatch completed = new CountDownLatch(1);
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                final StreamObserver<HelloRequest> requests =
+                        greeter.asyncStub().sayHelloBidiStream(new StreamObserver<HelloReply>() {
+                            @Override
+                            public void onNext(HelloReply value) {}
+
+                            @Override
+                            public void onError(Throwable t) {}
+
+                            @Override
+                            public void onCompleted() {
+                                completed.countDown();
+                            }
+                        });
+                for (int i = 0; i < 10; i++) {
+                    requests.onNext(HelloRequest.newBuilder().setName("n" + i).build());
+                }
+                requests.onCompleted();
+            });
+            assertTrue(completed.await(10, TimeUnit.SECONDS));
+
+            final StepResult step = firstStep(allureResults);
+            final String responses = attachmentContent(allureResults, step, "gRPC responses");
+            assertEquals(11, responses.split("\"message\"", -1).length);
+            assertTrue(attachmentContent(allureResults, step, "gRPC requests").contains("n9"));
+        }
+    }
+
+    @Test
+    public void failedCallIsMarkedFailed() {
+        try (InProcessGreeter greeter = new InProcessGreeter(new AllureGrpcServerInterceptor())) {
+            greeter.getGrpcServerEmulator().setReturnError(true);
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                try {
+                    greeter.blockingStub().sayHello(request);
+                } catch (StatusRuntimeException ignored) {
+                    // expected
+                }
+            });
+
+            final StepResult step = firstStep(allureResults);
+            assertEquals(Status.FAILED, step.getStatus());
+            assertTrue(attachmentContent(allureResults, step, "gRPC status").contains("UNKNOWN"));
+        }
+    }
+
+    @Test
+    public void serverStepIsNestedIntoClientStep() {
+        final AllureGrpcClientInterceptor clientInterceptor =
+                AllureGrpcClientInterceptor.builder().messageTimestamps(false).build();
+        final AllureGrpcServerInterceptor serverInterceptor =
+                AllureGrpcServerInterceptor.builder().messageTimestamps(false).build();
+        try (InProcessGreeter greeter = new InProcessGreeter(serverInterceptor, clientInterceptor)) {
+            greeter.getGrpcServerEmulator().setStreamRepeats(3);
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                final Iterator<HelloReply> replies = greeter.blockingStub().sayHelloStream(request);
+                replies.forEachRemaining(reply -> {});
+            });
+
+            final StepResult clientStep = firstStep(allureResults);
+            assertEquals("gRPC interaction com.github.allure.extensions.Greeter/SayHelloStream", clientStep.getName());
+            final List<String> nested =
+                    clientStep.getSteps().stream().map(StepResult::getName).collect(Collectors.toList());
+            assertEquals(
+                    Collections.singletonList(
+                            "gRPC server interaction com.github.allure.extensions.Greeter/SayHelloStream"),
+                    nested);
+            assertEquals(
+                    attachmentContent(allureResults, clientStep, "gRPC responses"),
+                    attachmentContent(allureResults, clientStep.getSteps().get(0), "gRPC responses"));
+        }
+    }
+
+    @Test
+    public void unsampledCallsRecordOnlyFailures() {
+        final AllureGrpcServerInterceptor interceptor = AllureGrpcServerInterceptor.builder()
+                .samplingPolicy(SamplingPolicy.failuresOnly())
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            final AllureResults passed =
+                    RunUtils.runWithinTestContext(() -> greeter.blockingStub().sayHello(request));
+            assertTrue(passed.getTestResults().get(0).getSteps().isEmpty());
+
+            greeter.getGrpcServerEmulator().setReturnError(true);
+            final AllureResults failed = RunUtils.runWithinTestContext(() -> {
+                try {
+                    greeter.blockingStub().sayHello(request);
+                } catch (StatusRuntimeException ignored) {
+                    // expected
+                }
+            });
+            assertEquals(Status.FAILED, firstStep(failed).getStatus());
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static com.github.allure.extensions.AllureResultsUtils.attachmentContent;
+import static com.github.allure.extensions.AllureResultsUtils.firstStep;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.allure.extensions.config.InProcessGreeter;
+import io.grpc.stub.StreamObserver;
+import io.qameta.allure.Feature;
+import io.qameta.allure.model.Status;
+import io.qameta.allure.model.StepResult;
+import io.qameta.allure.test.AllureResults;
+import io.qameta.allure.test.RunUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Client streaming and bidi streaming calls should be attached as one step with messages of both directions.
+ */
+@Feature("Streaming calls")
+public class StreamingCallsTest {
+
+    private static final String TIMESTAMP = "\"@timestamp\": \"";
+
+    @Test
+    public void clientStreamingCallIsOneStep() {
+        final AllureGrpcClientInterceptor interceptor = new AllureGrpcClientInterceptor(ProtoFormatter.getDefault());
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                final Replies replies = new Replies();
+                final StreamObserver<HelloRequest> requests = greeter.asyncStub().sayHelloClientStream(replies);
+                send(requests, 3);
+                replies.await();
+                assertEquals(1, replies.messages.size());
+            });
+
+            final StepResult step = firstStep(allureResults);
+            assertEquals(1, allureResults.getTestResults().get(0).getSteps().size());
+            assertEquals(Status.PASSED, step.getStatus());
+            final String requests = attachmentContent(allureResults, step, "gRPC requests");
+            assertEquals(3, count(requests, TIMESTAMP));
+            assertTrue(requests.contains("\"name\": \"user 2\""));
+            assertEquals(
+                    "{\n  \"message\": \"Hi user 0, user 1, user 2\"\n}",
+                    attachmentContent(allureResults, step, "gRPC responses"));
+        }
+    }
+
+    @Test
+    public void bidiStreamingCallIsOneStep() {
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .protoFormatter(ProtoFormatter.getDefault())
+                .payloadBufferPolicy(PayloadBufferPolicy.headTail(10, 10))
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                final Replies replies = new Replies();
+                final StreamObserver<HelloRequest> requests = greeter.asyncStub().sayHelloBidiStream(replies);
+                send(requests, 1000);
+                replies.await();
+                assertEquals(1000, replies.messages.size());
+            });
+
+            assertEquals(1, allureResults.getTestResults().get(0).getSteps().size());
+            final StepResult step = firstStep(allureResults);
+            final String requests = attachmentContent(allureResults, step, "gRPC requests");
+            final String responses = attachmentContent(allureResults, step, "gRPC responses");
+            assertEquals(1000, count(requests, TIMESTAMP));
+            assertEquals(1000, count(responses, TIMESTAMP));
+            assertTrue(responses.indexOf("Hi user 0\"") < responses.indexOf("Hi user 999\""));
+        }
+    }
+
+    @Test
+    public void timestampsAreCommentsOfTextFormat() {
+        final ProtoFormatter formatter = ProtoFormatter.builder().formatToJson(false).build();
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .protoFormatter(formatter)
+                .payloadBufferPolicy(PayloadBufferPolicy.incremental())
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                final Replies replies = new Replies();
+                send(greeter.asyncStub().sayHelloBidiStream(replies), 2);
+                replies.await();
+            });
+
+            final String responses = attachmentContent(allureResults, firstStep(allureResults), "gRPC responses");
+            assertEquals(2, Arrays.stream(responses.split("\n")).filter(x -> x.startsWith("# ")).count());
+            assertTrue(responses.contains("message: \"Hi user 1\""));
+        }
+    }
+
+    @Test
+    public void timestampsCanBeDisabled() {
+        final AllureGrpcClientInterceptor interceptor = AllureGrpcClientInterceptor.builder()
+                .protoFormatter(ProtoFormatter.getDefault())
+                .messageTimestamps(false)
+                .build();
+        try (InProcessGreeter greeter = new InProcessGreeter(interceptor)) {
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> {
+                final Replies replies = new Replies();
+                send(greeter.asyncStub().sayHelloBidiStream(replies), 2);
+                replies.await();
+            });
+
+            final StepResult step = firstStep(allureResults);
+            assertFalse(attachmentContent(allureResults, step, "gRPC requests").contains(TIMESTAMP));
+            assertFalse(attachmentContent(allureResults, step, "gRPC responses").contains(TIMESTAMP));
+        }
+    }
+
+    private static void send(final StreamObserver<HelloRequest> requests, final int count) {
+        for (int i = 0; i < count; i++) {
+            requests.onNext(HelloRequest.newBuilder().setName("user " + i).build());
+        }
+        requests.onCompleted();
+    }
+
+    private static int count(final String text, final String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static class Replies implements StreamObserver<HelloReply> {
+        private final List<HelloReply> messages = new ArrayList<>();
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public void onNext(HelloReply reply) {
+            messages.add(reply);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            closed.countDown();
+        }
+
+        @Override
+        public void onCompleted() {
+            closed.countDown();
+        }
+
+        void await() {
+            try {
+                assertTrue(closed.await(10, TimeUnit.SECONDS), "call is closed");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
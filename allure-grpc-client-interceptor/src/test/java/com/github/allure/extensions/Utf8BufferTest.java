@@ -0,0 +1,127 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import io.qameta.allure.Feature;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import org.junit.jupiter.api.Test;
+
+/**
+ * UTF-8 buffer should encode like String#getBytes and be reused by its thread.
+ */
+@Feature("Utf8 buffer")
+public class Utf8BufferTest {
+
+    @Test
+    public void encodingSameAsString() throws IOException {
+        for (String value : Arrays.asList(
+                "",
+                "ascii",
+                "\u00FC and \u20AC",
+                "emoji \uD83D\uDE00 pair",
+                "lone \uD83D high",
+                "lone \uDE00 low",
+                "end \uD83D")) {
+            final Utf8Buffer buffer = Utf8Buffer.acquire();
+            try {
+                buffer.append(value);
+                assertArrayEquals(value.getBytes(StandardCharsets.UTF_8), read(buffer), value);
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+
+    @Test
+    public void surrogatePairSplitBetweenAppends() throws IOException {
+        final String value = "a\uD83D\uDE00b";
+        final Utf8Buffer buffer = Utf8Buffer.acquire();
+        try {
+            buffer.append(value, 0, 2).append(value.charAt(2)).append(value, 3, 4);
+            assertArrayEquals(value.getBytes(StandardCharsets.UTF_8), read(buffer));
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    public void chunksAreRenderedWhileStreamIsRead() throws IOException {
+        final Iterator<String> chunks = Arrays.asList("first ", "", "\uD83D", "\uDE00 last").iterator();
+        final Utf8Buffer buffer = Utf8Buffer.acquire();
+        try {
+            buffer.append("ahead ");
+            final Utf8Buffer.ChunkedStream stream = buffer.inputStream(out -> {
+                if (!chunks.hasNext()) return false;
+                out.append(chunks.next());
+                return true;
+            });
+            final byte[] expected = "ahead first \uD83D\uDE00 last".getBytes(StandardCharsets.UTF_8);
+            final ByteArrayOutputStream read = new ByteArrayOutputStream();
+            final byte[] chunk = new byte[3];
+            for (int count = stream.read(chunk, 0, chunk.length); count >= 0; count = stream.read(chunk)) {
+                read.write(chunk, 0, count);
+            }
+            assertArrayEquals(expected, read.toByteArray());
+            assertEquals(expected.length, stream.size());
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    public void bufferIsReusedByItsThread() {
+        final Utf8Buffer buffer = Utf8Buffer.acquire();
+        final Utf8Buffer nested = Utf8Buffer.acquire();
+        nested.release();
+        buffer.append("content");
+        buffer.release();
+
+        final Utf8Buffer reused = Utf8Buffer.acquire();
+        reused.release();
+        assertNotSame(buffer, nested);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.size());
+    }
+
+    private static byte[] read(final Utf8Buffer buffer) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = buffer.inputStream()) {
+            for (int b = in.read(); b != -1; b = in.read()) {
+                bytes.write(b);
+            }
+        }
+        assertEquals(buffer.size(), bytes.size());
+        return bytes.toByteArray();
+    }
+}
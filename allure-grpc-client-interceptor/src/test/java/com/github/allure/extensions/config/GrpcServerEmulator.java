@@ -27,6 +27,8 @@ import com.github.allure.extensions.GreeterGrpc;
 import com.github.allure.extensions.HelloReply;
 import com.github.allure.extensions.HelloRequest;
 import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.List;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import net.devh.boot.grpc.server.service.GrpcService;
@@ -41,6 +43,9 @@ public class GrpcServerEmulator extends GreeterGrpc.GreeterImplBase {
     @Setter
     private boolean returnError = false;
 
+    @Setter
+    private int streamRepeats = 1;
+
     @Override
     public void sayHello(HelloRequest request, StreamObserver<HelloReply> responseObserver) {
         if (returnError) {
@@ -61,13 +66,57 @@ public class GrpcServerEmulator extends GreeterGrpc.GreeterImplBase {
                     .build());
             responseObserver.onError(new RuntimeException("something wrong"));
         } else {
-            responseObserver.onNext(HelloReply.newBuilder()
-                    .setMessage("Hi " + request.getName())
-                    .build());
-            responseObserver.onNext(HelloReply.newBuilder()
-                    .setMessage("And again Hi " + request.getName())
-                    .build());
+            for (int i = 0; i < streamRepeats; i++) {
+                responseObserver.onNext(HelloReply.newBuilder()
+                        .setMessage("Hi " + request.getName())
+                        .build());
+                responseObserver.onNext(HelloReply.newBuilder()
+                        .setMessage("And again Hi " + request.getName())
+                        .build());
+            }
         }
         responseObserver.onCompleted();
     }
+
+    @Override
+    public StreamObserver<HelloRequest> sayHelloClientStream(StreamObserver<HelloReply> responseObserver) {
+        final List<String> names = new ArrayList<>();
+        return new StreamObserver<HelloRequest>() {
+            @Override
+            public void onNext(HelloRequest request) {
+                names.add(request.getName());
+            }
+
+            @Override
+            public void onError(Throwable t) {}
+
+            @Override
+            public void onCompleted() {
+                responseObserver.onNext(HelloReply.newBuilder()
+                        .setMessage("Hi " + String.join(", ", names))
+                        .build());
+                responseObserver.onCompleted();
+            }
+        };
+    }
+
+    @Override
+    public StreamObserver<HelloRequest> sayHelloBidiStream(StreamObserver<HelloReply> responseObserver) {
+        return new StreamObserver<HelloRequest>() {
+            @Override
+            public void onNext(HelloRequest request) {
+                responseObserver.onNext(HelloReply.newBuilder()
+                        .setMessage("Hi " + request.getName())
+                        .build());
+            }
+
+            @Override
+            public void onError(Throwable t) {}
+
+            @Override
+            public void onCompleted() {
+                responseObserver.onCompleted();
+            }
+        };
+    }
 }
@@ -0,0 +1,101 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions.config;
+
+import com.github.allure.extensions.GreeterGrpc;
+import io.grpc.ClientInterceptor;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.UUID;
+import lombok.Getter;
+
+/**
+ * In-process Greeter server with client channel or server intercepted by interceptors under test, for tests without
+ * Spring.
+ */
+public class InProcessGreeter implements AutoCloseable {
+
+    @Getter
+    private final GrpcServerEmulator grpcServerEmulator = new GrpcServerEmulator();
+
+    private final Server server;
+    private final ManagedChannel channel;
+
+    public InProcessGreeter(final ClientInterceptor... interceptors) {
+        this((ServerInterceptor) null, interceptors);
+    }
+
+    public InProcessGreeter(final ServerInterceptor serverInterceptor, final ClientInterceptor... interceptors) {
+        this(true, serverInterceptor, interceptors);
+    }
+
+    private InProcessGreeter(
+            final boolean directExecutor,
+            final ServerInterceptor serverInterceptor,
+            final ClientInterceptor... interceptors) {
+        final String name = "in-process-greeter-" + UUID.randomUUID();
+        final ServerServiceDefinition service = serverInterceptor == null
+                ? grpcServerEmulator.bindService()
+                : ServerInterceptors.intercept(grpcServerEmulator, serverInterceptor);
+        try {
+            final InProcessServerBuilder serverBuilder = InProcessServerBuilder.forName(name);
+            if (directExecutor) serverBuilder.directExecutor();
+            this.server = serverBuilder.addService(service).build().start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final InProcessChannelBuilder channelBuilder = InProcessChannelBuilder.forName(name);
+        if (directExecutor) channelBuilder.directExecutor();
+        this.channel = channelBuilder.intercept(interceptors).build();
+    }
+
+    /**
+     * @param interceptors client interceptors under test
+     * @return greeter running server handlers and client callbacks on shared executors instead of calling threads
+     */
+    public static InProcessGreeter withExecutors(final ClientInterceptor... interceptors) {
+        return new InProcessGreeter(false, null, interceptors);
+    }
+
+    public GreeterGrpc.GreeterBlockingStub blockingStub() {
+        return GreeterGrpc.newBlockingStub(channel);
+    }
+
+    public GreeterGrpc.GreeterStub asyncStub() {
+        return GreeterGrpc.newStub(channel);
+    }
+
+    @Override
+    public void close() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions.format;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.github.allure.extensions.HelloReply;
+import com.github.allure.extensions.ProtoFormatter;
+import com.google.protobuf.Message;
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This test should check formatter instances built with different options and shared between threads.
+ */
+@Feature("Formatter")
+public class ProtoFormatterInstanceTest {
+
+    final HelloReply message = HelloReply.newBuilder().setMessage("test").build();
+    final List<Message> messageList = Stream.of(
+                    HelloReply.newBuilder().setMessage("test1").build(),
+                    HelloReply.newBuilder().setMessage("test2").build())
+            .collect(Collectors.toList());
+
+    @Test
+    @Description("Default instance formats same as static formatter")
+    public void defaultInstanceFormatsSameAsStatic() throws Exception {
+        ProtoFormatter.FORMAT_PROTO_TO_JSON = true;
+        final ProtoFormatter formatter = ProtoFormatter.builder().build();
+        assertEquals(ProtoFormatter.format(message), formatter.print(message));
+        assertEquals(ProtoFormatter.format(messageList), formatter.print(messageList));
+    }
+
+    @Test
+    @Description("Instance formatting does not depend on static FORMAT_PROTO_TO_JSON")
+    public void instanceIgnoresStaticFlag() throws Exception {
+        final ProtoFormatter formatter = ProtoFormatter.builder().formatToJson(false).build();
+        ProtoFormatter.FORMAT_PROTO_TO_JSON = true;
+        assertEquals("message: \"test\"\n", formatter.print(message));
+        assertEquals("message: \"test1\"\nmessage: \"test2\"\n", formatter.print(messageList));
+    }
+
+    @Test
+    @Description("Default values could be included")
+    public void includingDefaultValueFields() throws Exception {
+        final ProtoFormatter formatter =
+                ProtoFormatter.builder().includingDefaultValueFields(true).build();
+        assertEquals("{\n  \"message\": \"\"\n}", formatter.print(HelloReply.getDefaultInstance()));
+    }
+
+    @Test
+    @Description("Compact json without indentation")
+    public void omittingInsignificantWhitespace() throws Exception {
+        final ProtoFormatter formatter =
+                ProtoFormatter.builder().omittingInsignificantWhitespace(true).build();
+        assertEquals("{\"message\":\"test\"}", formatter.print(message));
+        assertEquals("[{\"message\":\"test1\"},{\"message\":\"test2\"}]", formatter.print(messageList));
+    }
+
+    @Test
+    @Description("Default instances are cached")
+    public void defaultInstancesAreCached() {
+        ProtoFormatter.FORMAT_PROTO_TO_JSON = true;
+        assertSame(ProtoFormatter.getDefault(), ProtoFormatter.getDefault());
+    }
+
+    @Test
+    @Description("One instance could be shared between threads")
+    public void instanceIsThreadSafe() throws InterruptedException, ExecutionException {
+        final ProtoFormatter formatter = ProtoFormatter.builder().build();
+        final String expected = formatter.print(messageList);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<String>> results = IntStream.range(0, 1000)
+                    .mapToObj(i -> executor.submit(() -> formatter.print(messageList)))
+                    .collect(Collectors.toList());
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
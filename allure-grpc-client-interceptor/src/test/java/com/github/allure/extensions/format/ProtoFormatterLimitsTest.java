@@ -0,0 +1,178 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions.format;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.github.allure.extensions.HelloReply;
+import com.github.allure.extensions.Payload;
+import com.github.allure.extensions.ProtoFormatter;
+import com.google.common.io.BaseEncoding;
+import com.google.gson.JsonParser;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import io.qameta.allure.Feature;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Size limits of formatter should cut oversized fields, repeated fields, messages and attachments while rendering.
+ */
+@Feature("Formatter")
+public class ProtoFormatterLimitsTest {
+
+    final ProtoFormatter compact = ProtoFormatter.builder()
+            .omittingInsignificantWhitespace(true)
+            .maxFieldSize(4)
+            .maxRepeatedElements(2)
+            .build();
+
+    @Test
+    public void longStringIsCutWithSizeAndDigest() throws Exception {
+        final String text = "abcdefgh";
+        final String json = compact.print(Payload.newBuilder().setText(text).build());
+        assertEquals(
+                "{\"text\":\"abcd...[truncated: 8 bytes, sha-256 " + sha256(text.getBytes(StandardCharsets.UTF_8))
+                        + "]\"}",
+                json);
+    }
+
+    @Test
+    public void longBytesAreCutWithSizeAndDigest() throws Exception {
+        final byte[] data = new byte[1 << 20];
+        Arrays.fill(data, (byte) 7);
+        final String json = compact.print(Payload.newBuilder().setData(ByteString.copyFrom(data)).build());
+        assertEquals(
+                "{\"data\":\"BwcHBw==...[truncated: 1048576 bytes, sha-256 " + sha256(data) + "]\"}", json);
+    }
+
+    @Test
+    public void shortFieldsAreNotChanged() {
+        final Payload payload = Payload.newBuilder()
+                .setText("abcd")
+                .setData(ByteString.copyFromUtf8("abcd"))
+                .addNumbers(1)
+                .putLabels("k", "v")
+                .build();
+        final List<Message> messages = Collections.singletonList(payload);
+        assertEquals(
+                ProtoFormatter.builder().build().print(messages),
+                ProtoFormatter.builder()
+                        .maxFieldSize(4)
+                        .maxRepeatedElements(2)
+                        .build()
+                        .print(messages));
+    }
+
+    @Test
+    public void repeatedAndMapFieldsAreSummarized() throws Exception {
+        final Payload payload = Payload.newBuilder()
+                .addAllNumbers(Arrays.asList(1, 2, 3, 4, 5))
+                .putLabels("a", "1")
+                .putLabels("b", "2")
+                .putLabels("c", "3")
+                .build();
+        assertEquals(
+                "{\"numbers\":[1,2,\"[truncated: 3 more of 5 elements]\"],"
+                        + "\"labels\":{\"a\":\"1\",\"b\":\"2\",\"[truncated]\":\"[truncated: 1 more of 3 entries]\"}}",
+                compact.print(payload));
+    }
+
+    @Test
+    public void messageIsCutAtLimit() {
+        final ProtoFormatter formatter = ProtoFormatter.builder()
+                .omittingInsignificantWhitespace(true)
+                .maxMessageSize(10)
+                .build();
+        final HelloReply reply = HelloReply.newBuilder().setMessage("0123456789").build();
+        final String json = formatter.print(Arrays.asList(reply, reply));
+        final String cut =
+                "\"{\\\"message\\\"...[truncated: message of 12 bytes serialized, message limit 10 characters]\"";
+        assertEquals("[" + cut + "," + cut + "]", json);
+        assertEquals(2, JsonParser.parseString(json).getAsJsonArray().size());
+    }
+
+    @Test
+    public void jsonPastAttachmentLimitStaysValid() {
+        final ProtoFormatter formatter = ProtoFormatter.builder()
+                .omittingInsignificantWhitespace(true)
+                .maxAttachmentSize(30)
+                .build();
+        final List<Message> replies = IntStream.range(0, 10)
+                .mapToObj(i -> HelloReply.newBuilder().setMessage("reply " + i).build())
+                .collect(Collectors.toList());
+        final String json = formatter.print(replies);
+        assertEquals(
+                "[{\"message\":\"reply 0\"}"
+                        + ",\"{\\\"message...[truncated: message of 9 bytes serialized, attachment limit 30 characters]"
+                        + "\""
+                        + ",\"[truncated: 8 more messages of 72 bytes serialized]\"]",
+                json);
+        assertEquals(3, JsonParser.parseString(json).getAsJsonArray().size());
+    }
+
+    @Test
+    public void messagesPastAttachmentLimitAreCounted() {
+        final ProtoFormatter formatter = ProtoFormatter.builder()
+                .formatToJson(false)
+                .maxAttachmentSize(30)
+                .build();
+        final List<Message> replies = IntStream.range(0, 10)
+                .mapToObj(i -> HelloReply.newBuilder().setMessage("reply " + i).build())
+                .collect(Collectors.toList());
+        assertEquals(
+                "message: \"reply 0\"\nmessage: \"r"
+                        + "...[truncated: message of 9 bytes serialized, attachment limit 30 characters]"
+                        + "\n...[truncated: 8 more messages of 72 bytes serialized]",
+                formatter.print(replies));
+    }
+
+    @Test
+    public void limitsShouldBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> ProtoFormatter.builder().maxFieldSize(0));
+        assertThrows(IllegalArgumentException.class, () -> ProtoFormatter.builder().maxAttachmentSize(-1));
+    }
+
+    @Test
+    public void unlimitedFormatterKeepsSingleMessageOutput() throws Exception {
+        final HelloReply reply = HelloReply.newBuilder().setMessage("Hi").build();
+        assertEquals(
+                ProtoFormatter.builder().build().print(reply),
+                ProtoFormatter.builder().maxAttachmentSize(1000).build().print(reply));
+        assertEquals(
+                ProtoFormatter.builder().build().print(Collections.singletonList(reply)),
+                ProtoFormatter.builder().build().print(reply));
+    }
+
+    private static String sha256(final byte[] bytes) throws Exception {
+        return BaseEncoding.base16().lowerCase().encode(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions.format;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.github.allure.extensions.AllTypes;
+import com.github.allure.extensions.HelloReply;
+import com.github.allure.extensions.ProtoFormatter;
+import com.github.underscore.U;
+import com.google.protobuf.Any;
+import com.google.protobuf.BoolValue;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.BytesValue;
+import com.google.protobuf.DoubleValue;
+import com.google.protobuf.Duration;
+import com.google.protobuf.FieldMask;
+import com.google.protobuf.FloatValue;
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.Int64Value;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Message;
+import com.google.protobuf.NullValue;
+import com.google.protobuf.StringValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.TypeRegistry;
+import com.google.protobuf.UInt32Value;
+import com.google.protobuf.UInt64Value;
+import com.google.protobuf.Value;
+import com.google.protobuf.util.JsonFormat;
+import io.qameta.allure.Feature;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * This test should check single pass pretty json is the same as json printed by JsonFormat and re-formatted with
+ * underscore, which was done before, for every kind of field, well-known types and escaped characters.
+ */
+@Feature("Formatter")
+public class ProtoJsonCompatibilityTest {
+
+    private static final TypeRegistry TYPE_REGISTRY =
+            TypeRegistry.newBuilder().add(AllTypes.getDescriptor()).build();
+    private static final String TEXT = "q\"uote\\ \b\f\n\r\t \u0000\u0001\u001F \u007F\u0085\u009F <>&='"
+            + " \u2000\u2028\u2029\u20AC\u20FF \u00E9 \u041F\u0440\u0438\u0432\u0435\u0442 \u65E5\u672C \uD83D\uDE00";
+
+    private final ProtoFormatter formatter =
+            ProtoFormatter.builder().typeRegistry(TYPE_REGISTRY).build();
+    private final JsonFormat.Printer legacyPrinter =
+            JsonFormat.printer().usingTypeRegistry(TYPE_REGISTRY).preservingProtoFieldNames();
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("messages")
+    public void prettyJsonIsSameAsReformattedJsonFormat(final String name, final List<Message> messages)
+            throws InvalidProtocolBufferException {
+        assertEquals(legacyFormat(messages), formatter.print(messages));
+    }
+
+    static Stream<Arguments> messages() {
+        final List<Arguments> arguments = new ArrayList<>();
+        for (double value : new double[] {
+            Double.NaN,
+            Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY,
+            -0.0,
+            0.1,
+            2.5,
+            100.0,
+            123456.789,
+            1234567890.5,
+            1.5e-7,
+            1.0e10,
+            -2.25e-300,
+            Double.MAX_VALUE,
+            Double.MIN_VALUE
+        }) {
+            arguments.add(of("double " + value, AllTypes.newBuilder().setDoubleValue(value)));
+        }
+        for (float value : new float[] {
+            Float.NaN,
+            Float.POSITIVE_INFINITY,
+            Float.NEGATIVE_INFINITY,
+            -0.0f,
+            0.1f,
+            0.3f,
+            100.0f,
+            1.1f,
+            16777216.0f,
+            1.0e-5f,
+            3.0e20f,
+            Float.MAX_VALUE,
+            Float.MIN_VALUE
+        }) {
+            arguments.add(of("float " + value, AllTypes.newBuilder().setFloatValue(value)));
+        }
+        arguments.add(of(
+                "integers",
+                AllTypes.newBuilder()
+                        .setInt32Value(Integer.MIN_VALUE)
+                        .setInt64Value(Long.MIN_VALUE)
+                        .setUint32Value(-1)
+                        .setUint64Value(-1L)
+                        .setSint32Value(Integer.MAX_VALUE)
+                        .setSint64Value(Long.MAX_VALUE)
+                        .setFixed32Value(0x80000000)
+                        .setFixed64Value(0x8000000000000000L)
+                        .setSfixed32Value(-1)
+                        .setSfixed64Value(-1L)
+                        .setBoolValue(true)
+                        .setKind(AllTypes.Kind.KIND_FIRST)));
+        arguments.add(of(
+                "strings",
+                AllTypes.newBuilder()
+                        .setStringValue(TEXT)
+                        .addStrings("")
+                        .addStrings(TEXT)
+                        .setChoiceText(TEXT)));
+        arguments.add(of(
+                "bytes",
+                AllTypes.newBuilder()
+                        .setBytesValue(ByteString.copyFrom(new byte[] {0, -1, -5, 62, 63, 127, -128}))
+                        .setBytesWrapper(BytesValue.of(ByteString.copyFromUtf8(TEXT)))));
+        arguments.add(of(
+                "repeated and maps",
+                AllTypes.newBuilder()
+                        .addDoubles(1.5)
+                        .addDoubles(Double.NaN)
+                        .addDoubles(-0.0)
+                        .addFloats(0.1f)
+                        .addFloats(Float.NEGATIVE_INFINITY)
+                        .putByInt64(Long.MIN_VALUE, TEXT)
+                        .putByInt64(0, "")
+                        .putByBool(true, AllTypes.newBuilder().setInt32Value(1).build())
+                        .putByBool(false, AllTypes.getDefaultInstance())
+                        .setChoiceNumber(-7)));
+        arguments.add(of(
+                "nested",
+                AllTypes.newBuilder()
+                        .setChild(AllTypes.newBuilder()
+                                .setChild(AllTypes.newBuilder().setStringValue(TEXT))
+                                .addDoubles(2.5))));
+        arguments.add(of(
+                "wrappers",
+                AllTypes.newBuilder()
+                        .setDoubleWrapper(DoubleValue.of(1234567890.25))
+                        .setFloatWrapper(FloatValue.of(Float.NaN))
+                        .setInt64Wrapper(Int64Value.of(Long.MIN_VALUE))
+                        .setUint64Wrapper(UInt64Value.of(-1L))
+                        .setInt32Wrapper(Int32Value.of(0))
+                        .setUint32Wrapper(UInt32Value.of(-1))
+                        .setBoolWrapper(BoolValue.of(false))
+                        .setStringWrapper(StringValue.of(TEXT))));
+        arguments.add(of(
+                "time",
+                AllTypes.newBuilder()
+                        .setTimestamp(Timestamp.newBuilder().setSeconds(1_600_000_000).setNanos(500_000_000))
+                        .setDuration(Duration.newBuilder().setSeconds(-1).setNanos(-500))
+                        .setFieldMask(FieldMask.newBuilder()
+                                .addPaths("string_value")
+                                .addPaths("child.double_value"))));
+        final Value list = Value.newBuilder()
+                .setListValue(ListValue.newBuilder()
+                        .addValues(Value.newBuilder().setNullValue(NullValue.NULL_VALUE))
+                        .addValues(Value.newBuilder().setBoolValue(true))
+                        .addValues(Value.newBuilder().setNumberValue(1.0e-7))
+                        .addValues(Value.newBuilder().setStringValue(TEXT))
+                        .addValues(Value.newBuilder().setListValue(ListValue.getDefaultInstance())))
+                .build();
+        final Struct struct = Struct.newBuilder()
+                .putFields(TEXT, list)
+                .putFields("number", Value.newBuilder().setNumberValue(-123456.75).build())
+                .putFields("empty", Value.newBuilder().setStructValue(Struct.getDefaultInstance()).build())
+                .build();
+        arguments.add(of(
+                "struct",
+                AllTypes.newBuilder()
+                        .setStructValue(struct)
+                        .setValue(Value.newBuilder().setNullValue(NullValue.NULL_VALUE))
+                        .setListValue(list.getListValue())));
+        arguments.add(of(
+                "any",
+                AllTypes.newBuilder()
+                        .setAny(Any.pack(AllTypes.newBuilder()
+                                .setDoubleValue(0.5)
+                                .setAny(Any.pack(Timestamp.newBuilder().setSeconds(1).build()))
+                                .build()))));
+        arguments.add(of(
+                "nested any",
+                Any.pack(Any.pack(AllTypes.newBuilder().setStringValue(TEXT).build())),
+                Any.pack(Struct.newBuilder().putFields("key", list).build()),
+                Any.pack(DoubleValue.of(Double.NEGATIVE_INFINITY)),
+                Any.pack(Duration.newBuilder().setSeconds(3).build())));
+        arguments.add(of("empty", AllTypes.getDefaultInstance()));
+        arguments.add(of(
+                "many messages",
+                HelloReply.newBuilder().setMessage(TEXT).build(),
+                AllTypes.getDefaultInstance(),
+                AllTypes.newBuilder().setFloatValue(-0.0f).addStrings(TEXT).build()));
+        return arguments.stream();
+    }
+
+    private static Arguments of(final String name, final AllTypes.Builder message) {
+        return of(name, message.build());
+    }
+
+    private static Arguments of(final String name, final Message... messages) {
+        return Arguments.of(name, Collections.unmodifiableList(Arrays.asList(messages)));
+    }
+
+    /**
+     * Formatting messages as ProtoFormatter did before single pass rendering
+     */
+    private String legacyFormat(final List<Message> messages) throws InvalidProtocolBufferException {
+        if (messages.size() == 1) return U.formatJson(legacyPrinter.print(messages.get(0)));
+        final List<String> json = new ArrayList<>();
+        for (Message message : messages) {
+            json.add(legacyPrinter.print(message));
+        }
+        return U.formatJson(json.stream().collect(Collectors.joining(",", "[", "]")));
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions.format;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.github.allure.extensions.HelloReply;
+import com.github.allure.extensions.ProtoFormatter;
+import com.google.protobuf.Any;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Message;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.TypeRegistry;
+import com.google.protobuf.Value;
+import com.google.protobuf.util.JsonFormat;
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This test should check single pass json formatting of messages with nested, repeated and well-known types.
+ */
+@Feature("Formatter")
+public class ProtoJsonFormattingTest {
+
+    final Struct struct = Struct.newBuilder()
+            .putFields("name", Value.newBuilder().setStringValue("q\"uote\n").build())
+            .putFields("count", Value.newBuilder().setNumberValue(2.50).build())
+            .putFields(
+                    "list",
+                    Value.newBuilder()
+                            .setListValue(ListValue.newBuilder()
+                                    .addValues(Value.newBuilder().setBoolValue(true))
+                                    .addValues(Value.newBuilder().setListValue(ListValue.getDefaultInstance())))
+                            .build())
+            .putFields("empty", Value.newBuilder().setStructValue(Struct.getDefaultInstance()).build())
+            .build();
+
+    @Test
+    @Description("Nested and repeated values are written with indentation of 2 spaces")
+    public void formattingNestedAndRepeatedValues() {
+        final ProtoFormatter formatter = ProtoFormatter.builder().build();
+        assertEquals(
+                "{\n"
+                        + "  \"name\": \"q\\\"uote\\n\",\n"
+                        + "  \"count\": 2.5,\n"
+                        + "  \"list\": [\n"
+                        + "    true,\n"
+                        + "    [\n"
+                        + "    ]\n"
+                        + "  ],\n"
+                        + "  \"empty\": {\n"
+                        + "  }\n"
+                        + "}",
+                formatter.print(Collections.singletonList(struct)));
+    }
+
+    @Test
+    @Description("Well-known types inside Any are written with @type and value")
+    public void formattingAnyWithWellKnownTypes() {
+        final ProtoFormatter formatter = ProtoFormatter.builder()
+                .typeRegistry(TypeRegistry.newBuilder()
+                        .add(Timestamp.getDescriptor())
+                        .add(HelloReply.getDescriptor())
+                        .build())
+                .build();
+        final List<Message> messages = Arrays.asList(
+                Any.pack(Timestamp.newBuilder().setSeconds(1).build()),
+                Any.pack(HelloReply.newBuilder().setMessage("test").build()));
+        assertEquals(
+                "[\n"
+                        + "  {\n"
+                        + "    \"@type\": \"type.googleapis.com/google.protobuf.Timestamp\",\n"
+                        + "    \"value\": \"1970-01-01T00:00:01Z\"\n"
+                        + "  },\n"
+                        + "  {\n"
+                        + "    \"@type\": \"type.googleapis.com/com.github.allure.extensions.HelloReply\",\n"
+                        + "    \"message\": \"test\"\n"
+                        + "  }\n"
+                        + "]",
+                formatter.print(messages));
+    }
+
+    @Test
+    @Description("Any of unknown type is written with base64 value instead of failing whole output")
+    public void formattingAnyOfUnknownType() {
+        final ProtoFormatter formatter = ProtoFormatter.builder().build();
+        final Any any = Any.pack(HelloReply.newBuilder().setMessage("test").build());
+        assertEquals(
+                "{\n"
+                        + "  \"@type\": \"type.googleapis.com/com.github.allure.extensions.HelloReply\",\n"
+                        + "  \"value\": \"CgR0ZXN0\"\n"
+                        + "}",
+                formatter.print(Collections.singletonList(any)));
+    }
+
+    @Test
+    @Description("Compact json is written same as JsonFormat without whitespaces")
+    public void formattingCompactJson() throws Exception {
+        final ProtoFormatter formatter = ProtoFormatter.builder()
+                .omittingInsignificantWhitespace(true)
+                .build();
+        assertEquals(formatter.print(struct), formatter.print(Collections.singletonList(struct)));
+        assertEquals(
+                "[" + formatter.print(struct) + "," + formatter.print(struct) + "]",
+                formatter.print(Arrays.asList(struct, struct)));
+    }
+
+    @Test
+    @Description("Repeated writing of the same types with cached plans is same as JsonFormat")
+    public void formattingRepeatedTypesSameAsJsonFormat() throws Exception {
+        final FileDescriptorProto file = HelloReply.getDescriptor().getFile().toProto();
+        final FileDescriptorProto descriptorFile =
+                FileDescriptorProto.getDescriptor().getFile().toProto();
+        for (int options = 0; options < 4; options++) {
+            final boolean defaults = (options & 1) != 0;
+            final boolean protoNames = (options & 2) != 0;
+            final ProtoFormatter formatter = ProtoFormatter.builder()
+                    .omittingInsignificantWhitespace(true)
+                    .includingDefaultValueFields(defaults)
+                    .preservingProtoFieldNames(protoNames)
+                    .build();
+            JsonFormat.Printer printer = JsonFormat.printer().omittingInsignificantWhitespace();
+            if (defaults) printer = printer.includingDefaultValueFields();
+            if (protoNames) printer = printer.preservingProtoFieldNames();
+            final String expected = "[" + printer.print(file) + "," + printer.print(descriptorFile) + "]";
+            assertEquals(expected, formatter.print(Arrays.asList(file, descriptorFile)));
+            assertEquals(expected, formatter.print(Arrays.asList(file, descriptorFile)));
+        }
+    }
+
+    @Test
+    @Description("Messages could be written straight to the destination")
+    public void printingToAppendable() throws Exception {
+        final ProtoFormatter formatter = ProtoFormatter.builder().build();
+        final List<Message> messages = Arrays.asList(struct, struct);
+        final StringBuilder out = new StringBuilder("responses: ");
+        formatter.printTo(messages, out);
+        assertEquals("responses: " + formatter.print(messages), out.toString());
+    }
+}
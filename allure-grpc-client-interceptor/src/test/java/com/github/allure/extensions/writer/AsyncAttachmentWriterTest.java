@@ -0,0 +1,182 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions.writer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.allure.extensions.AsyncAttachmentWriter;
+import io.qameta.allure.Feature;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This test should check async attachment writer executes work off the caller thread, flushes and never loses work.
+ */
+@Feature("Attachment writer")
+public class AsyncAttachmentWriterTest {
+
+    @Test
+    public void workExecutedOffCallerThread() {
+        final List<String> threads = new CopyOnWriteArrayList<>();
+        try (AsyncAttachmentWriter writer = new AsyncAttachmentWriter()) {
+            for (int i = 0; i < 100; i++) {
+                writer.submit(() -> threads.add(Thread.currentThread().getName()));
+            }
+            writer.flush();
+            assertEquals(100, threads.size(), "all submitted work executed after flush");
+            assertTrue(
+                    threads.stream().noneMatch(x -> x.equals(Thread.currentThread().getName())),
+                    "work executed by background worker");
+        }
+    }
+
+    @Test
+    public void workExecutedInlineWhenQueueIsFullByDefault() throws InterruptedException {
+        final CountDownLatch workerBlocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> threads = new CopyOnWriteArrayList<>();
+        try (AsyncAttachmentWriter writer = AsyncAttachmentWriter.builder()
+                .queueCapacity(1)
+                .flushTimeoutMillis(5_000)
+                .build()) {
+            writer.submit(() -> {
+                workerBlocked.countDown();
+                await(release);
+            });
+            assertTrue(workerBlocked.await(5, TimeUnit.SECONDS), "worker started");
+            writer.submit(() -> threads.add("queued"));
+            writer.submit(() -> threads.add(Thread.currentThread().getName()));
+            assertEquals(Thread.currentThread().getName(), threads.get(0), "overflowed work executed inline");
+            release.countDown();
+            writer.flush();
+            assertEquals(2, threads.size(), "queued work is not lost");
+        }
+    }
+
+    @Test
+    public void callerWaitsForFreeSpaceWithBlockOverflow() throws InterruptedException {
+        final CountDownLatch workerBlocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> threads = new CopyOnWriteArrayList<>();
+        try (AsyncAttachmentWriter writer = AsyncAttachmentWriter.builder()
+                .queueCapacity(1)
+                .flushTimeoutMillis(5_000)
+                .overflow(AsyncAttachmentWriter.Overflow.BLOCK)
+                .build()) {
+            writer.submit(() -> {
+                workerBlocked.countDown();
+                await(release);
+            });
+            assertTrue(workerBlocked.await(5, TimeUnit.SECONDS), "worker started");
+            writer.submit(() -> threads.add(Thread.currentThread().getName()));
+            final Thread caller = new Thread(() -> writer.submit(() -> threads.add(Thread.currentThread().getName())));
+            caller.start();
+            caller.join(200);
+            assertTrue(caller.isAlive(), "caller waits for free space");
+            release.countDown();
+            caller.join(5_000);
+            writer.flush();
+            assertEquals(2, threads.size(), "queued work is not lost");
+            assertTrue(
+                    threads.stream().allMatch(x -> x.startsWith("allure-grpc-attachment-writer-")),
+                    "overflowed work executed by background worker");
+        }
+    }
+
+    @Test
+    public void workExecutedByVirtualWorkerThread() {
+        final List<String> threads = new CopyOnWriteArrayList<>();
+        try (AsyncAttachmentWriter writer = AsyncAttachmentWriter.builder()
+                .workerThread(AsyncAttachmentWriter.WorkerThread.VIRTUAL)
+                .build()) {
+            writer.submit(() -> threads.add(Thread.currentThread().getName()));
+            writer.flush();
+            assertEquals(1, threads.size(), "submitted work executed after flush");
+            assertTrue(threads.get(0).startsWith("allure-grpc-attachment-writer-"), "work executed by worker");
+        }
+    }
+
+    @Test
+    public void workExecutedInlineAfterClose() {
+        final List<String> threads = new CopyOnWriteArrayList<>();
+        final AsyncAttachmentWriter writer = new AsyncAttachmentWriter();
+        writer.submit(() -> threads.add(Thread.currentThread().getName()));
+        writer.close();
+        writer.submit(() -> threads.add(Thread.currentThread().getName()));
+        assertEquals(2, threads.size(), "work before and after close executed");
+        assertNotEquals(Thread.currentThread().getName(), threads.get(0), "work before close executed by worker");
+        assertEquals(Thread.currentThread().getName(), threads.get(1), "work after close executed inline");
+    }
+
+    @Test
+    public void closeCompletesRunningWorkWithoutInterruptingIt() throws InterruptedException {
+        final CountDownLatch workerBlocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> completed = new CopyOnWriteArrayList<>();
+        final AsyncAttachmentWriter writer = new AsyncAttachmentWriter();
+        writer.submit(() -> {
+            workerBlocked.countDown();
+            await(release);
+            completed.add(Thread.currentThread().isInterrupted() ? "interrupted" : "running");
+        });
+        writer.submit(() -> completed.add("queued"));
+        assertTrue(workerBlocked.await(5, TimeUnit.SECONDS), "worker started");
+        final Thread closer = new Thread(writer::close);
+        closer.start();
+        closer.join(200);
+        assertTrue(closer.isAlive(), "close waits for pending work");
+        release.countDown();
+        closer.join(5_000);
+        assertEquals(2, completed.size(), "pending work completed before close returns");
+        assertEquals("running", completed.get(0), "running work is not interrupted");
+    }
+
+    @Test
+    public void workSubmittedWhileClosingIsNotLost() throws InterruptedException {
+        final List<Integer> completed = new CopyOnWriteArrayList<>();
+        final AsyncAttachmentWriter writer = new AsyncAttachmentWriter();
+        final Thread submitter = new Thread(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                writer.submit(() -> completed.add(1));
+            }
+        });
+        submitter.start();
+        writer.close();
+        submitter.join(10_000);
+        assertEquals(10_000, completed.size(), "work submitted before and after close executed");
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
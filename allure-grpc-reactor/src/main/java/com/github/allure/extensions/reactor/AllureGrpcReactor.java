@@ -0,0 +1,183 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions.reactor;
+
+import com.github.allure.extensions.CallCapture;
+import com.github.allure.extensions.InterceptorOptions;
+import com.github.allure.extensions.PayloadBufferPolicy;
+import com.google.protobuf.Message;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.util.function.Function;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Capture of calls of reactive gRPC stubs, for example stubs generated by reactive-grpc. Each subscription is attached
+ * as one step with its requests, responses and status, the step is added to the test or step bound to the subscribing
+ * thread or gRPC context, see {@link com.github.allure.extensions.AllureGrpcParent}.
+ *
+ * <p>Messages are captured as they are signalled with the payload buffer policy, bounded
+ * {@link PayloadBufferPolicy#headTail(int, int)} by default, and attached when the response stream completes, fails or
+ * is cancelled by its subscriber. Capture only peeks at signals: demand of the subscriber goes upstream as is and
+ * signals are not moved to other threads. Metadata is not visible to reactive stubs and is not attached.
+ *
+ * <p>Calls started by the stub while it is subscribed are not recorded once more by
+ * {@link com.github.allure.extensions.AllureGrpcClientInterceptor} of its channel. A call started later on another
+ * thread, for example when the request is signalled asynchronously, is recorded by both, so the interceptor should not
+ * be added to channels of such stubs.
+ *
+ * <pre>{@code
+ * AllureGrpcReactor reactor = AllureGrpcReactor.builder().build();
+ * Mono<HelloReply> reply = reactor.oneToOne(GreeterGrpc.getSayHelloMethod(), Mono.just(request), stub::sayHello);
+ * Flux<HelloReply> replies =
+ *         reactor.oneToMany(GreeterGrpc.getSayHelloStreamMethod(), Mono.just(request), stub::sayHelloStream);
+ * }</pre>
+ */
+public final class AllureGrpcReactor {
+
+    private final InterceptorOptions options;
+
+    private AllureGrpcReactor(final InterceptorOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * @return builder of capture with inline attachment writer and head-tail payload buffer of 100 and 100 messages
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param method  called unary method
+     * @param request request of the call
+     * @param call    call of the stub
+     * @param <ReqT>  type of request
+     * @param <RespT> type of response
+     * @return response of the call, each subscription is captured
+     */
+    public <ReqT extends Message, RespT extends Message> Mono<RespT> oneToOne(
+            final MethodDescriptor<ReqT, RespT> method,
+            final Mono<ReqT> request,
+            final Function<Mono<ReqT>, Mono<RespT>> call) {
+        return Mono.defer(() -> {
+            final CallCapture capture = CallCapture.start(options, method);
+            if (capture == null) return call.apply(request);
+            return Mono.fromDirect(captured(capture, call.apply(request.doOnNext(capture::request))));
+        });
+    }
+
+    /**
+     * @param method  called server streaming method
+     * @param request request of the call
+     * @param call    call of the stub
+     * @param <ReqT>  type of request
+     * @param <RespT> type of responses
+     * @return responses of the call, each subscription is captured
+     */
+    public <ReqT extends Message, RespT extends Message> Flux<RespT> oneToMany(
+            final MethodDescriptor<ReqT, RespT> method,
+            final Mono<ReqT> request,
+            final Function<Mono<ReqT>, Flux<RespT>> call) {
+        return Flux.defer(() -> {
+            final CallCapture capture = CallCapture.start(options, method);
+            if (capture == null) return call.apply(request);
+            return captured(capture, call.apply(request.doOnNext(capture::request)));
+        });
+    }
+
+    /**
+     * @param method   called client streaming method
+     * @param requests requests of the call
+     * @param call     call of the stub
+     * @param <ReqT>   type of requests
+     * @param <RespT>  type of response
+     * @return response of the call, each subscription is captured
+     */
+    public <ReqT extends Message, RespT extends Message> Mono<RespT> manyToOne(
+            final MethodDescriptor<ReqT, RespT> method,
+            final Flux<ReqT> requests,
+            final Function<Flux<ReqT>, Mono<RespT>> call) {
+        return Mono.defer(() -> {
+            final CallCapture capture = CallCapture.start(options, method);
+            if (capture == null) return call.apply(requests);
+            return Mono.fromDirect(captured(capture, call.apply(requests.doOnNext(capture::request))));
+        });
+    }
+
+    /**
+     * @param method   called bidirectional streaming method
+     * @param requests requests of the call
+     * @param call     call of the stub
+     * @param <ReqT>   type of requests
+     * @param <RespT>  type of responses
+     * @return responses of the call, each subscription is captured
+     */
+    public <ReqT extends Message, RespT extends Message> Flux<RespT> manyToMany(
+            final MethodDescriptor<ReqT, RespT> method,
+            final Flux<ReqT> requests,
+            final Function<Flux<ReqT>, Flux<RespT>> call) {
+        return Flux.defer(() -> {
+            final CallCapture capture = CallCapture.start(options, method);
+            if (capture == null) return call.apply(requests);
+            return captured(capture, call.apply(requests.doOnNext(capture::request)));
+        });
+    }
+
+    /**
+     * Capturing responses and terminal signal, the stub is subscribed within the capture
+     */
+    private static <RespT extends Message> Flux<RespT> captured(
+            final CallCapture capture, final Publisher<RespT> responses) {
+        final Flux<RespT> captured = Flux.from(responses)
+                .doOnNext(capture::response)
+                .doOnComplete(() -> capture.close(Status.OK))
+                .doOnError(e -> capture.close(Status.fromThrowable(e)))
+                .doOnCancel(capture::cancel);
+        return Flux.from(subscriber -> capture.run(() -> captured.subscribe(subscriber)));
+    }
+
+    /**
+     * Flushing attachments submitted to attachment writer, useful for async writers outside of Allure test lifecycle
+     */
+    public void flush() {
+        options.flush();
+    }
+
+    /**
+     * Builder of capture, options are shared with interceptors
+     */
+    public static final class Builder extends InterceptorOptions.Builder<Builder> {
+
+        private Builder() {
+            payloadBufferPolicy(PayloadBufferPolicy.headTail(100, 100));
+        }
+
+        public AllureGrpcReactor build() {
+            return new AllureGrpcReactor(options());
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 a-simeshin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.allure.extensions.reactor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.allure.extensions.AllureGrpcClientInterceptor;
+import com.github.allure.extensions.GreeterGrpc;
+import com.github.allure.extensions.HelloReply;
+import com.github.allure.extensions.HelloRequest;
+import com.github.allure.extensions.PayloadBufferPolicy;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.qameta.allure.Feature;
+import io.qameta.allure.model.Attachment;
+import io.qameta.allure.model.Parameter;
+import io.qameta.allure.model.StepResult;
+import io.qameta.allure.test.AllureResults;
+import io.qameta.allure.test.RunUtils;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Subscriptions to reactive stubs should be attached as steps with their requests when they terminate or are
+ * cancelled, without changing demand of their subscribers.
+ */
+@Feature("Reactor")
+public class ReactorCaptureTest {
+
+    private final AllureGrpcReactor reactor =
+            AllureGrpcReactor.builder().callMetrics(true).build();
+
+    @Test
+    public void completedStreamIsAttached() {
+        final AllureResults allureResults = RunUtils.runWithinTestContext(() -> reactor.oneToMany(
+                        GreeterGrpc.getSayHelloStreamMethod(), Mono.just(request("Reactor")), stream(5))
+                .blockLast());
+
+        final StepResult step = firstStep(allureResults);
+        assertEquals("gRPC interaction com.github.allure.extensions.Greeter/SayHelloStream", step.getName());
+        assertEquals(io.qameta.allure.model.Status.PASSED, step.getStatus());
+        assertEquals("1", parameter(step, "requests"));
+        assertEquals("5", parameter(step, "responses"));
+        assertTrue(attachmentContent(allureResults, step, "gRPC request").contains("Reactor"));
+        final String responses = attachmentContent(allureResults, step, "gRPC responses");
+        assertTrue(responses.contains("\"message\": \"Hello 0\""), responses);
+        assertTrue(responses.contains("\"message\": \"Hello 4\""), responses);
+        assertTrue(attachmentContent(allureResults, step, "gRPC method").contains("SayHelloStream"));
+        assertTrue(attachmentContent(allureResults, step, "gRPC status").contains("code=OK"));
+    }
+
+    @Test
+    public void cancelledStreamIsAttachedWithoutExtraDemand() {
+        final List<Long> requested = new CopyOnWriteArrayList<>();
+        final AllureResults allureResults = RunUtils.runWithinTestContext(() -> reactor.oneToMany(
+                        GreeterGrpc.getSayHelloStreamMethod(),
+                        Mono.just(request("Reactor")),
+                        stream(1000).andThen(replies -> replies.doOnRequest(requested::add)))
+                .subscribe(new BaseSubscriber<HelloReply>() {
+                    private int received;
+
+                    @Override
+                    protected void hookOnSubscribe(final Subscription subscription) {
+                        request(2);
+                    }
+
+                    @Override
+                    protected void hookOnNext(final HelloReply value) {
+                        if (++received == 2) cancel();
+                    }
+                }));
+
+        assertEquals(Collections.singletonList(2L), requested);
+        final StepResult step = firstStep(allureResults);
+        assertEquals(io.qameta.allure.model.Status.PASSED, step.getStatus());
+        assertEquals("2", parameter(step, "responses"));
+        assertTrue(attachmentContent(allureResults, step, "gRPC status").contains("code=CANCELLED"));
+    }
+
+    @Test
+    public void failedStreamIsAttachedWithStatus() {
+        final AllureResults allureResults = RunUtils.runWithinTestContext(() -> reactor.oneToMany(
+                        GreeterGrpc.getSayHelloStreamMethod(),
+                        Mono.just(request("Reactor")),
+                        stream(1).andThen(replies -> replies.concatWith(
+                                Flux.error(Status.UNAVAILABLE.asRuntimeException()))))
+                .onErrorResume(e -> Flux.empty())
+                .blockLast());
+
+        final StepResult step = firstStep(allureResults);
+        assertEquals(io.qameta.allure.model.Status.FAILED, step.getStatus());
+        assertEquals("1", parameter(step, "responses"));
+        assertTrue(attachmentContent(allureResults, step, "gRPC status").contains("code=UNAVAILABLE"));
+    }
+
+    @Test
+    public void longStreamIsBounded() {
+        final AllureGrpcReactor bounded = AllureGrpcReactor.builder()
+                .callMetrics(true)
+                .payloadBufferPolicy(PayloadBufferPolicy.headTail(2, 2))
+                .build();
+        final AllureResults allureResults = RunUtils.runWithinTestContext(() -> bounded.oneToMany(
+                        GreeterGrpc.getSayHelloStreamMethod(), Mono.just(request("Reactor")), stream(100))
+                .blockLast());
+
+        final StepResult step = firstStep(allureResults);
+        assertEquals("100", parameter(step, "responses"));
+        final String responses = attachmentContent(allureResults, step, "gRPC responses");
+        assertTrue(responses.contains("\"message\": \"Hello 1\""), responses);
+        assertTrue(responses.contains("\"message\": \"Hello 50\""), responses);
+        assertTrue(responses.contains("\"message\": \"Hello 99\""), responses);
+    }
+
+    @Test
+    public void monoIsAttached() {
+        final AllureResults allureResults = RunUtils.runWithinTestContext(() -> reactor.oneToOne(
+                        GreeterGrpc.getSayHelloMethod(),
+                        Mono.just(request("Reactor")),
+                        request -> request.map(r -> reply(0)))
+                .block());
+
+        final StepResult step = firstStep(allureResults);
+        assertEquals(io.qameta.allure.model.Status.PASSED, step.getStatus());
+        assertEquals("1", parameter(step, "responses"));
+        assertTrue(attachmentContent(allureResults, step, "gRPC request").contains("Reactor"));
+        assertTrue(attachmentContent(allureResults, step, "gRPC responses").contains("Hello 0"));
+    }
+
+    @Test
+    public void requestsOfStreamAreAttached() {
+        final AllureResults allureResults = RunUtils.runWithinTestContext(() -> reactor.manyToOne(
+                        GreeterGrpc.getSayHelloClientStreamMethod(),
+                        Flux.just(request("first"), request("second")),
+                        requests -> requests.count().map(count -> reply(count.intValue())))
+                .block());
+
+        final StepResult step = firstStep(allureResults);
+        assertEquals("2", parameter(step, "requests"));
+        final String requests = attachmentContent(allureResults, step, "gRPC requests");
+        assertTrue(requests.contains("first") && requests.contains("second"), requests);
+        assertTrue(attachmentContent(allureResults, step, "gRPC responses").contains("Hello 2"));
+    }
+
+    @Test
+    public void interceptedCallIsRecordedOnce() throws IOException {
+        final String name = UUID.randomUUID().toString();
+        final Server server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(new GreeterGrpc.GreeterImplBase() {
+                    @Override
+                    public void sayHello(final HelloRequest request, final StreamObserver<HelloReply> observer) {
+                        observer.onNext(reply(1));
+                        observer.onCompleted();
+                    }
+                })
+                .build()
+                .start();
+        final ManagedChannel channel = InProcessChannelBuilder.forName(name)
+                .directExecutor()
+                .intercept(new AllureGrpcClientInterceptor())
+                .build();
+        try {
+            final GreeterGrpc.GreeterStub stub = GreeterGrpc.newStub(channel);
+            final AllureResults allureResults = RunUtils.runWithinTestContext(() -> reactor.oneToOne(
+                            GreeterGrpc.getSayHelloMethod(),
+                            Mono.just(request("Reactor")),
+                            request -> request.flatMap(r -> Mono.<HelloReply>create(sink -> stub.sayHello(
+                                    r, new StreamObserver<HelloReply>() {
+                                        @Override
+                                        public void onNext(final HelloReply value) {
+                                            sink.success(value);
+                                        }
+
+                                        @Override
+                                        public void onError(final Throwable t) {
+                                            sink.error(t);
+                                        }
+
+                                        @Override
+                                        public void onCompleted() {}
+                                    }))))
+                    .block());
+
+            final List<StepResult> steps = allureResults.getTestResults().get(0).getSteps();
+            assertEquals(1, steps.size());
+            assertTrue(attachmentContent(allureResults, steps.get(0), "gRPC responses").contains("Hello 1"));
+        } finally {
+            channel.shutdownNow();
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    public void subscriptionOutsideOfTestIsNotRecorded() {
+        assertEquals(
+                3,
+                reactor.oneToMany(
+                                GreeterGrpc.getSayHelloStreamMethod(),
+                                Mono.just(request("Reactor")),
+                                stream(3))
+                        .count()
+                        .block());
+    }
+
+    private static HelloRequest request(final String name) {
+        return HelloRequest.newBuilder().setName(name).build();
+    }
+
+    /**
+     * @return server streaming call of a fake stub replying with count responses to the request
+     */
+    private static Function<Mono<HelloRequest>, Flux<HelloReply>> stream(final int count) {
+        return request -> request.flatMapMany(r -> replies(count));
+    }
+
+    private static Flux<HelloReply> replies(final int count) {
+        return Flux.range(0, count).map(ReactorCaptureTest::reply);
+    }
+
+    private static HelloReply reply(final int i) {
+        return HelloReply.newBuilder().setMessage("Hello " + i).build();
+    }
+
+    private static StepResult firstStep(final AllureResults allureResults) {
+        return allureResults.getTestResults().get(0).getSteps().get(0);
+    }
+
+    private static String parameter(final StepResult stepResult, final String name) {
+        return stepResult.getParameters().stream()
+                .filter(x -> x.getName().equals(name))
+                .map(Parameter::getValue)
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("no parameter " + name));
+    }
+
+    private static String attachmentContent(
+            final AllureResults allureResults, final StepResult stepResult, final String name) {
+        final Attachment attachment = stepResult.getAttachments().stream()
+                .filter(x -> x.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("no attachment " + name));
+        return new String(allureResults.getAttachments().get(attachment.getSource()), StandardCharsets.UTF_8);
+    }
+}